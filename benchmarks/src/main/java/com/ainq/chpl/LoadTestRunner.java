@@ -0,0 +1,432 @@
+package com.ainq.chpl;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+import org.apache.http.pool.PoolStats;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Sustained-load harness: drives a mix of status, reference-data, search and details calls
+ * through one shared {@link ChplApiWrapper} against a {@link StubChplServer}, and every
+ * interval writes throughput, error rate and latency percentiles per operation, together with
+ * connection pool and heap figures, to a CSV or JSON file. Run for minutes to hours to see
+ * connection exhaustion, GC pressure and latency drift that short JMH runs do not show.
+ * <p>
+ * With {@code rate=0} a fixed number of threads call back to back (closed loop). With a rate,
+ * calls start on a fixed schedule whether or not earlier ones have finished (open loop), and
+ * latency is measured from the scheduled start, so a stalled wrapper shows up as latency instead
+ * of as fewer requests. Arguments are {@code key=value}; see {@link #DEFAULTS}. Arguments
+ * starting with {@code wrapper.} are passed to the wrapper as properties, e.g.
+ * {@code wrapper.hedgeDetails=true}.
+ * <pre>
+ * java -cp target/benchmarks.jar com.ainq.chpl.LoadTestRunner duration=600 rate=200 out=soak.json
+ * </pre>
+ */
+public final class LoadTestRunner {
+	static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+	static {
+		DEFAULTS.put("duration", "60");            // seconds
+		DEFAULTS.put("interval", "5");             // seconds between report rows
+		DEFAULTS.put("concurrency", "16");         // threads, when rate is 0
+		DEFAULTS.put("rate", "0");                 // calls started per second, 0 for closed loop
+		DEFAULTS.put("maxInFlight", "2000");       // open loop calls beyond this are dropped and counted
+		DEFAULTS.put("mix", "status:1,referenceData:2,search:1,details:6");
+		DEFAULTS.put("listings", "500");           // listings served by the stub search
+		DEFAULTS.put("pageSize", "100");
+		DEFAULTS.put("latencyMillis", "20");       // stub latency per response
+		DEFAULTS.put("detailsScale", "1");         // copies of the ~100 KB details fixture's results
+		DEFAULTS.put("out", "load-test.csv");      // .json for JSON
+	}
+
+	private static final String ALL = "all";
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	/**
+	 * One kind of call made by the load test.
+	 */
+	enum Operation {
+		STATUS("status"), REFERENCE_DATA("referenceData"), SEARCH("search"), DETAILS("details");
+
+		final String label;
+
+		Operation(String label) {
+			this.label = label;
+		}
+
+		static Operation of(String label) {
+			for (Operation operation : values()) {
+				if (operation.label.equals(label)) {
+					return operation;
+				}
+			}
+			throw new IllegalArgumentException("Unknown operation " + label + " in mix");
+		}
+	}
+
+	/**
+	 * Counts and latencies of one operation over one reporting window.
+	 */
+	static final class Stats {
+		final LongAdder requests = new LongAdder();
+		final LongAdder errors = new LongAdder();
+		final LatencyHistogram latency = new LatencyHistogram();
+	}
+
+	private final Map<String, String> options;
+	private final Operation[] schedule;
+	private final ChplApiWrapper wrapper;
+	private final int listings;
+	private final SearchQuery searchQuery;
+	private final AtomicReference<Map<String, Stats>> window = new AtomicReference<>(newWindow());
+	private final Map<String, Stats> total = newWindow();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final LongAdder dropped = new LongAdder();
+	private volatile boolean running = true;
+
+	LoadTestRunner(Map<String, String> options, ChplApiWrapper wrapper) {
+		this.options = options;
+		this.schedule = schedule(options.get("mix"));
+		this.wrapper = wrapper;
+		this.listings = Integer.parseInt(options.get("listings"));
+		this.searchQuery = SearchQuery.builder().pageSize(Integer.parseInt(options.get("pageSize"))).build();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (System.getProperty("log4j.configuration") == null) {
+			System.setProperty("log4j.configuration", "log4j-benchmarks.properties");
+		}
+		Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+		Properties wrapperProperties = new Properties();
+		for (String arg : args) {
+			int eq = arg.indexOf('=');
+			if (eq <= 0) {
+				throw new IllegalArgumentException("Expected key=value, got " + arg + "; keys: " + DEFAULTS.keySet());
+			}
+			String key = arg.substring(0, eq);
+			if (key.startsWith("wrapper.")) {
+				wrapperProperties.setProperty(key.substring("wrapper.".length()), arg.substring(eq + 1));
+			} else if (DEFAULTS.containsKey(key)) {
+				options.put(key, arg.substring(eq + 1));
+			} else {
+				throw new IllegalArgumentException("Unknown option " + key + "; keys: " + DEFAULTS.keySet());
+			}
+		}
+		try (StubChplServer server = new StubChplServer(Integer.parseInt(options.get("listings")),
+				Long.parseLong(options.get("latencyMillis")), Integer.parseInt(options.get("detailsScale")))) {
+			Properties properties = server.wrapperProperties();
+			properties.putAll(wrapperProperties);
+			try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+				System.out.println("Load test " + options + " against " + server.getBaseUrl());
+				new LoadTestRunner(options, wrapper).run();
+			}
+		}
+	}
+
+	/**
+	 * Run for the configured duration, writing a row per operation every interval and totals at the end.
+	 * @throws IOException - if the report cannot be written
+	 */
+	void run() throws IOException, InterruptedException {
+		long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("duration")));
+		long intervalNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("interval")));
+		int rate = Integer.parseInt(options.get("rate"));
+		ExecutorService callers = rate > 0 ? Executors.newCachedThreadPool(new DaemonThreadFactory("load-call"))
+				: Executors.newFixedThreadPool(Integer.parseInt(options.get("concurrency")),
+						new DaemonThreadFactory("load-call"));
+		Thread driver = null;
+		long start = System.nanoTime();
+		if (rate > 0) {
+			driver = new Thread(() -> openLoop(callers, rate, start), "load-driver");
+			driver.setDaemon(true);
+			driver.start();
+		} else {
+			for (int i = 0; i < Integer.parseInt(options.get("concurrency")); i++) {
+				callers.execute(this::closedLoop);
+			}
+		}
+
+		try (Report report = Report.open(options.get("out"))) {
+			long nextReport = start + intervalNanos;
+			long end = start + durationNanos;
+			while (nextReport <= end) {
+				TimeUnit.NANOSECONDS.sleep(nextReport - System.nanoTime());
+				report(report, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(nextReport - start)),
+						window.getAndSet(newWindow()), intervalNanos);
+				nextReport += intervalNanos;
+			}
+			running = false;
+			if (driver != null) {
+				driver.join();
+			}
+			callers.shutdown();
+			callers.awaitTermination(30, TimeUnit.SECONDS);
+			report(report, "total", total, System.nanoTime() - start);
+		}
+		System.out.println("Report written to " + options.get("out"));
+	}
+
+	private void closedLoop() {
+		while (running) {
+			call(System.nanoTime());
+		}
+	}
+
+	private void openLoop(ExecutorService callers, int rate, long start) {
+		long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+		int maxInFlight = Integer.parseInt(options.get("maxInFlight"));
+		for (long arrival = start; running; arrival += periodNanos) {
+			long wait = arrival - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			if (inFlight.get() >= maxInFlight) {
+				dropped.increment();
+				continue;
+			}
+			long scheduled = arrival;
+			callers.execute(() -> call(scheduled));
+		}
+	}
+
+	/**
+	 * Make one call, picked from the mix.
+	 * @param scheduledNanos - when the call was due to start; latency is measured from here
+	 */
+	private void call(long scheduledNanos) {
+		Operation operation = schedule[ThreadLocalRandom.current().nextInt(schedule.length)];
+		inFlight.incrementAndGet();
+		boolean failed = false;
+		try {
+			switch (operation) {
+			case STATUS:
+				// empty when the call failed
+				failed = !"OK".equals(wrapper.getChplStatus());
+				break;
+			case REFERENCE_DATA:
+				// null when the call failed
+				List<?> types = ThreadLocalRandom.current().nextBoolean() ? wrapper.getEducationTypes()
+						: wrapper.getPracticeTypes();
+				failed = types == null || types.isEmpty();
+				break;
+			case SEARCH:
+				try (Stream<Listing> found = wrapper.search(searchQuery)) {
+					failed = found.count() != listings;
+				}
+				break;
+			case DETAILS:
+				failed = wrapper.getListingDetails(1 + ThreadLocalRandom.current().nextInt(Math.max(1, listings)))
+						.getCertificationResults().isEmpty();
+				break;
+			}
+		} catch (IOException | RuntimeException e) {
+			failed = true;
+		} finally {
+			inFlight.decrementAndGet();
+		}
+		long latency = System.nanoTime() - scheduledNanos;
+		record(window.get(), operation, latency, failed);
+		record(total, operation, latency, failed);
+	}
+
+	private static void record(Map<String, Stats> window, Operation operation, long latencyNanos, boolean failed) {
+		for (Stats stats : new Stats[] { window.get(operation.label), window.get(ALL) }) {
+			stats.requests.increment();
+			if (failed) {
+				stats.errors.increment();
+			}
+			stats.latency.record(latencyNanos);
+		}
+	}
+
+	private void report(Report report, String window, Map<String, Stats> stats, long elapsedNanos)
+			throws IOException {
+		Map<String, Object> system = new LinkedHashMap<>();
+		PoolStats pool = wrapper.getPoolStats();
+		system.put("inFlight", inFlight.get());
+		system.put("dropped", dropped.sum());
+		system.put("leasedConnections", pool == null ? 0 : pool.getLeased());
+		system.put("pendingConnections", pool == null ? 0 : pool.getPending());
+		system.put("heapUsedMb", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20);
+		long gcCount = 0;
+		long gcMillis = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, gc.getCollectionCount());
+			gcMillis += Math.max(0, gc.getCollectionTime());
+		}
+		system.put("gcCount", gcCount);
+		system.put("gcMillis", gcMillis);
+
+		double seconds = elapsedNanos / 1e9;
+		for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+			LatencyHistogram.Snapshot latency = entry.getValue().latency.snapshot();
+			if (latency.getCount() > 0 || entry.getKey().equals(ALL)) {
+				report.row(row(window, entry.getKey(), entry.getValue().requests.sum(), entry.getValue().errors.sum(),
+						seconds, latency, system));
+			}
+		}
+		report.flush();
+		Stats all = stats.get(ALL);
+		long requests = all.requests.sum();
+		System.out.printf(Locale.ROOT, "%7s %8.1f req/s %6.2f%% errors p99 %7.1f ms %5d in flight %4d MB heap%n",
+				window.equals("total") ? window : window + "s", requests / seconds, requests == 0 ? 0.0 : 100.0 * all.errors.sum() / requests,
+				all.latency.snapshot().getValueAtQuantile(0.99) / NANOS_PER_MILLI, inFlight.get(),
+				system.get("heapUsedMb"));
+	}
+
+	private static Map<String, Object> row(String window, String operation, long requests, long errors, double seconds,
+			LatencyHistogram.Snapshot latency, Map<String, Object> system) {
+		Map<String, Object> row = new LinkedHashMap<>();
+		row.put("window", window);
+		row.put("operation", operation);
+		row.put("requests", requests);
+		row.put("throughputPerSecond", requests / seconds);
+		row.put("errors", errors);
+		row.put("errorRate", requests == 0 ? 0.0 : (double) errors / requests);
+		row.put("p50Millis", latency.getValueAtQuantile(0.50) / NANOS_PER_MILLI);
+		row.put("p90Millis", latency.getValueAtQuantile(0.90) / NANOS_PER_MILLI);
+		row.put("p99Millis", latency.getValueAtQuantile(0.99) / NANOS_PER_MILLI);
+		row.put("p999Millis", latency.getValueAtQuantile(0.999) / NANOS_PER_MILLI);
+		row.put("maxMillis", latency.getMax() / NANOS_PER_MILLI);
+		row.putAll(system);
+		return row;
+	}
+
+	/**
+	 * @return empty stats for every operation and for all of them together
+	 */
+	private static Map<String, Stats> newWindow() {
+		Map<String, Stats> stats = new LinkedHashMap<>();
+		for (Operation operation : Operation.values()) {
+			stats.put(operation.label, new Stats());
+		}
+		stats.put(ALL, new Stats());
+		return stats;
+	}
+
+	/**
+	 * @param mix - comma separated operation:weight pairs
+	 * @return operations repeated by weight, to pick from at random
+	 */
+	static Operation[] schedule(String mix) {
+		List<Operation> schedule = new ArrayList<>();
+		for (String entry : mix.split(",")) {
+			String[] parts = entry.trim().split(":");
+			Operation operation = Operation.of(parts[0]);
+			int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+			for (int i = 0; i < weight; i++) {
+				schedule.add(operation);
+			}
+		}
+		if (schedule.isEmpty()) {
+			throw new IllegalArgumentException("The mix " + mix + " has no operations");
+		}
+		return schedule.toArray(new Operation[0]);
+	}
+
+	/**
+	 * Rows written as CSV, or as a JSON array of objects when the file name ends in .json.
+	 * Flushed after every window so a soak run can be followed while it runs.
+	 */
+	abstract static class Report implements Closeable {
+		static Report open(String fileName) throws IOException {
+			Writer out = new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8);
+			return fileName.endsWith(".json") ? new JsonReport(out) : new CsvReport(out);
+		}
+
+		abstract void row(Map<String, Object> row) throws IOException;
+
+		abstract void flush() throws IOException;
+	}
+
+	private static final class CsvReport extends Report {
+		private final Writer out;
+		private boolean header = true;
+
+		CsvReport(Writer out) {
+			this.out = out;
+		}
+
+		@Override
+		void row(Map<String, Object> row) throws IOException {
+			if (header) {
+				out.write(String.join(",", row.keySet()));
+				out.write('\n');
+				header = false;
+			}
+			List<String> values = new ArrayList<>(row.size());
+			for (Object value : row.values()) {
+				values.add(value instanceof Double ? String.format(Locale.ROOT, "%.3f", value) : String.valueOf(value));
+			}
+			out.write(String.join(",", values));
+			out.write('\n');
+		}
+
+		@Override
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+		}
+	}
+
+	private static final class JsonReport extends Report {
+		private final JsonWriter out;
+
+		JsonReport(Writer out) throws IOException {
+			this.out = new JsonWriter(out);
+			this.out.setIndent("  ");
+			this.out.beginArray();
+		}
+
+		@Override
+		void row(Map<String, Object> row) throws IOException {
+			out.beginObject();
+			for (Map.Entry<String, Object> field : row.entrySet()) {
+				out.name(field.getKey());
+				if (field.getValue() instanceof Number) {
+					out.value((Number) field.getValue());
+				} else {
+					out.value(String.valueOf(field.getValue()));
+				}
+			}
+			out.endObject();
+		}
+
+		@Override
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.endArray();
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.ainq.chpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Extracting the names from the education types and listing details payloads four ways:
+ * <ul>
+ * <li>orgJson - read to a String and walk a {@link JSONObject} tree, as the wrapper originally did</li>
+ * <li>gsonTree - build a Gson {@link JsonElement} tree from the stream and walk it</li>
+ * <li>gsonStreaming - {@link StreamingJsonExtractor}, which the wrapper uses for names only</li>
+ * <li>typedModel - the model classes, read by the shared Gson's hand-written type adapters</li>
+ * </ul>
+ * All three decode UTF-8 from the raw bytes so the comparison includes character decoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+	@Param({ "educationTypes", "details" })
+	public String payload;
+
+	private byte[] body;
+	private String path;
+	private StreamingJsonExtractor extractor;
+
+	@Setup
+	public void setUp() throws IOException {
+		if ("details".equals(payload)) {
+			body = StubChplServer.fixture(StubChplServer.DETAILS_FIXTURE);
+			path = ChplApiWrapper.EDUCATION_TYPE_NAME_PATH;
+		} else {
+			body = StubChplServer.fixture(StubChplServer.EDUCATION_TYPES_FIXTURE);
+			path = "data.name";
+		}
+		extractor = new StreamingJsonExtractor(path);
+	}
+
+	@Benchmark
+	public Set<String> orgJson() throws IOException, JSONException {
+		Set<String> names = new HashSet<>();
+		collect(new JSONObject(IOUtils.toString(new ByteArrayInputStream(body), "UTF-8")), path.split("\\."), 0, names);
+		return names;
+	}
+
+	@Benchmark
+	public Set<String> gsonTree() {
+		Set<String> names = new HashSet<>();
+		JsonElement root = new JsonParser().parse(
+				new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+		collect(root, path.split("\\."), 0, names);
+		return names;
+	}
+
+	@Benchmark
+	public Set<String> gsonStreaming() throws IOException {
+		Set<String> names = new HashSet<>();
+		extractor.extract(new ByteArrayInputStream(body), (valuePath, value) -> names.add(value));
+		return names;
+	}
+
+	@Benchmark
+	public Set<String> typedModel() throws IOException {
+		if ("details".equals(payload)) {
+			return ChplJson.read(new ByteArrayInputStream(body), ListingDetails.class).getEducationTypeNames();
+		}
+		Set<String> names = new HashSet<>();
+		for (EducationType educationType : ChplJson.readList(new ByteArrayInputStream(body), EducationType.class, "data")) {
+			names.add(educationType.getName());
+		}
+		return names;
+	}
+
+	private static void collect(Object node, String[] path, int depth, Set<String> names) throws JSONException {
+		if (node instanceof JSONArray) {
+			JSONArray array = (JSONArray) node;
+			for (int i = 0; i < array.length(); i++) {
+				collect(array.get(i), path, depth, names);
+			}
+		} else if (depth == path.length) {
+			names.add(node.toString());
+		} else if (node instanceof JSONObject && ((JSONObject) node).has(path[depth])) {
+			collect(((JSONObject) node).get(path[depth]), path, depth + 1, names);
+		}
+	}
+
+	private static void collect(JsonElement node, String[] path, int depth, Set<String> names) {
+		if (node.isJsonArray()) {
+			for (JsonElement element : node.getAsJsonArray()) {
+				collect(element, path, depth, names);
+			}
+		} else if (depth == path.length) {
+			names.add(node.getAsString());
+		} else if (node.isJsonObject() && node.getAsJsonObject().has(path[depth])) {
+			collect(node.getAsJsonObject().get(path[depth]), path, depth + 1, names);
+		}
+	}
+}
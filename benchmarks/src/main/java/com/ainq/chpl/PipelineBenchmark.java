@@ -0,0 +1,65 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The whole {@link ChplApiWrapper#getEducationLevelsForSpecificListings()} pipeline: paged search,
+ * details fan-out and streaming extraction, for growing numbers of listings. The details cache
+ * is not configured, so every operation fetches every listing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+	@Param({ "10", "100", "1000", "10000" })
+	public int listings;
+
+	/**
+	 * Delay the stub adds to every response.
+	 */
+	@Param({ "0" })
+	public long latencyMillis;
+
+	private StubChplServer server;
+	private ChplApiWrapper wrapper;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new StubChplServer(listings, latencyMillis);
+		wrapper = ChplApiWrapper.newInstance(server.wrapperProperties());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		wrapper.close();
+		server.close();
+	}
+
+	@Benchmark
+	public Set<String> educationLevelsForSpecificListings() throws IOException, JSONException {
+		Set<String> names = wrapper.getEducationLevelsForSpecificListings();
+		if (names.isEmpty()) {
+			throw new IllegalStateException("No education levels extracted, check the stub server");
+		}
+		return names;
+	}
+}
@@ -0,0 +1,77 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of {@link ChplApiWrapper#sendRequest} against the stub server: connection pool,
+ * request guard and metrics, with the body drained rather than parsed. Coalescing is off so
+ * that concurrent threads asking for the same URL each make their own request.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j.configuration=log4j-benchmarks.properties")
+@Threads(4)
+@State(Scope.Benchmark)
+public class SendRequestBenchmark {
+	private static final ChplApiWrapper.BodyReader<Long> DRAIN = SendRequestBenchmark::drain;
+
+	/**
+	 * Endpoint requested: the small education types list or a ~100 KB listing details document.
+	 */
+	@Param({ ChplApiWrapper.EDUCATION_TYPES_ENDPOINT, ChplApiWrapper.DETAILS_ENDPOINT })
+	public String endpoint;
+
+	private StubChplServer server;
+	private ChplApiWrapper wrapper;
+	private String url;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new StubChplServer(0, 0);
+		Properties properties = server.wrapperProperties();
+		properties.setProperty(ChplApiWrapper.COALESCE_REQUESTS_PROPERTY, "false");
+		wrapper = ChplApiWrapper.newInstance(properties);
+		url = ChplApiWrapper.DETAILS_ENDPOINT.equals(endpoint)
+				? String.format(wrapper.getEndpoints().get(endpoint), "9261")
+				: wrapper.getEndpoints().get(endpoint);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		wrapper.close();
+		server.close();
+	}
+
+	@Benchmark
+	public long sendRequest() throws IOException {
+		return wrapper.sendRequest(endpoint, url, DRAIN);
+	}
+
+	private static Long drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		for (int read; (read = in.read(buffer)) >= 0;) {
+			total += read;
+		}
+		return total;
+	}
+}
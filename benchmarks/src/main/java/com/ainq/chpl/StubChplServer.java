@@ -0,0 +1,245 @@
+package com.ainq.chpl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP server answering the CHPL endpoints used by {@link ChplApiWrapper}:
+ * <ul>
+ * <li>/rest/status</li>
+ * <li>/rest/data/education_types and /rest/data/practice_types from the fixtures</li>
+ * <li>/rest/search, paged with pageNumber and pageSize, over a configurable number of synthetic listings</li>
+ * <li>/rest/certified_products/{id}/certification_results, the same details fixture for every id,
+ * optionally with its certification results repeated to make it larger</li>
+ * </ul>
+ * Every response can be delayed by a fixed latency to mimic a remote API.
+ */
+final class StubChplServer implements AutoCloseable {
+	static final String EDUCATION_TYPES_FIXTURE = "fixtures/education_types.json";
+	static final String PRACTICE_TYPES_FIXTURE = "fixtures/practice_types.json";
+	static final String DETAILS_FIXTURE = "fixtures/certification_results.json";
+
+	private static final String CONTEXT = "/rest";
+	private static final String DETAILS_SUFFIX = "/certification_results";
+
+	static {
+		// the JDK server writes headers and body separately; without TCP_NODELAY every response waits on a delayed ACK
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] educationTypes;
+	private final byte[] practiceTypes;
+	private final byte[] details;
+	private final int listingCount;
+	private final long latencyMillis;
+
+	/**
+	 * Start a server on an ephemeral loopback port.
+	 * @param listingCount - listings returned by the search endpoint
+	 * @param latencyMillis - delay added before every response, 0 for none
+	 * @throws IOException - if the fixtures cannot be read or the server cannot bind
+	 */
+	StubChplServer(int listingCount, long latencyMillis) throws IOException {
+		this(listingCount, latencyMillis, 1);
+	}
+
+	/**
+	 * Start a server on an ephemeral loopback port.
+	 * @param listingCount - listings returned by the search endpoint
+	 * @param latencyMillis - delay added before every response, 0 for none
+	 * @param detailsScale - times the fixture's certification results are repeated in a details
+	 * response, 1 for the ~100 KB fixture as is
+	 * @throws IOException - if the fixtures cannot be read or the server cannot bind
+	 */
+	StubChplServer(int listingCount, long latencyMillis, int detailsScale) throws IOException {
+		this.listingCount = listingCount;
+		this.latencyMillis = latencyMillis;
+		this.educationTypes = fixture(EDUCATION_TYPES_FIXTURE);
+		this.practiceTypes = fixture(PRACTICE_TYPES_FIXTURE);
+		this.details = scaleDetails(fixture(DETAILS_FIXTURE), detailsScale);
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 256);
+		this.executor = Executors.newFixedThreadPool(32, new DaemonThreadFactory("stub-chpl"));
+		server.setExecutor(executor);
+		server.createContext(CONTEXT, this::handle);
+		server.start();
+	}
+
+	/**
+	 * @return base URL of the API, for the chplApiUrlBegin property
+	 */
+	String getBaseUrl() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + CONTEXT;
+	}
+
+	/**
+	 * Settings pointing a {@link ChplApiWrapper} at this server. The rate limiter and retries are
+	 * off and the connection pool is sized for concurrent benchmark threads.
+	 * @return properties for {@link ChplApiWrapper#newInstance(Properties)}
+	 */
+	Properties wrapperProperties() {
+		Properties properties = new Properties();
+		properties.setProperty("apiKey", "benchmark");
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY, getBaseUrl());
+		properties.setProperty("statusApi", "/status");
+		properties.setProperty("educationTypesApi", "/data/education_types");
+		properties.setProperty("practiceTypeNamesApi", "/data/practice_types");
+		properties.setProperty("searchApi", "/search?certificationEditions=2015");
+		properties.setProperty("detailsApi", "/certified_products/%s/certification_results");
+		properties.setProperty(ChplApiWrapper.DETAILS_PARALLELISM_PROPERTY, "8");
+		properties.setProperty(PooledHttpClient.MAX_CONNECTIONS_TOTAL_PROPERTY, "64");
+		properties.setProperty(PooledHttpClient.MAX_CONNECTIONS_PER_ROUTE_PROPERTY, "64");
+		properties.setProperty(ChplApiWrapper.RATE_LIMIT_PROPERTY, "0");
+		properties.setProperty(ChplApiWrapper.RETRY_MAX_ATTEMPTS_PROPERTY, "1");
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		return properties;
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @param name - classpath resource
+	 * @return its content
+	 * @throws IOException - if it is missing or cannot be read
+	 */
+	static byte[] fixture(String name) throws IOException {
+		try (InputStream in = StubChplServer.class.getClassLoader().getResourceAsStream(name)) {
+			if (in == null) {
+				throw new IOException(name + " is not on the classpath");
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read; (read = in.read(buffer)) >= 0;) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * @param details - details document
+	 * @param scale - times its certification results are repeated
+	 * @return the document with scale copies of each certification result
+	 */
+	static byte[] scaleDetails(byte[] details, int scale) {
+		if (scale <= 1) {
+			return details;
+		}
+		JsonObject document = new JsonParser().parse(new String(details, StandardCharsets.UTF_8)).getAsJsonObject();
+		JsonArray results = document.getAsJsonArray("certificationResults");
+		JsonArray scaled = new JsonArray();
+		for (int copy = 0; copy < scale; copy++) {
+			scaled.addAll(results);
+		}
+		document.add("certificationResults", scaled);
+		return document.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param pageNumber - zero based page
+	 * @param pageSize - listings per page
+	 * @param listingCount - total listings matching the search
+	 * @return search response shaped like the CHPL one
+	 */
+	static byte[] searchPage(int pageNumber, int pageSize, int listingCount) {
+		StringBuilder json = new StringBuilder(pageSize * 400);
+		json.append("{\"recordCount\":").append(listingCount).append(",\"results\":[");
+		int first = pageNumber * pageSize;
+		int last = Math.min(listingCount, first + pageSize);
+		for (int id = first; id < last; id++) {
+			if (id > first) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(id + 1)
+					.append(",\"chplProductNumber\":\"15.04.04.").append(2000 + id % 1000).append(".Prod.01.00.1.170301\"")
+					.append(",\"edition\":{\"id\":3,\"name\":\"2015\"}")
+					.append(",\"developer\":{\"id\":").append(id % 500).append(",\"name\":\"Developer ").append(id % 500).append("\"}")
+					.append(",\"product\":{\"id\":").append(id).append(",\"name\":\"Product ").append(id).append("\"}")
+					.append(",\"version\":{\"id\":").append(id).append(",\"version\":\"").append(1 + id % 9).append(".0\"}")
+					.append(",\"certificationStatus\":{\"id\":1,\"name\":\"Active\"}")
+					.append(",\"certificationDate\":").append(1488326400000L + id * 60000L)
+					.append(",\"lastModifiedDate\":").append(1490000000000L + id * 60000L).append('}');
+		}
+		json.append("]}");
+		return json.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (latencyMillis > 0) {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			}
+			URI uri = exchange.getRequestURI();
+			String path = uri.getPath().substring(CONTEXT.length());
+			if (path.equals("/status")) {
+				respond(exchange, 200, "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8));
+			} else if (path.equals("/data/education_types")) {
+				respond(exchange, 200, educationTypes);
+			} else if (path.equals("/data/practice_types")) {
+				respond(exchange, 200, practiceTypes);
+			} else if (path.equals("/search")) {
+				Map<String, String> query = parseQuery(uri.getRawQuery());
+				int pageNumber = Integer.parseInt(query.getOrDefault(SearchQuery.PAGE_NUMBER, "0"));
+				int pageSize = Integer.parseInt(query.getOrDefault(SearchQuery.PAGE_SIZE,
+						String.valueOf(SearchQuery.DEFAULT_PAGE_SIZE)));
+				respond(exchange, 200, searchPage(pageNumber, pageSize, listingCount));
+			} else if (path.startsWith("/certified_products/") && path.endsWith(DETAILS_SUFFIX)) {
+				respond(exchange, 200, details);
+			} else {
+				respond(exchange, 404, "{\"error\":\"Not found\"}".getBytes(StandardCharsets.UTF_8));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json;charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String rawQuery) {
+		Map<String, String> query = new HashMap<>();
+		if (rawQuery == null) {
+			return query;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0) {
+				query.put(pair.substring(0, eq), pair.substring(eq + 1));
+			}
+		}
+		return query;
+	}
+}
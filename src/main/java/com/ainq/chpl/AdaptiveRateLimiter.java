@@ -0,0 +1,109 @@
+package com.ainq.chpl;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket that adapts its refill rate to the server: the rate is halved on every 429
+ * (and all callers pause for the Retry-After the server asked for), and creeps back up by
+ * a fixed step per successful request until it reaches the configured ceiling again.
+ */
+class AdaptiveRateLimiter {
+	private static final double MIN_RATE = 0.5;
+
+	private final double maxRate;
+	private final double burst;
+	private final double increasePerSuccess;
+	private double rate;
+	private double tokens;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+
+	/**
+	 * @param maxRatePerSecond - sustained requests per second when the server is healthy
+	 * @param burst - requests that may be sent back to back after an idle period
+	 */
+	AdaptiveRateLimiter(double maxRatePerSecond, int burst) {
+		this.maxRate = maxRatePerSecond;
+		this.burst = Math.max(1, burst);
+		this.increasePerSuccess = Math.max(0.01, maxRatePerSecond / 100);
+		this.rate = maxRatePerSecond;
+		this.tokens = this.burst;
+		this.lastRefillNanos = System.nanoTime();
+	}
+
+	/**
+	 * Block until a request may be sent.
+	 * @throws InterruptedIOException - if interrupted while waiting
+	 */
+	void acquire() throws InterruptedIOException {
+		while (true) {
+			long waitNanos;
+			synchronized (this) {
+				long now = System.nanoTime();
+				refill(now);
+				if (now < pausedUntilNanos) {
+					waitNanos = pausedUntilNanos - now;
+				} else if (tokens >= 1) {
+					tokens -= 1;
+					return;
+				} else {
+					waitNanos = (long) ((1 - tokens) / rate * TimeUnit.SECONDS.toNanos(1));
+				}
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the rate limiter");
+			}
+		}
+	}
+
+	/**
+	 * Take a permit only if one is available without waiting.
+	 * @return true if a request may be sent now
+	 */
+	synchronized boolean tryAcquire() {
+		long now = System.nanoTime();
+		refill(now);
+		if (now < pausedUntilNanos || tokens < 1) {
+			return false;
+		}
+		tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * The server accepted a request: increase the rate additively.
+	 */
+	synchronized void onSuccess() {
+		rate = Math.min(maxRate, rate + increasePerSuccess);
+	}
+
+	/**
+	 * The server throttled a request: halve the rate and pause for the requested delay.
+	 * @param retryAfterMillis - the server's Retry-After, or a negative value if it sent none
+	 */
+	synchronized void onThrottled(long retryAfterMillis) {
+		long now = System.nanoTime();
+		refill(now);
+		rate = Math.max(MIN_RATE, rate / 2);
+		tokens = Math.min(tokens, 0);
+		if (retryAfterMillis > 0) {
+			pausedUntilNanos = Math.max(pausedUntilNanos, now + TimeUnit.MILLISECONDS.toNanos(retryAfterMillis));
+		}
+	}
+
+	/**
+	 * @return current refill rate in requests per second
+	 */
+	synchronized double getRate() {
+		return rate;
+	}
+
+	private void refill(long now) {
+		tokens = Math.min(burst, tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+		lastRefillNanos = now;
+	}
+}
@@ -0,0 +1,86 @@
+package com.ainq.chpl;
+
+/**
+ * Last known health of the CHPL API as seen by the background status checks of
+ * {@link ChplApiWrapper#getHealth()}. Instances are immutable.
+ */
+public final class ApiHealth {
+	/**
+	 * UNKNOWN until the first check has finished, DOWN after enough consecutive failed checks.
+	 */
+	public enum State {
+		UNKNOWN, UP, DOWN
+	}
+
+	static final ApiHealth UNKNOWN = new ApiHealth(State.UNKNOWN, "", -1, 0, 0, 0);
+
+	private final State state;
+	private final String status;
+	private final long latencyMillis;
+	private final int consecutiveFailures;
+	private final long checkedAtMillis;
+	private final long stateSinceMillis;
+
+	ApiHealth(State state, String status, long latencyMillis, int consecutiveFailures, long checkedAtMillis,
+			long stateSinceMillis) {
+		this.state = state;
+		this.status = status;
+		this.latencyMillis = latencyMillis;
+		this.consecutiveFailures = consecutiveFailures;
+		this.checkedAtMillis = checkedAtMillis;
+		this.stateSinceMillis = stateSinceMillis;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * @return true while the API is UP
+	 */
+	public boolean isUp() {
+		return state == State.UP;
+	}
+
+	/**
+	 * @return reason phrase of the last status response as returned by {@link ChplApiWrapper#getChplStatus()},
+	 * e.g. "OK", or empty when the API could not be reached
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return duration of the last check, or -1 before the first
+	 */
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+
+	/**
+	 * @return failed checks since the last successful one
+	 */
+	public int getConsecutiveFailures() {
+		return consecutiveFailures;
+	}
+
+	/**
+	 * @return when the last check finished, epoch milliseconds, or 0 before the first
+	 */
+	public long getCheckedAtMillis() {
+		return checkedAtMillis;
+	}
+
+	/**
+	 * @return when the API entered its current state, epoch milliseconds, or 0 before the first check
+	 */
+	public long getStateSinceMillis() {
+		return stateSinceMillis;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s status=\"%s\" latency=%dms consecutiveFailures=%d", state, status, latencyMillis,
+				consecutiveFailures);
+	}
+}
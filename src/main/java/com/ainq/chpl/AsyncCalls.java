@@ -0,0 +1,91 @@
+package com.ainq.chpl;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs blocking wrapper calls on an executor and exposes them as {@link CompletableFuture}s
+ * whose {@code cancel} interrupts the thread running the call. Interruption does not unblock the
+ * socket I/O of the pooled HttpClient 4 client, so a request in flight runs to completion or to its
+ * socket timeout; the cancellation takes effect when the call next waits or starts a request.
+ */
+final class AsyncCalls {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AsyncCalls.class);
+
+	static final String VIRTUAL = "virtual";
+	static final String FIXED = "fixed";
+	static final String CACHED = "cached";
+
+	private AsyncCalls() {
+	}
+
+	/**
+	 * Create the executor for asynchronous calls.
+	 * @param type - "virtual" for a virtual thread per task when the JVM supports it (falling back
+	 * to "cached"), "fixed" for a pool of {@code threads} platform threads, "cached" for an unbounded pool
+	 * @param threads - pool size for the "fixed" type
+	 * @return the executor
+	 */
+	static ExecutorService newExecutor(String type, int threads) {
+		if (FIXED.equalsIgnoreCase(type)) {
+			return Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory("chpl-async"));
+		}
+		if (VIRTUAL.equalsIgnoreCase(type)) {
+			try {
+				Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService) factory.invoke(null);
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				LOGGER.info("Virtual threads are not available on this JVM, using a cached thread pool");
+			}
+		}
+		return Executors.newCachedThreadPool(new DaemonThreadFactory("chpl-async"));
+	}
+
+	/**
+	 * Run a call asynchronously.
+	 * @param call - blocking call
+	 * @param executor - runs the call
+	 * @return a future completed with the call's result or exception; cancelling it interrupts the call,
+	 *         which stops it between requests
+	 */
+	static <T> CompletableFuture<T> supply(Callable<T> call, ExecutorService executor) {
+		InterruptibleFuture<T> future = new InterruptibleFuture<>();
+		future.task = executor.submit(() -> {
+			if (future.isDone()) {
+				return;
+			}
+			try {
+				future.complete(call.call());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Cancelling this future also cancels the underlying task with interruption, which does not
+	 * abort a request already in flight. Futures derived from it with {@code thenApply} and friends
+	 * do not propagate their own cancellation back here.
+	 */
+	private static final class InterruptibleFuture<T> extends CompletableFuture<T> {
+		private volatile Future<?> task;
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			Future<?> running = task;
+			if (cancelled && running != null) {
+				running.cancel(true);
+			}
+			return cancelled;
+		}
+	}
+}
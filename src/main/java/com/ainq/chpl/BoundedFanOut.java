@@ -0,0 +1,142 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs one task per item on a shared executor, with at most {@code parallelism}
+ * tasks in flight and a time limit on each individual task.
+ * The first failure or timeout cancels every task that has not finished yet.
+ */
+class BoundedFanOut {
+
+	/**
+	 * Work applied to each item of a batch.
+	 * @param <T> item type
+	 */
+	interface Task<T> {
+		void apply(T item) throws IOException;
+	}
+
+	private final ExecutorService executor;
+	private final long timeoutNanos;
+
+	/**
+	 * @param executor - executor whose thread count bounds the parallelism
+	 * @param timeoutMillis - maximum time a single task may run, 0 for no limit
+	 */
+	BoundedFanOut(ExecutorService executor, long timeoutMillis) {
+		this.executor = executor;
+		this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	/**
+	 * Apply the task to every item and wait for all of them to complete.
+	 * @param items - items to process
+	 * @param task - work to run for each item
+	 * @throws IOException - if a task failed, timed out or the caller was interrupted
+	 */
+	<T> void forEach(Collection<T> items, Task<T> task) throws IOException {
+		CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+		Set<TimedCall<T>> running = ConcurrentHashMap.newKeySet();
+		List<Future<Void>> futures = new ArrayList<>(items.size());
+		try {
+			for (T item : items) {
+				futures.add(completion.submit(new TimedCall<>(item, task, running)));
+			}
+			for (int pending = futures.size(); pending > 0; pending--) {
+				Future<Void> done = awaitNext(completion, running);
+				done.get();
+			}
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for listing details", e);
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the next task to complete, failing as soon as any running task
+	 * has been in flight for longer than the per-task timeout.
+	 */
+	private <T> Future<Void> awaitNext(CompletionService<Void> completion, Set<TimedCall<T>> running)
+			throws InterruptedException, IOException {
+		while (true) {
+			if (timeoutNanos <= 0) {
+				return completion.take();
+			}
+			long now = System.nanoTime();
+			long waitNanos = timeoutNanos;
+			for (TimedCall<T> call : running) {
+				long remaining = call.startNanos + timeoutNanos - now;
+				if (remaining <= 0) {
+					throw new IOException(String.format("Request for %s did not complete within %d ms",
+							call.item, TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), new TimeoutException());
+				}
+				waitNanos = Math.min(waitNanos, remaining);
+			}
+			Future<Void> done = completion.poll(waitNanos, TimeUnit.NANOSECONDS);
+			if (done != null) {
+				return done;
+			}
+		}
+	}
+
+	private static IOException unwrap(Throwable cause) {
+		if (cause instanceof IOException) {
+			return (IOException) cause;
+		}
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		return new IOException(cause);
+	}
+
+	/**
+	 * Callable that records when it started so the caller can enforce the per-task timeout.
+	 */
+	private static final class TimedCall<T> implements Callable<Void> {
+		private final T item;
+		private final Task<T> task;
+		private final Set<TimedCall<T>> running;
+		private volatile long startNanos;
+
+		TimedCall(T item, Task<T> task, Set<TimedCall<T>> running) {
+			this.item = item;
+			this.task = task;
+			this.running = running;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			startNanos = System.nanoTime();
+			running.add(this);
+			try {
+				task.apply(item);
+				return null;
+			} finally {
+				running.remove(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The outcome of one certification criterion for a listing. Test tools, procedures and
+ * the other free-text fields of the details response are skipped while reading.
+ * Instances are immutable.
+ */
+public final class CertificationResult {
+	private final long id;
+	private final String number;
+	private final String title;
+	private final boolean success;
+	private final boolean sed;
+
+	CertificationResult(long id, String number, String title, boolean success, boolean sed) {
+		this.id = id;
+		this.number = number;
+		this.title = title;
+		this.success = success;
+		this.sed = sed;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * @return criterion number, such as "170.315 (a)(1)"
+	 */
+	public String getNumber() {
+		return number;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return whether the criterion requires safety-enhanced design testing
+	 */
+	public boolean isSed() {
+		return sed;
+	}
+
+	@Override
+	public String toString() {
+		return "CertificationResult [id=" + id + ", number=" + number + ", success=" + success + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<CertificationResult> {
+		@Override
+		public CertificationResult read(JsonReader reader) throws IOException {
+			long id = 0;
+			String number = null, title = null;
+			boolean success = false, sed = false;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "number":
+					number = ChplJson.nextString(reader);
+					break;
+				case "title":
+					title = ChplJson.nextString(reader);
+					break;
+				case "success":
+					success = ChplJson.nextBoolean(reader);
+					break;
+				case "sed":
+					sed = ChplJson.nextBoolean(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new CertificationResult(id, number, title, success, sed);
+		}
+
+		@Override
+		public void write(JsonWriter writer, CertificationResult result) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(result.id);
+			writer.name("number").value(result.number);
+			writer.name("title").value(result.title);
+			writer.name("success").value(result.success);
+			writer.name("sed").value(result.sed);
+			writer.endObject();
+		}
+	}
+}
@@ -1,23 +1,43 @@
 package com.ainq.chpl;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.HttpVersion;
-import org.apache.http.client.fluent.Request;
+import org.apache.http.StatusLine;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.pool.PoolStats;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class ChplApiWrapper {
+public class ChplApiWrapper implements Closeable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ChplApiWrapper.class);
 	private static final String PROPERTIES_FILE_NAME = "environment.properties";
 	private static ChplApiWrapper instance = null;
@@ -29,23 +49,137 @@ public class ChplApiWrapper {
 	public static final String SEARCH_ENDPOINT = "searchApi";
 	public static final String DETAILS_ENDPOINT = "detailsApi";
 
+	public static final String DETAILS_PARALLELISM_PROPERTY = "detailsParallelism";
+	public static final String DETAILS_TIMEOUT_PROPERTY = "detailsTimeoutMillis";
+	public static final String REFERENCE_DATA_TTL_PROPERTY = "referenceDataTtlMillis";
+	public static final String DETAILS_CACHE_DIR_PROPERTY = "detailsCacheDir";
+	public static final String DETAILS_CACHE_MAX_BYTES_PROPERTY = "detailsCacheMaxBytes";
+	public static final String DETAILS_CACHE_TTL_PROPERTY = "detailsCacheTtlMillis";
+	public static final String ASYNC_EXECUTOR_PROPERTY = "asyncExecutor";
+	public static final String ASYNC_THREADS_PROPERTY = "asyncThreads";
+	public static final String COALESCE_REQUESTS_PROPERTY = "coalesceRequests";
+	public static final String RATE_LIMIT_PROPERTY = "rateLimitPerSecond";
+	public static final String RATE_LIMIT_BURST_PROPERTY = "rateLimitBurst";
+	public static final String RETRY_MAX_ATTEMPTS_PROPERTY = "retryMaxAttempts";
+	public static final String RETRY_BASE_DELAY_PROPERTY = "retryBaseDelayMillis";
+	public static final String RETRY_MAX_DELAY_PROPERTY = "retryMaxDelayMillis";
+	public static final String CIRCUIT_FAILURE_THRESHOLD_PROPERTY = "circuitFailureThreshold";
+	public static final String CIRCUIT_OPEN_PROPERTY = "circuitOpenMillis";
+	public static final String TRANSPORT_PROPERTY = "transport";
+	public static final String TRANSPORT_DIR_PROPERTY = "transportDir";
+	public static final String REPLAY_LATENCY_PROPERTY = "replayLatencyMillis";
+	public static final String HTTP_COMPRESSION_PROPERTY = "httpCompression";
+	public static final String SNAPSHOT_DIR_PROPERTY = "snapshotDir";
+	public static final String SNAPSHOT_SEARCH_PROPERTY = "snapshotSearch";
+	public static final String JMX_ENABLED_PROPERTY = "jmxEnabled";
+	public static final String WARM_UP_PROPERTY = "warmUp";
+	public static final String WARM_UP_CONNECTIONS_PROPERTY = "warmUpConnections";
+	public static final String LOG_RATE_PROPERTY = "logRatePerEndpoint";
+	public static final String LOG_PAYLOAD_SAMPLE_RATE_PROPERTY = "logPayloadSampleRate";
+	public static final String LOG_PAYLOAD_MAX_BYTES_PROPERTY = "logPayloadMaxBytes";
+	public static final String HEDGE_DETAILS_PROPERTY = "hedgeDetails";
+	public static final String HEDGE_PERCENTILE_PROPERTY = "hedgePercentile";
+	public static final String HEDGE_MIN_DELAY_PROPERTY = "hedgeMinDelayMillis";
+	public static final String HEDGE_BUDGET_PERCENT_PROPERTY = "hedgeBudgetPercent";
+	public static final String HEALTH_MONITOR_PROPERTY = "healthMonitor";
+	public static final String HEALTH_CHECK_INTERVAL_PROPERTY = "healthCheckIntervalMillis";
+	public static final String HEALTH_FAILURE_THRESHOLD_PROPERTY = "healthFailureThreshold";
+
+	static final String EDUCATION_TYPE_NAME_PATH = "sed.testTasks.testParticipants.educationTypeName";
+	private static final StreamingJsonExtractor EDUCATION_TYPE_NAME_EXTRACTOR =
+			new StreamingJsonExtractor(EDUCATION_TYPE_NAME_PATH);
+	private static final BodyReader<Set<String>> EDUCATION_TYPE_NAMES_READER = in -> {
+		Set<String> names = new HashSet<>();
+		EDUCATION_TYPE_NAME_EXTRACTOR.extract(in, (path, value) -> names.add(value));
+		return Collections.unmodifiableSet(names);
+	};
+	private static final BodyReader<byte[]> BODY_BYTES_READER = IOUtils::toByteArray;
+	private static final BodyReader<SearchPage> SEARCH_PAGE_READER = SearchPage::read;
+	private static final BodyReader<ListingDetails> LISTING_DETAILS_READER =
+			in -> ChplJson.read(in, ListingDetails.class);
+
 	private final Map<String, String> endpoints = new HashMap<>();
 	private final Properties properties;
 	private final String apiKey;
+	private final PooledHttpClient httpClient;
+	private final ChplTransport transport;
+	private final boolean compression;
+	private final int detailsParallelism;
+	private final long detailsTimeoutMillis;
+	private volatile ExecutorService detailsExecutor;
+	private final long referenceDataTtlMillis;
+	private final ExecutorService referenceDataRefresher =
+			Executors.newSingleThreadExecutor(new DaemonThreadFactory("chpl-reference-data"));
+	private final ReferenceDataCache<ReferenceData<EducationType>> educationTypes;
+	private final ReferenceDataCache<ReferenceData<PracticeType>> practiceTypes;
+	private final ListingDetailsStore detailsStore;
+	private final ExecutorService searchPrefetcher =
+			Executors.newCachedThreadPool(new DaemonThreadFactory("chpl-search"));
+	private final ExecutorService asyncExecutor;
+	private final boolean coalesceRequests;
+	private final SingleFlight<RequestKey, Object> inFlightRequests = new SingleFlight<>();
+	private final CircuitBreaker circuitBreaker;
+	private final RequestGuard requestGuard;
+	private final HedgedRequests detailsHedging;
+	private final HealthMonitor healthMonitor;
+	private final ChplMetrics metrics;
+	private final LogRateLimiter logLimiter;
+	private final PayloadLog payloadLog;
+	private final CompletableFuture<Void> readiness;
 
 	/**
 	 * private constructor to force not to create instance from outside of this class.
 	 */
 	private ChplApiWrapper() {
-		try {
-			this.properties = loadProperties();
-			this.apiKey = this.properties.getProperty("apiKey");
-			this.populateServiceUrls();
-		} catch (IOException ex) {
-			String errorMsg = String.format("Could not read properties from file {}", PROPERTIES_FILE_NAME);
-			LOGGER.error(errorMsg, ex);
-			throw new RuntimeException(errorMsg, ex);
+		this(loadProperties());
+	}
+
+	/**
+	 * @param properties - settings normally read from environment.properties
+	 */
+	private ChplApiWrapper(Properties properties) {
+		this.properties = properties;
+		this.apiKey = this.properties.getProperty("apiKey");
+		ChplConfig config = new ChplConfig(this.properties);
+		this.logLimiter = new LogRateLimiter(config.getInt(LOG_RATE_PROPERTY, 10));
+		this.payloadLog = new PayloadLog(config.getInt(LOG_PAYLOAD_SAMPLE_RATE_PROPERTY, 100),
+				config.getInt(LOG_PAYLOAD_MAX_BYTES_PROPERTY, 1024));
+		this.metrics = new ChplMetrics(config.getBoolean(JMX_ENABLED_PROPERTY, true));
+		String transportType = config.getString(TRANSPORT_PROPERTY, ChplTransport.HTTP);
+		ChplTransport http2 = ChplTransport.HTTP2.equals(transportType) ? openHttp2Transport(config) : null;
+		this.httpClient = ChplTransport.REPLAY.equals(transportType) || http2 != null ? null : new PooledHttpClient(config);
+		this.transport = http2 != null ? http2 : openTransport(transportType, config);
+		this.compression = config.getBoolean(HTTP_COMPRESSION_PROPERTY, true);
+		this.detailsParallelism = config.getInt(DETAILS_PARALLELISM_PROPERTY, 1);
+		this.detailsTimeoutMillis = config.getLong(DETAILS_TIMEOUT_PROPERTY, 30000);
+		this.referenceDataTtlMillis = config.getLong(REFERENCE_DATA_TTL_PROPERTY, TimeUnit.HOURS.toMillis(1));
+		this.educationTypes = newReferenceDataCache(EDUCATION_TYPES_ENDPOINT, EducationType.class, EducationType::getName);
+		this.practiceTypes = newReferenceDataCache(PRACTICE_TYPE_NAMES_ENDPOINT, PracticeType.class, PracticeType::getName);
+		this.detailsStore = openDetailsStore(config);
+		this.asyncExecutor = AsyncCalls.newExecutor(config.getString(ASYNC_EXECUTOR_PROPERTY, AsyncCalls.VIRTUAL),
+				config.getInt(ASYNC_THREADS_PROPERTY, 16));
+		this.coalesceRequests = config.getBoolean(COALESCE_REQUESTS_PROPERTY, true);
+		this.circuitBreaker = new CircuitBreaker(config.getInt(CIRCUIT_FAILURE_THRESHOLD_PROPERTY, 5),
+				config.getLong(CIRCUIT_OPEN_PROPERTY, 30000));
+		int rateLimit = config.getInt(RATE_LIMIT_PROPERTY, 0);
+		this.requestGuard = new RequestGuard(
+				rateLimit > 0 ? new AdaptiveRateLimiter(rateLimit, config.getInt(RATE_LIMIT_BURST_PROPERTY, rateLimit)) : null,
+				circuitBreaker, config.getInt(RETRY_MAX_ATTEMPTS_PROPERTY, 3),
+				config.getLong(RETRY_BASE_DELAY_PROPERTY, 200), config.getLong(RETRY_MAX_DELAY_PROPERTY, 10000));
+		this.detailsHedging = config.getBoolean(HEDGE_DETAILS_PROPERTY, false)
+				? new HedgedRequests(metrics.endpoint(DETAILS_ENDPOINT), config.getInt(HEDGE_PERCENTILE_PROPERTY, 95) / 100.0,
+						config.getLong(HEDGE_MIN_DELAY_PROPERTY, 20), config.getInt(HEDGE_BUDGET_PERCENT_PROPERTY, 5),
+						requestGuard::tryAcquirePermit)
+				: null;
+		this.populateServiceUrls();
+		this.healthMonitor = new HealthMonitor(this::requestStatus, config.getLong(HEALTH_CHECK_INTERVAL_PROPERTY, 30000),
+				config.getInt(HEALTH_FAILURE_THRESHOLD_PROPERTY, 2));
+		if (config.getBoolean(HEALTH_MONITOR_PROPERTY, false)) {
+			healthMonitor.start();
 		}
+		this.readiness = config.getBoolean(WARM_UP_PROPERTY, false)
+				? warmUp(config.getInt(WARM_UP_CONNECTIONS_PROPERTY, 3))
+				: CompletableFuture.completedFuture(null);
 	}
 
 	/**
@@ -62,7 +196,130 @@ public class ChplApiWrapper {
 		} 
 		return instance;
 	}
+
+	/**
+	 * Create a separate instance from the given settings instead of the classpath
+	 * environment.properties, e.g. to point at a stub server in benchmarks and load tests.
+	 * Most callers should use {@link #getInstance()}. The caller owns the instance and must
+	 * {@link #close()} it to release its threads, connections and JMX registrations.
+	 * @param properties - same keys as environment.properties
+	 * @return a new, independent instance
+	 */
+	public static ChplApiWrapper newInstance(Properties properties) {
+		Properties trimmed = new Properties();
+		for (String key : properties.stringPropertyNames()) {
+			trimmed.setProperty(key, properties.getProperty(key).trim());
+		}
+		return new ChplApiWrapper(trimmed);
+	}
 	
+	/**
+	 * Stop the health checks and the wrapper's threads, close its connections and the details
+	 * cache, and unregister its JMX metrics. Calls in flight fail. Only for instances created with
+	 * {@link #newInstance(Properties)}; the shared {@link #getInstance()} lives as long as the JVM.
+	 * @throws IOException - if the transport or the details cache could not be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		healthMonitor.stop();
+		if (detailsHedging != null) {
+			detailsHedging.close();
+		}
+		asyncExecutor.shutdownNow();
+		searchPrefetcher.shutdownNow();
+		referenceDataRefresher.shutdownNow();
+		synchronized (this) {
+			if (detailsExecutor != null) {
+				detailsExecutor.shutdownNow();
+			}
+		}
+		metrics.close();
+		try {
+			transport.close();
+		} finally {
+			if (detailsStore != null) {
+				detailsStore.close();
+			}
+		}
+	}
+
+	/**
+	 * Log a failed call, at most {@value #LOG_RATE_PROPERTY} times a second per endpoint
+	 * so that an outage of the API does not flood the log.
+	 * @param endpoint - key of the endpoint URL
+	 * @param apiProperty - property holding the endpoint's path
+	 * @param e - the failure
+	 */
+	private void logFailure(String endpoint, String apiProperty, Exception e) {
+		long dropped = logLimiter.acquire("failure " + endpoint);
+		if (dropped < 0) {
+			return;
+		}
+		LOGGER.error("Failed to make call to {}: {}{}", endpoints.get(endpoint), e.toString(),
+				dropped > 0 ? " (" + dropped + " similar failures dropped)" : "");
+		LOGGER.error("Please check that the {} and {} properties are configured correctly in {}",
+				CHPL_API_URL_BEGIN_PROPERTY, apiProperty, PROPERTIES_FILE_NAME);
+	}
+
+	/**
+	 * Completes when the warm-up turned on by {@value #WARM_UP_PROPERTY} is over, and is already
+	 * complete when warm-up is off. Health checks can wait on it before taking traffic.
+	 * It completes exceptionally with an IOException naming the steps that failed; the wrapper
+	 * stays usable then and fetches what it is missing on first use.
+	 * @return future completed when the wrapper is warmed up
+	 */
+	public CompletableFuture<Void> getReadiness() {
+		return readiness.thenApply(Function.identity());
+	}
+
+	/**
+	 * @return true once warm-up has succeeded, or at once when warm-up is off
+	 */
+	public boolean isReady() {
+		return readiness.isDone() && !readiness.isCompletedExceptionally();
+	}
+
+	/**
+	 * Open {@code connections} pooled connections to the API host, then fetch the status and
+	 * both reference-data endpoints concurrently over them. Besides filling the reference-data
+	 * caches this loads and initialises the classes of the whole request path.
+	 * @param connections - connections to open up front
+	 * @return future completed when every step has finished
+	 */
+	private CompletableFuture<Void> warmUp(int connections) {
+		long start = System.nanoTime();
+		String statusEndpoint = endpoints.get(STATUS_ENDPOINT);
+		CompletableFuture<Integer> connected = httpClient == null || connections <= 0
+				? CompletableFuture.completedFuture(0)
+				: AsyncCalls.supply(() -> httpClient.preconnect(statusEndpoint, connections), asyncExecutor);
+		return connected.handle((opened, failure) -> {
+			Map<String, CompletableFuture<?>> steps = new LinkedHashMap<>();
+			steps.put("connections", connected);
+			steps.put(STATUS_ENDPOINT, AsyncCalls.supply(() -> {
+				if (getChplStatus().isEmpty()) {
+					throw new IOException("No status from " + statusEndpoint);
+				}
+				return null;
+			}, asyncExecutor));
+			steps.put(EDUCATION_TYPES_ENDPOINT, AsyncCalls.supply(educationTypes::get, asyncExecutor));
+			steps.put(PRACTICE_TYPE_NAMES_ENDPOINT, AsyncCalls.supply(practiceTypes::get, asyncExecutor));
+			return steps;
+		}).thenCompose(steps -> CompletableFuture.allOf(steps.values().toArray(new CompletableFuture<?>[0]))
+				.handle((done, failure) -> {
+					List<String> failed = steps.entrySet().stream()
+							.filter(step -> step.getValue().isCompletedExceptionally())
+							.map(Map.Entry::getKey)
+							.collect(Collectors.toList());
+					long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+					if (!failed.isEmpty()) {
+						LOGGER.warn("Warm-up failed after {} ms: {}", millis, failed, failure);
+						throw new CompletionException(new IOException("Warm-up failed: " + failed, failure));
+					}
+					LOGGER.info("Warm-up finished in {} ms, {} connections opened", millis, connected.join());
+					return null;
+				}));
+	}
+
 	/**
 	 * Get the status of the CHPL API. Most of the time this should return "OK".
 	 * If the CHPL API is not available, an HTTP error code may be returned
@@ -71,99 +328,141 @@ public class ChplApiWrapper {
 	 */
 	public String getChplStatus() {
 		String responseString = "";
-		String statusEndpoint = endpoints.get(STATUS_ENDPOINT);
-
-		LOGGER.debug("Making HTTP GET call to {}", statusEndpoint);
 
 		try{
-			HttpResponse response = Request.Get(statusEndpoint)
-					.version(HttpVersion.HTTP_1_1)
-					.execute().returnResponse();
+			String reasonPhrase = requestStatus().getReasonPhrase();
 
-			if (response != null) {
-				return response.getStatusLine().getReasonPhrase();
+			if (reasonPhrase != null) {
+				return reasonPhrase;
 			}
 		} catch (IOException e){
-			LOGGER.error("Failed to make call to {}", statusEndpoint);
-			LOGGER.error("Please check that the {} and statusApi properties are configured correctly in {}",
-																	CHPL_API_URL_BEGIN_PROPERTY, PROPERTIES_FILE_NAME);
+			logFailure(STATUS_ENDPOINT, "statusApi", e);
 		}
 		return responseString;
 	}
 
+	/**
+	 * The status as of the last background check, without a request: the same value
+	 * {@link #getChplStatus()} returned then, or empty before the first check has finished.
+	 * Starts the checks if {@value #HEALTH_MONITOR_PROPERTY} did not.
+	 * @return last known status, e.g. "OK"
+	 */
+	public String getCachedChplStatus() {
+		return getHealth().getStatus();
+	}
+
+	/**
+	 * Last known health of the API from the status checks made every
+	 * {@value #HEALTH_CHECK_INTERVAL_PROPERTY} in the background; a memory read, cheap enough for
+	 * every readiness probe. The checks start with the wrapper when {@value #HEALTH_MONITOR_PROPERTY}
+	 * is on and otherwise on the first call, which then sees UNKNOWN until the first check is done.
+	 * @return state, status, latency and consecutive failures of the last check
+	 */
+	public ApiHealth getHealth() {
+		healthMonitor.start();
+		return healthMonitor.getHealth();
+	}
+
+	/**
+	 * Be told when the API goes UP or DOWN, e.g. to pause a batch run until it is back.
+	 * Starts the checks if {@value #HEALTH_MONITOR_PROPERTY} did not.
+	 * @param listener - called on the health check thread
+	 */
+	public void addHealthListener(HealthListener listener) {
+		healthMonitor.addListener(listener);
+		healthMonitor.start();
+	}
+
+	public void removeHealthListener(HealthListener listener) {
+		healthMonitor.removeListener(listener);
+	}
+
+	/**
+	 * One request to the status endpoint, without the API key and outside the circuit breaker,
+	 * so it reports on the API even while the circuit is open.
+	 * @return status line of the response
+	 * @throws IOException - if no response arrived
+	 */
+	private StatusLine requestStatus() throws IOException {
+		return executeRequest(STATUS_ENDPOINT, newGet(endpoints.get(STATUS_ENDPOINT), false),
+				(response, body) -> response.getStatusLine());
+	}
+
 	/**
 	 * Query the CHPL API to get a list of the education levels.
-	 * @return A list of certification body names.
+	 * The list is cached for {@value #REFERENCE_DATA_TTL_PROPERTY} and revalidated in the background.
+	 * @return An unmodifiable list of education level names, or null if they could not be fetched.
 	 */
 	public List<String> getEducationLevelNames() {
-		JsonObject response;
-		List<String> result = null;
-		String educationTypesEndpoint = endpoints.get(EDUCATION_TYPES_ENDPOINT);
+		ReferenceData<EducationType> data = getReferenceData(educationTypes, EDUCATION_TYPES_ENDPOINT, "educationTypesApi");
+		return data == null ? null : data.getNames();
+	}
 
-		LOGGER.debug("Making HTTP GET call to {} with API Key {}", educationTypesEndpoint, apiKey);
-		try{
-			String jsonResponse = sendRequest(educationTypesEndpoint);
-			if (jsonResponse != null) {
-				response = new Gson().fromJson(jsonResponse, JsonObject.class);
-				LOGGER.debug("Response from {} : \n\t", educationTypesEndpoint, response.toString());
-				JsonArray dataArray = response.getAsJsonArray("data");
-				result = new ArrayList<String>(dataArray.size());
-				for (int i = 0; i < dataArray.size(); i++) {
-					JsonObject educationObj = dataArray.get(i).getAsJsonObject();
-					String educationName = educationObj.get("name").getAsString();
-					result.add(educationName);
-				}
-			}
-		} catch (IOException e){
-			LOGGER.error("Failed to make call to {}", educationTypesEndpoint);
-			LOGGER.error("Please check that the {} and educationTypesApi properties are configured correctly in {}",
-					CHPL_API_URL_BEGIN_PROPERTY, PROPERTIES_FILE_NAME);
-		}
-		return result;
+	/**
+	 * Query the CHPL API to get the education types, cached like {@link #getEducationLevelNames()}.
+	 * @return An unmodifiable list of education types, or null if they could not be fetched.
+	 */
+	public List<EducationType> getEducationTypes() {
+		ReferenceData<EducationType> data = getReferenceData(educationTypes, EDUCATION_TYPES_ENDPOINT, "educationTypesApi");
+		return data == null ? null : data.getElements();
 	}
 	
 	/**
 	 * This method should return a list of the education level names
 	 * sorted alphabetically (A -> Z).
-	 * @return A sorted list of education types.
+	 * @return An unmodifiable, sorted list of education types, or null if they could not be fetched.
 	 */
 	public List<String> getSortedEducationLevelNames() {
-		List<String> result = getEducationLevelNames();
-		Collections.sort(result);
-		return result;
+		ReferenceData<EducationType> data = getReferenceData(educationTypes, EDUCATION_TYPES_ENDPOINT, "educationTypesApi");
+		return data == null ? null : data.getSortedNames();
 	}
 	
 	/**
 	 * This method should call https://chpl.ahrqstg.org/rest/data/practice_types
 	 * and parse the "name" field from each element to get a list of
 	 * practice type names.
-	 * @return A list of practice type names.
+	 * The list is cached for {@value #REFERENCE_DATA_TTL_PROPERTY} and revalidated in the background.
+	 * @return An unmodifiable list of practice type names, or null if they could not be fetched.
 	 */
 	public List<String> getPracticeTypeNames() {
-		JsonArray response;
-		List<String> result = null;
-		String practiceTypeNamesUrl = endpoints.get(PRACTICE_TYPE_NAMES_ENDPOINT);
+		ReferenceData<PracticeType> data = getReferenceData(practiceTypes, PRACTICE_TYPE_NAMES_ENDPOINT, "practiceTypeNamesApi");
+		return data == null ? null : data.getNames();
+	}
 
-		LOGGER.debug("Making HTTP GET call to {} with API Key {}", practiceTypeNamesUrl, apiKey);
-		try{
-			String jsonResponse = sendRequest(practiceTypeNamesUrl);
-			if (jsonResponse != null) {
-				response = new Gson().fromJson(jsonResponse, JsonArray.class);
-				LOGGER.debug("Response from {} : \n\t", practiceTypeNamesUrl, response.toString());
-				result = new ArrayList<>(response.size());
-				for(int i = 0; i < response.size(); i++) {
-					JsonObject educationObj = response.get(i).getAsJsonObject();
-					String educationName = educationObj.get("name").getAsString();
-					result.add(educationName);
-				}
-				return result;
-			}
-		} catch (IOException e){
-			LOGGER.error("Failed to make call to {}", practiceTypeNamesUrl);
-			LOGGER.error("Please check that the {} and practiceTypeNamesApi properties are configured correctly in {}",
-					CHPL_API_URL_BEGIN_PROPERTY, PROPERTIES_FILE_NAME);
+	/**
+	 * Query the CHPL API to get the practice types, cached like {@link #getPracticeTypeNames()}.
+	 * @return An unmodifiable list of practice types, or null if they could not be fetched.
+	 */
+	public List<PracticeType> getPracticeTypes() {
+		ReferenceData<PracticeType> data = getReferenceData(practiceTypes, PRACTICE_TYPE_NAMES_ENDPOINT, "practiceTypeNamesApi");
+		return data == null ? null : data.getElements();
+	}
+
+	private <T> ReferenceData<T> getReferenceData(ReferenceDataCache<ReferenceData<T>> cache, String endpoint,
+			String apiProperty) {
+		try {
+			return cache.get();
+		} catch (IOException e) {
+			logFailure(endpoint, apiProperty, e);
+			return null;
 		}
-		return result;
+	}
+
+	/**
+	 * Create the cache for a reference-data endpoint. The response is either an array of
+	 * elements or an object holding them in its "data" field.
+	 * @param endpoint - key of the endpoint URL
+	 * @param type - model class of the elements
+	 * @param nameOf - the name of an element
+	 * @return the cache
+	 */
+	private <T> ReferenceDataCache<ReferenceData<T>> newReferenceDataCache(String endpoint, Class<T> type,
+			Function<? super T, String> nameOf) {
+		return new ReferenceDataCache<>(endpoint, (etag, lastModified) -> {
+			String url = endpoints.get(endpoint);
+			return sendConditionalRequest(endpoint, url, etag, lastModified,
+					in -> new ReferenceData<>(ChplJson.readList(in, type, "data"), nameOf));
+		}, referenceDataTtlMillis, referenceDataRefresher);
 	}
 	
 	/**
@@ -176,55 +475,256 @@ public class ChplApiWrapper {
 	 * In the details of a given listing, test participants are nested under each 
 	 * certificationResult -> testTasks -> testParticipants and not all certificationResults
 	 * will have them so you may have to dig a bit to find them.
+	 * <p>
+	 * When {@value #DETAILS_PARALLELISM_PROPERTY} is greater than 1 the details of the
+	 * listings are fetched concurrently, each limited to {@value #DETAILS_TIMEOUT_PROPERTY}.
+	 * A failed or timed out listing cancels the rest of the batch.
 	 */
 	public Set<String> getEducationLevelsForSpecificListings() throws IOException, JSONException{
-		Set<String> educationTypeNames = new HashSet<>();
+		Set<String> educationTypeNames = ConcurrentHashMap.newKeySet();
 		String educationLevelForSpecificListingEndpoint = endpoints.get(SEARCH_ENDPOINT);
 		try {
-			String searchResult = sendRequest(educationLevelForSpecificListingEndpoint);
-			if (searchResult != null) {
-				JSONObject search = new JSONObject(searchResult);
-				JSONArray searchArr = search.getJSONArray("results");
-				for (Integer i = 0; i < searchArr.length(); i++) {
-					if (searchArr.optJSONObject(i).has("product")) {
-						String productId = searchArr.optJSONObject(i).get("id").toString();
-						getEducationTypeDetails(productId, educationTypeNames);
-					}
+			List<String> productIds;
+			try (Stream<Listing> listings = search(SearchQuery.parse(queryOf(educationLevelForSpecificListingEndpoint)))) {
+				productIds = listings.filter(listing -> listing.getProduct() != null)
+						.map(listing -> String.valueOf(listing.getId()))
+						.collect(Collectors.toList());
+			}
+			if (detailsParallelism > 1) {
+				new BoundedFanOut(getDetailsExecutor(), detailsTimeoutMillis)
+						.forEach(productIds, productId -> getEducationTypeDetails(productId, educationTypeNames));
+			} else {
+				for (String productId : productIds) {
+					getEducationTypeDetails(productId, educationTypeNames);
 				}
 			}
-		}catch (IOException e){
-			LOGGER.error("Failed to make call to {}", educationLevelForSpecificListingEndpoint);
-			LOGGER.error("Please check that the {} and searchApi properties are configured correctly in {}",
-					CHPL_API_URL_BEGIN_PROPERTY, PROPERTIES_FILE_NAME);
+		}catch (IOException | UncheckedIOException e){
+			logFailure(SEARCH_ENDPOINT, "searchApi", e);
 		}
 		return educationTypeNames;
 	}
 
 	/**
-	 * Get the details of each Listing
+	 * Search for listings. Results are fetched a page at a time as the stream is consumed,
+	 * with the next page requested while the current one is processed.
+	 * Close the stream when it is not consumed to the end.
+	 * A page that cannot be fetched fails the stream with an {@link UncheckedIOException}.
+	 * @param query - search filters
+	 * @return lazily evaluated stream of matching listings
+	 */
+	public Stream<Listing> search(SearchQuery query) {
+		String searchUrl = endpoints.get(SEARCH_ENDPOINT);
+		int queryStart = searchUrl.indexOf('?');
+		String baseUrl = queryStart < 0 ? searchUrl : searchUrl.substring(0, queryStart);
+		return new ListingPager(pageNumber -> {
+			String pageUrl = baseUrl + "?" + query.toQueryString(pageNumber);
+			return sendRequest(SEARCH_ENDPOINT, pageUrl, SEARCH_PAGE_READER);
+		}, query.getPageSize(), searchPrefetcher).stream();
+	}
+
+	private static String queryOf(String url) {
+		int queryStart = url.indexOf('?');
+		return queryStart < 0 ? null : url.substring(queryStart + 1);
+	}
+
+	/**
+	 * Count the test participants of the listings matching a search by education type, age range,
+	 * occupation and certification criterion. Each listing's details are read straight into
+	 * primitive counts keyed by dictionary code, with education types encoded in the order of the
+	 * education types reference data; the per-listing counts are then merged in parallel.
+	 * @param query - selects the listings
+	 * @return histograms, distinct values and top values of every facet
+	 * @throws IOException - if the education types, the search or any details request fails
+	 */
+	public FacetResult getParticipantFacets(SearchQuery query) throws IOException {
+		List<String> educationTypeNames = educationTypes.get().getNames();
+		FacetResult.Facet[] facets = FacetResult.Facet.values();
+		FacetDictionary[] dictionaries = new FacetDictionary[facets.length];
+		for (FacetResult.Facet facet : facets) {
+			dictionaries[facet.ordinal()] = new FacetDictionary(
+					facet == FacetResult.Facet.EDUCATION_TYPE ? educationTypeNames : null);
+		}
+		List<String> productIds;
+		try (Stream<Listing> listings = search(query)) {
+			productIds = listings.map(listing -> String.valueOf(listing.getId())).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		List<ParticipantFacets> partials = Collections.synchronizedList(new ArrayList<>(productIds.size()));
+		ParticipantDictionary participants = new ParticipantDictionary();
+		BodyReader<ParticipantFacets> facetsReader = in -> ParticipantFacets.read(in, dictionaries, participants);
+		BoundedFanOut.Task<String> readFacets = productId -> partials.add(readDetails(productId, facetsReader));
+		if (detailsParallelism > 1) {
+			new BoundedFanOut(getDetailsExecutor(), detailsTimeoutMillis).forEach(productIds, readFacets);
+		} else {
+			for (String productId : productIds) {
+				readFacets.apply(productId);
+			}
+		}
+		return FacetAggregator.merge(partials, ForkJoinPool.commonPool()).toResult(dictionaries, participants);
+	}
+
+	/**
+	 * Get the details of one listing, read into the typed model with the shared Gson adapters.
+	 * Free-text fields the model does not hold are skipped without being parsed.
+	 * @param listingId - listing id
+	 * @return the listing's details
+	 * @throws IOException - if the details could not be fetched or read
+	 */
+	public ListingDetails getListingDetails(long listingId) throws IOException {
+		return readDetails(String.valueOf(listingId), LISTING_DETAILS_READER);
+	}
+
+	/**
+	 * Create a view answering {@link #getEducationLevelsForSpecificListings()} for a moving
+	 * certification date window. Each move of the window searches only the days that entered it
+	 * and fetches details only for the listings certified on them; listings certified on days that
+	 * left the window are retracted, and the rest are not requested again.
+	 * @param baseQuery - filters other than the certification dates, e.g. the edition
+	 * @return an empty window; call {@link EducationLevelWindow#moveTo} to fill it
+	 */
+	public EducationLevelWindow newEducationLevelWindow(SearchQuery baseQuery) {
+		return new EducationLevelWindow(baseQuery, this::search,
+				listingId -> readDetails(String.valueOf(listingId), EDUCATION_TYPE_NAMES_READER),
+				detailsParallelism > 1 ? new BoundedFanOut(getDetailsExecutor(), detailsTimeoutMillis) : null);
+	}
+
+	/**
+	 * Bring the local listing snapshot in {@value #SNAPSHOT_DIR_PROPERTY} up to date and open it.
+	 * Every listing matching {@value #SNAPSHOT_SEARCH_PROPERTY} (all listings when unset) is read
+	 * from search, but details are fetched only for listings that are new or changed since the
+	 * previous sync. The snapshot can then answer questions such as
+	 * {@link #getEducationLevelsForSpecificListings()} offline, via {@link ListingSnapshot#open(File)}.
+	 * @return the updated snapshot
+	 * @throws IOException - if the sync fails; the previous snapshot is left untouched
+	 * @throws IllegalStateException - if {@value #SNAPSHOT_DIR_PROPERTY} is not configured
+	 */
+	public ListingSnapshot syncSnapshot() throws IOException {
+		String directory = properties.getProperty(SNAPSHOT_DIR_PROPERTY);
+		if (directory == null || directory.isEmpty()) {
+			throw new IllegalStateException(SNAPSHOT_DIR_PROPERTY + " is not configured in " + PROPERTIES_FILE_NAME);
+		}
+		SearchQuery query = SearchQuery.parse(properties.getProperty(SNAPSHOT_SEARCH_PROPERTY));
+		return new SnapshotSync(new File(directory), () -> search(query),
+				listingId -> readDetails(String.valueOf(listingId), EDUCATION_TYPE_NAMES_READER, false),
+				listingId -> readDetails(String.valueOf(listingId), EDUCATION_TYPE_NAMES_READER, true),
+				detailsParallelism > 1 ? new BoundedFanOut(getDetailsExecutor(), detailsTimeoutMillis) : null).sync();
+	}
+
+	/**
+	 * Asynchronous {@link #getChplStatus()}.
+	 * Runs on the executor configured by {@value #ASYNC_EXECUTOR_PROPERTY}. Cancelling the future interrupts the call,
+	 * which takes effect between requests: a request already in flight is not aborted.
+	 * @return future status
+	 */
+	public CompletableFuture<String> getChplStatusAsync() {
+		return AsyncCalls.supply(this::getChplStatus, asyncExecutor);
+	}
+
+	/**
+	 * Asynchronous {@link #getEducationLevelNames()}.
+	 * Runs on the executor configured by {@value #ASYNC_EXECUTOR_PROPERTY}. Cancelling the future interrupts the call,
+	 * which takes effect between requests: a request already in flight is not aborted.
+	 * @return future education level names, completed with null if they could not be fetched
+	 */
+	public CompletableFuture<List<String>> getEducationLevelNamesAsync() {
+		return AsyncCalls.supply(this::getEducationLevelNames, asyncExecutor);
+	}
+
+	/**
+	 * Asynchronous {@link #getSortedEducationLevelNames()}.
+	 * Runs on the executor configured by {@value #ASYNC_EXECUTOR_PROPERTY}. Cancelling the future interrupts the call,
+	 * which takes effect between requests: a request already in flight is not aborted.
+	 * @return future sorted education level names, completed with null if they could not be fetched
+	 */
+	public CompletableFuture<List<String>> getSortedEducationLevelNamesAsync() {
+		return AsyncCalls.supply(this::getSortedEducationLevelNames, asyncExecutor);
+	}
+
+	/**
+	 * Asynchronous {@link #getPracticeTypeNames()}.
+	 * Runs on the executor configured by {@value #ASYNC_EXECUTOR_PROPERTY}. Cancelling the future interrupts the call,
+	 * which takes effect between requests: a request already in flight is not aborted.
+	 * @return future practice type names, completed with null if they could not be fetched
+	 */
+	public CompletableFuture<List<String>> getPracticeTypeNamesAsync() {
+		return AsyncCalls.supply(this::getPracticeTypeNames, asyncExecutor);
+	}
+
+	/**
+	 * Asynchronous {@link #getEducationLevelsForSpecificListings()}.
+	 * Runs on the executor configured by {@value #ASYNC_EXECUTOR_PROPERTY}. Cancelling the future interrupts
+	 * the call, which cancels any details requests still queued; requests already in flight are not aborted.
+	 * @return future education level names
+	 */
+	public CompletableFuture<Set<String>> getEducationLevelsForSpecificListingsAsync() {
+		return AsyncCalls.supply(this::getEducationLevelsForSpecificListings, asyncExecutor);
+	}
+
+	/**
+	 * Lazily create the pool used for concurrent details requests.
+	 * Its size is the upper bound on details requests in flight.
+	 * @return details executor
+	 */
+	private ExecutorService getDetailsExecutor() {
+		if (detailsExecutor == null) {
+			synchronized (this) {
+				if (detailsExecutor == null) {
+					detailsExecutor = Executors.newFixedThreadPool(detailsParallelism,
+							new DaemonThreadFactory("chpl-details"));
+				}
+			}
+		}
+		return detailsExecutor;
+	}
+
+	/**
+	 * Get the details of each Listing.
+	 * Only the participants' education type names are pulled from the response stream,
+	 * the rest of the details payload is skipped without being parsed into a tree.
 	 * @param productId
 	 * @param educationTypeNames
 	 * @throws IOException
-	 * @throws JSONException
 	 */
-	private void getEducationTypeDetails(String productId, Set<String> educationTypeNames) throws IOException, JSONException{
+	private void getEducationTypeDetails(String productId, Set<String> educationTypeNames) throws IOException{
+		educationTypeNames.addAll(readDetails(productId, EDUCATION_TYPE_NAMES_READER));
+	}
+
+	/**
+	 * Read the details of a listing, from the on-disk cache when it has them and
+	 * otherwise from the details API, storing the response for next time.
+	 * Every details lookup should go through here.
+	 * @param productId - listing id
+	 * @param bodyReader - consumes the details body
+	 * @return whatever the body reader returns
+	 * @throws IOException - if the details could not be fetched or read
+	 */
+	private <T> T readDetails(String productId, BodyReader<T> bodyReader) throws IOException {
+		return readDetails(productId, bodyReader, false);
+	}
+
+	/**
+	 * @param productId - listing id
+	 * @param bodyReader - consumes the details body
+	 * @param refresh - fetch from the API even when cached, and replace the cached body, because the listing changed
+	 * @return whatever the body reader returns
+	 * @throws IOException - if the details could not be fetched or read
+	 */
+	private <T> T readDetails(String productId, BodyReader<T> bodyReader, boolean refresh) throws IOException {
 		String detailsUrl = String.format(endpoints.get(DETAILS_ENDPOINT), productId);
-		String result = sendRequest(detailsUrl);
-		JSONObject detailsObj = new JSONObject(result);
-		if (detailsObj.has("sed")) {
-			JSONObject sedObj = detailsObj.getJSONObject("sed");
-			if (sedObj.has("testTasks")) {
-				JSONArray testTasksArray = sedObj.getJSONArray("testTasks");
-				for (Integer j = 0; j < testTasksArray.length(); j++) {
-					if (testTasksArray.optJSONObject(j).has("testParticipants")) {
-						JSONArray testParticipantsArray = testTasksArray.optJSONObject(j).getJSONArray("testParticipants");
-						for (Integer k = 0; k < testParticipantsArray.length(); k++) {
-							educationTypeNames.add(testParticipantsArray.optJSONObject(k).get("educationTypeName").toString());
-						}
-					}
-				}
+		if (detailsStore == null) {
+			return sendRequest(DETAILS_ENDPOINT, detailsUrl, bodyReader);
+		}
+		byte[] body = refresh ? null : detailsStore.get(productId);
+		if (body == null) {
+			body = sendRequest(DETAILS_ENDPOINT, detailsUrl, BODY_BYTES_READER);
+			if (refresh || !detailsStore.contains(productId)) {
+				detailsStore.put(productId, body);
 			}
+		} else {
+			LOGGER.debug("Read details of listing {} from the details cache", productId);
 		}
+		return bodyReader.read(new ByteArrayInputStream(body));
 	}
 
 	/**
@@ -236,35 +736,345 @@ public class ChplApiWrapper {
 	}
 
 	/**
-	 * Makes the HTTP call to the Endpoints
+	 * Snapshot of the shared connection pool, useful for sizing
+	 * {@value PooledHttpClient#MAX_CONNECTIONS_TOTAL_PROPERTY} and
+	 * {@value PooledHttpClient#MAX_CONNECTIONS_PER_ROUTE_PROPERTY} in production.
+	 * @return leased, available, pending and max connections across all routes,
+	 * or null with the replay transport, which has no connections
+	 */
+	public PoolStats getPoolStats() {
+		return httpClient == null ? null : httpClient.getPoolStats();
+	}
+
+	/**
+	 * Latency, throughput and error metrics of every logical endpoint used so far,
+	 * keyed by endpoint name ({@value #STATUS_ENDPOINT}, {@value #DETAILS_ENDPOINT}, ...).
+	 * The same figures are published over JMX as
+	 * {@code com.ainq.chpl:type=EndpointMetrics,instance=<n>,name=<endpoint>}, where n numbers the
+	 * wrapper instances in the JVM, unless {@value #JMX_ENABLED_PROPERTY} is false.
+	 * @return snapshots by endpoint name
+	 */
+	public Map<String, EndpointMetricsSnapshot> getMetrics() {
+		return metrics.snapshot();
+	}
+
+	/**
+	 * Number of requests that were not sent because an identical request was already in flight
+	 * and its result was shared instead.
+	 * @return coalesced request count since startup
+	 */
+	public long getCoalescedRequestCount() {
+		return inFlightRequests.getCoalescedCount();
+	}
+
+	/**
+	 * Makes the HTTP call to the Endpoints and hands the response body to the reader
+	 * as a stream, without buffering it into a String first.
+	 * Each request passes the circuit breaker and rate limiter and is retried per the retry settings.
+	 * When {@value #COALESCE_REQUESTS_PROPERTY} is on, a caller asking for the same URL with the same
+	 * reader while that request is in flight waits for it and shares its result, so readers must be
+	 * stateless (constants) and their results must not be mutated.
+	 * When {@value #HEDGE_DETAILS_PROPERTY} is on, a details attempt slower than
+	 * {@value #HEDGE_PERCENTILE_PROPERTY} of the details latencies is sent a second time and the first
+	 * response is used; the two are never coalesced with each other.
 	 * @param serviceUrl
-	 * @return HTTP response as String
-	 * @throws IOException
+	 * @param bodyReader - consumes the response body
+	 * @return whatever the body reader returns
+	 * @throws IOException - if the call fails, the status is not 2xx or the body cannot be read,
+	 * or {@link CircuitOpenException} while the API is considered down
+	 */
+	@SuppressWarnings("unchecked")
+	<T> T sendRequest(String endpoint, String serviceUrl, BodyReader<T> bodyReader) throws IOException {
+		if (!coalesceRequests) {
+			return sendGuarded(endpoint, serviceUrl, bodyReader);
+		}
+		return (T) inFlightRequests.execute(new RequestKey(serviceUrl, bodyReader),
+				() -> sendGuarded(endpoint, serviceUrl, bodyReader));
+	}
+
+	private <T> T sendGuarded(String endpoint, String serviceUrl, BodyReader<T> bodyReader) throws IOException {
+		if (detailsHedging != null && DETAILS_ENDPOINT.equals(endpoint)) {
+			return requestGuard.execute(serviceUrl,
+					() -> detailsHedging.execute(abort -> executeGet(endpoint, serviceUrl, bodyReader, abort)));
+		}
+		return requestGuard.execute(serviceUrl, () -> executeGet(endpoint, serviceUrl, bodyReader, null));
+	}
+
+	/**
+	 * @param abort - gets the means to abort the request, or null when it is never aborted
+	 */
+	private <T> T executeGet(String endpoint, String serviceUrl, BodyReader<T> bodyReader,
+			HedgedRequests.Abort abort) throws IOException {
+		HttpGet request = newGet(serviceUrl, true);
+		if (abort != null) {
+			abort.onAbort(request::abort);
+		}
+		return executeRequest(endpoint, request,
+				(response, body) -> {
+					if (response.getStatusLine().getStatusCode() >= 300) {
+						throw ChplHttpException.of(response);
+					}
+					return body == null ? null : bodyReader.read(body);
+				});
+	}
+
+	/**
+	 * @param serviceUrl
+	 * @param withApiKey - send the API-Key header
+	 * @return HTTP/1.1 GET request, asking for a compressed body when {@value #HTTP_COMPRESSION_PROPERTY} is on
 	 */
-	private String sendRequest(String serviceUrl) throws IOException{
-		String jsonResponse = null;
-		jsonResponse =  Request.Get(serviceUrl)
-				.version(HttpVersion.HTTP_1_1)
-				.addHeader("API-Key", apiKey)
-				.execute().returnContent().asString();
-		return  jsonResponse;
+	private HttpGet newGet(String serviceUrl, boolean withApiKey) {
+		HttpGet request = new HttpGet(serviceUrl);
+		request.setProtocolVersion(HttpVersion.HTTP_1_1);
+		if (compression) {
+			request.addHeader(HttpHeaders.ACCEPT_ENCODING, ContentEncoding.ACCEPTED);
+		}
+		if (withApiKey) {
+			request.addHeader("API-Key", apiKey);
+		}
+		return request;
+	}
+
+	/**
+	 * Executes one HTTP request on the configured transport, recording its latency, the split between
+	 * waiting for the response headers and reading the body, and the body size under the
+	 * endpoint's metrics. A gzip or deflate body is decompressed as the response reader consumes it;
+	 * both its transferred and its decoded size are recorded. A body that arrived but could not be
+	 * decoded or read is reported as a {@link ChplResponseException}.
+	 * @param endpoint - logical endpoint name the metrics are recorded under
+	 * @param request - the request
+	 * @param responseReader - handles the response; the body stream is closed afterwards
+	 * @return whatever the response reader returns
+	 * @throws IOException - if the call fails or the response reader throws
+	 */
+	private <T> T executeRequest(String endpoint, HttpUriRequest request, ResponseReader<T> responseReader) throws IOException {
+		if (LOGGER.isDebugEnabled()) {
+			long dropped = logLimiter.acquire(endpoint);
+			if (dropped > 0) {
+				LOGGER.debug("Making HTTP {} call to {} ({} similar messages dropped)", request.getMethod(), request.getURI(), dropped);
+			} else if (dropped == 0) {
+				LOGGER.debug("Making HTTP {} call to {}", request.getMethod(), request.getURI());
+			}
+		}
+		EndpointMetrics.RequestTimer timer = metrics.endpoint(endpoint).start();
+		try {
+			T result = transport.execute(request, response -> {
+				timer.headersReceived(response.getStatusLine().getStatusCode());
+				HttpEntity entity = response.getEntity();
+				WireInputStream wire = entity == null ? null : new WireInputStream(entity.getContent());
+				try {
+					if (wire == null) {
+						return responseReader.read(response, null);
+					}
+					try (CountingInputStream decoded = entity.getContentLength() == 0 ? wire
+							: new CountingInputStream(ContentEncoding.decode(wire, response.getFirstHeader(HttpHeaders.CONTENT_ENCODING)))) {
+						InputStream body = payloadLog.capture(decoded);
+						try {
+							return responseReader.read(response, body);
+						} finally {
+							timer.bodyRead(wire.getByteCount(), decoded.getByteCount());
+							payloadLog.log(body, response.getStatusLine().getStatusCode(), request.getURI());
+						}
+					} finally {
+						wire.close();
+					}
+				} catch (IOException e) {
+					if (e instanceof HttpResponseException || wire != null && wire.hasFailed()) {
+						throw e;
+					}
+					throw new ChplResponseException(request.getURI(), e);
+				}
+			});
+			timer.succeeded();
+			return result;
+		} catch (IOException | RuntimeException e) {
+			if (request.isAborted()) {
+				timer.abandoned();
+			} else {
+				timer.failed();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Makes a conditional HTTP call to the Endpoints, sending If-None-Match and
+	 * If-Modified-Since when validators from an earlier response are known.
+	 * @param serviceUrl
+	 * @param etag - ETag of the cached copy, or null
+	 * @param lastModified - Last-Modified of the cached copy, or null
+	 * @param bodyReader - consumes the response body when the resource changed
+	 * @return the parsed body with its validators, or a not-modified marker on 304
+	 * @throws IOException - if the call fails or the status is neither 2xx nor 304
+	 */
+	private <T> ReferenceDataCache.Response<T> sendConditionalRequest(String endpoint, String serviceUrl, String etag,
+			String lastModified, BodyReader<T> bodyReader) throws IOException {
+		HttpGet request = newGet(serviceUrl, true);
+		if (etag != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+		}
+		if (lastModified != null) {
+			request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+		}
+		return requestGuard.execute(serviceUrl, () -> executeRequest(endpoint, request, (response, body) -> {
+			StatusLine statusLine = response.getStatusLine();
+			if (statusLine.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+				return ReferenceDataCache.Response.notModified();
+			}
+			if (statusLine.getStatusCode() >= 300) {
+				throw ChplHttpException.of(response);
+			}
+			if (body == null) {
+				throw new ClientProtocolException("Response from " + serviceUrl + " has no content");
+			}
+			return ReferenceDataCache.Response.of(bodyReader.read(body), headerValue(response, HttpHeaders.ETAG),
+					headerValue(response, HttpHeaders.LAST_MODIFIED));
+		}));
+	}
+
+	private static String headerValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * Identifies identical requests: same URL, read by the same reader.
+	 */
+	private static final class RequestKey {
+		private final String url;
+		private final BodyReader<?> reader;
+
+		RequestKey(String url, BodyReader<?> reader) {
+			this.url = url;
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof RequestKey)) {
+				return false;
+			}
+			RequestKey key = (RequestKey) other;
+			return url.equals(key.url) && reader == key.reader;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * url.hashCode() + System.identityHashCode(reader);
+		}
+	}
+
+	/**
+	 * Handles a response: its status, headers and the streamed body (null when there is none).
+	 * @param <T> result type
+	 */
+	private interface ResponseReader<T> {
+		T read(HttpResponse response, InputStream body) throws IOException;
+	}
+
+	/**
+	 * Consumes a streamed response body.
+	 * @param <T> result type
+	 */
+	interface BodyReader<T> {
+		T read(InputStream in) throws IOException;
+	}
+
+	/**
+	 * Open the transport chosen by {@value #TRANSPORT_PROPERTY}. Recording and replaying need
+	 * {@value #TRANSPORT_DIR_PROPERTY}.
+	 * @param transportType - one of the {@link ChplTransport} names
+	 * @param config - settings
+	 * @return the transport
+	 * @throws IllegalArgumentException - for an unknown transport or missing directory
+	 * @throws UncheckedIOException - if the recordings directory cannot be created
+	 */
+	private ChplTransport openTransport(String transportType, ChplConfig config) {
+		if (ChplTransport.HTTP.equals(transportType) || ChplTransport.HTTP2.equals(transportType)) {
+			return new HttpTransport(httpClient);
+		}
+		if (!ChplTransport.RECORD.equals(transportType) && !ChplTransport.REPLAY.equals(transportType)) {
+			throw new IllegalArgumentException("Unknown " + TRANSPORT_PROPERTY + " " + transportType
+					+ ", expected http, http2, record or replay");
+		}
+		String directory = config.getString(TRANSPORT_DIR_PROPERTY, null);
+		if (directory == null) {
+			throw new IllegalArgumentException(TRANSPORT_DIR_PROPERTY + " is required for the " + transportType + " transport");
+		}
+		ResponseRecordings recordings;
+		try {
+			recordings = new ResponseRecordings(new File(directory));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		LOGGER.info("Using the {} transport with recordings in {}", transportType, directory);
+		if (ChplTransport.RECORD.equals(transportType)) {
+			return new RecordingTransport(new HttpTransport(httpClient), recordings);
+		}
+		return new ReplayTransport(recordings, config.getLong(REPLAY_LATENCY_PROPERTY, 0));
+	}
+
+	/**
+	 * Load the HTTP/2 transport, which exists only in builds made on JDK 11 and later and can
+	 * only run on Java 11 and later.
+	 * @param config - settings
+	 * @return the transport, or null to fall back to the pooled HTTP/1.1 client
+	 */
+	private static ChplTransport openHttp2Transport(ChplConfig config) {
+		try {
+			ChplTransport transport = (ChplTransport) Class.forName(ChplTransport.HTTP2_CLASS_NAME)
+					.getDeclaredConstructor(ChplConfig.class).newInstance(config);
+			LOGGER.info("Using the http2 transport");
+			return transport;
+		} catch (ReflectiveOperationException | LinkageError e) {
+			LOGGER.warn("The http2 transport needs Java 11, falling back to the pooled HTTP/1.1 client: {}", e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Open the on-disk details cache when {@value #DETAILS_CACHE_DIR_PROPERTY} is configured.
+	 * A cache that cannot be opened is logged and skipped rather than failing the wrapper.
+	 * @return the store, or null when caching is disabled
+	 * @throws IllegalArgumentException - if {@value #DETAILS_CACHE_MAX_BYTES_PROPERTY} is larger than the cache can address
+	 */
+	private ListingDetailsStore openDetailsStore(ChplConfig config) {
+		String directory = config.getString(DETAILS_CACHE_DIR_PROPERTY, null);
+		if (directory == null) {
+			return null;
+		}
+		try {
+			return new ListingDetailsStore(new File(directory),
+					config.getLong(DETAILS_CACHE_MAX_BYTES_PROPERTY, 256L * 1024 * 1024),
+					config.getLong(DETAILS_CACHE_TTL_PROPERTY, TimeUnit.DAYS.toMillis(1)));
+		} catch (IOException e) {
+			LOGGER.error("Could not open the details cache in {}, continuing without it", directory, e);
+			return null;
+		}
 	}
 
 	/**
 	 * loading properties into local instance.
 	 * @return - Properties instance
-	 * @throws IOException - if fails to load the configuration file from classpath.
+	 * @throws RuntimeException - if fails to load the configuration file from classpath.
 	 */
-	private Properties loadProperties() throws IOException {
+	private static Properties loadProperties() {
 		Properties properties = new Properties();
-		final InputStream in = ChplApiWrapper.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_NAME);
-		properties.load(in);
-		in.close();
+		try (InputStream in = ChplApiWrapper.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_NAME)) {
+			if (in == null) {
+				throw new IOException(PROPERTIES_FILE_NAME + " is not on the classpath");
+			}
+			properties.load(in);
+		} catch (IOException ex) {
+			String errorMsg = String.format("Could not read properties from file %s", PROPERTIES_FILE_NAME);
+			LOGGER.error(errorMsg, ex);
+			throw new RuntimeException(errorMsg, ex);
+		}
 		LOGGER.info("Loaded {} properties from file {}", properties.size(), PROPERTIES_FILE_NAME);
 		for (Object property : properties.keySet()) {
 			String key = (String) property;
 			properties.setProperty(key, properties.getProperty(key).trim());
-			LOGGER.info("{} = {}", key, properties.getProperty(key));
+			LOGGER.info("{} = {}", key, ChplConfig.isSecret(key) ? "****" : properties.getProperty(key));
 		}
 		return properties;
 	}
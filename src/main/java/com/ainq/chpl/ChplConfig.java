@@ -0,0 +1,94 @@
+package com.ainq.chpl;
+
+import java.util.Locale;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Typed, defaulted access to the settings loaded from environment.properties.
+ */
+class ChplConfig {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChplConfig.class);
+
+	private final Properties properties;
+
+	ChplConfig(Properties properties) {
+		this.properties = properties;
+	}
+
+	/**
+	 * @param name - property name
+	 * @return whether the property holds a credential, whose value must never be logged
+	 */
+	static boolean isSecret(String name) {
+		String lower = name.toLowerCase(Locale.ROOT);
+		return lower.contains("key") || lower.contains("password") || lower.contains("secret") || lower.contains("token");
+	}
+
+	/**
+	 * Read a string property.
+	 * @param name - property name
+	 * @param defaultValue - value used when the property is missing or empty
+	 * @return property value
+	 */
+	String getString(String name, String defaultValue) {
+		String value = properties.getProperty(name);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+
+	/**
+	 * Read an integer property, falling back to a default when it is missing, malformed or out of range.
+	 * @param name - property name
+	 * @param defaultValue - value used when the property is not usable
+	 * @return property value
+	 */
+	int getInt(String name, int defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			warnInvalid(name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Read a long property, falling back to a default when it is missing or malformed.
+	 * @param name - property name
+	 * @param defaultValue - value used when the property is not usable
+	 * @return property value
+	 */
+	long getLong(String name, long defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			warnInvalid(name, value, defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static void warnInvalid(String name, String value, Object defaultValue) {
+		LOGGER.warn("Ignoring invalid value {} for property {}, using {}", isSecret(name) ? "****" : value, name,
+				defaultValue);
+	}
+
+	/**
+	 * Read a boolean property.
+	 * @param name - property name
+	 * @param defaultValue - value used when the property is missing or empty
+	 * @return property value
+	 */
+	boolean getBoolean(String name, boolean defaultValue) {
+		String value = properties.getProperty(name);
+		return value == null || value.isEmpty() ? defaultValue : Boolean.parseBoolean(value);
+	}
+}
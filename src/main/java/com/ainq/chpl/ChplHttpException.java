@@ -0,0 +1,71 @@
+package com.ainq.chpl;
+
+import java.util.Date;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.utils.DateUtils;
+
+/**
+ * Non-2xx response from the CHPL API, carrying the server's Retry-After hint when it sent one.
+ */
+public class ChplHttpException extends HttpResponseException {
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterMillis;
+
+	public ChplHttpException(int statusCode, String reasonPhrase, long retryAfterMillis) {
+		super(statusCode, reasonPhrase);
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * @param response - the failed response
+	 * @return exception describing it
+	 */
+	static ChplHttpException of(HttpResponse response) {
+		return new ChplHttpException(response.getStatusLine().getStatusCode(),
+				response.getStatusLine().getReasonPhrase(), parseRetryAfter(response.getFirstHeader(HttpHeaders.RETRY_AFTER)));
+	}
+
+	/**
+	 * @return delay requested by the server in milliseconds, or -1 if it sent none
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+	/**
+	 * @return true for 429 Too Many Requests
+	 */
+	public boolean isThrottled() {
+		return getStatusCode() == 429;
+	}
+
+	/**
+	 * @return true when the server, rather than the request, is at fault (5xx, 408 or 429)
+	 */
+	public boolean isRetryable() {
+		int status = getStatusCode();
+		return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == HttpStatus.SC_REQUEST_TIMEOUT || isThrottled();
+	}
+
+	/**
+	 * Retry-After is either a number of seconds or an HTTP date.
+	 */
+	static long parseRetryAfter(Header header) {
+		if (header == null || header.getValue() == null) {
+			return -1;
+		}
+		String value = header.getValue().trim();
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException notSeconds) {
+			Date date = DateUtils.parseDate(value);
+			return date == null ? -1 : Math.max(0, date.getTime() - System.currentTimeMillis());
+		}
+	}
+}
@@ -0,0 +1,172 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The one {@link Gson} instance of the wrapper, with a hand-written streaming {@link TypeAdapter}
+ * registered for every model class so that no reflection happens while parsing. Gson instances
+ * are thread safe and cache their adapters, so this one is shared by every thread.
+ * Also holds the small null-tolerant reading helpers the adapters have in common.
+ */
+final class ChplJson {
+	static final Gson GSON = new GsonBuilder()
+			.registerTypeAdapter(Listing.class, new Listing.Adapter().nullSafe())
+			.registerTypeAdapter(ListingDetails.class, new ListingDetails.Adapter().nullSafe())
+			.registerTypeAdapter(CertificationResult.class, new CertificationResult.Adapter().nullSafe())
+			.registerTypeAdapter(Sed.class, new Sed.Adapter().nullSafe())
+			.registerTypeAdapter(TestTask.class, new TestTask.Adapter().nullSafe())
+			.registerTypeAdapter(TestParticipant.class, new TestParticipant.Adapter().nullSafe())
+			.registerTypeAdapter(EducationType.class, new EducationType.Adapter().nullSafe())
+			.registerTypeAdapter(PracticeType.class, new PracticeType.Adapter().nullSafe())
+			.disableHtmlEscaping()
+			.create();
+
+	private ChplJson() {
+	}
+
+	/**
+	 * @param in - UTF-8 encoded JSON document
+	 * @param type - model class
+	 * @return the document as the model class
+	 * @throws IOException - if the body cannot be read or does not match the model
+	 */
+	static <T> T read(InputStream in, Class<T> type) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		try {
+			return GSON.getAdapter(type).read(reader);
+		} catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+			throw new IOException("Could not read " + type.getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * Read a reference-data list, which is a bare array in some endpoints and wrapped in
+	 * an object field in others.
+	 * @param in - UTF-8 encoded JSON document
+	 * @param type - model class of the elements
+	 * @param wrapperField - field holding the array when the document is an object
+	 * @return unmodifiable list of the elements
+	 * @throws IOException - if the body cannot be read or does not match the model
+	 */
+	static <T> List<T> readList(InputStream in, Class<T> type, String wrapperField) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		TypeAdapter<T> adapter = GSON.getAdapter(type);
+		try {
+			if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+				return readList(reader, adapter);
+			}
+			List<T> elements = Collections.emptyList();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals(wrapperField)) {
+					elements = readList(reader, adapter);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return elements;
+		} catch (IllegalStateException | NumberFormatException | JsonParseException e) {
+			throw new IOException("Could not read list of " + type.getSimpleName(), e);
+		}
+	}
+
+	/**
+	 * @return unmodifiable list of the array elements, empty for a JSON null
+	 */
+	static <T> List<T> readList(JsonReader reader, TypeAdapter<T> adapter) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return Collections.emptyList();
+		}
+		List<T> elements = new ArrayList<>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			elements.add(adapter.read(reader));
+		}
+		reader.endArray();
+		return Collections.unmodifiableList(elements);
+	}
+
+	static <T> void writeList(JsonWriter writer, TypeAdapter<T> adapter, List<T> elements) throws IOException {
+		writer.beginArray();
+		for (T element : elements) {
+			adapter.write(writer, element);
+		}
+		writer.endArray();
+	}
+
+	/**
+	 * @return the string, or the text of a number, or null
+	 */
+	static String nextString(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextString();
+	}
+
+	static Long nextLong(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextLong();
+	}
+
+	static Integer nextInteger(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return null;
+		}
+		return reader.nextInt();
+	}
+
+	/**
+	 * @return the boolean, with null read as false
+	 */
+	static boolean nextBoolean(JsonReader reader) throws IOException {
+		if (reader.peek() == JsonToken.NULL) {
+			reader.nextNull();
+			return false;
+		}
+		return reader.nextBoolean();
+	}
+
+	/**
+	 * Summary fields are plain strings in some API versions and small objects in others.
+	 * @param nestedField - field holding the value when it is an object
+	 */
+	static String readName(JsonReader reader, String nestedField) throws IOException {
+		JsonToken token = reader.peek();
+		if (token != JsonToken.BEGIN_OBJECT) {
+			return nextString(reader);
+		}
+		String name = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals(nestedField)) {
+				name = nextString(reader);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return name;
+	}
+}
@@ -0,0 +1,108 @@
+package com.ainq.chpl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of per-endpoint metrics, optionally published over JMX. Each registry publishes under
+ * its own {@code instance} key, so several wrappers in one JVM do not replace each other's MBeans.
+ */
+class ChplMetrics {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ChplMetrics.class);
+	static final String JMX_DOMAIN = "com.ainq.chpl";
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+	private final ConcurrentHashMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+	private final boolean jmxEnabled;
+	private final int instance = INSTANCES.incrementAndGet();
+	private final Set<ObjectName> registered = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param jmxEnabled - register an MXBean for each endpoint as it is first used
+	 */
+	ChplMetrics(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+	/**
+	 * @param endpoint - logical endpoint name
+	 * @return metrics of that endpoint, created on first use
+	 */
+	EndpointMetrics endpoint(String endpoint) {
+		EndpointMetrics metrics = endpoints.get(endpoint);
+		if (metrics != null) {
+			return metrics;
+		}
+		return endpoints.computeIfAbsent(endpoint, name -> {
+			EndpointMetrics created = new EndpointMetrics(name);
+			if (jmxEnabled) {
+				register(name, created);
+			}
+			return created;
+		});
+	}
+
+	/**
+	 * @return snapshots of every endpoint used so far, by endpoint name
+	 */
+	Map<String, EndpointMetricsSnapshot> snapshot() {
+		Map<String, EndpointMetricsSnapshot> snapshot = new TreeMap<>();
+		for (Map.Entry<String, EndpointMetrics> entry : endpoints.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @param endpoint - logical endpoint name
+	 * @return the JMX name of that endpoint's metrics in this registry
+	 * @throws JMException - if the name is malformed
+	 */
+	ObjectName objectName(String endpoint) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=EndpointMetrics,instance=" + instance
+				+ ",name=" + ObjectName.quote(endpoint));
+	}
+
+	private void register(String endpoint, EndpointMetrics metrics) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = objectName(endpoint);
+			if (server.isRegistered(name)) {
+				// e.g. a copy of this class in another class loader; never replace its MBean
+				LOGGER.warn("JMX metrics {} are already registered, not publishing {}", name, endpoint);
+				return;
+			}
+			server.registerMBean(new StandardMBean(metrics, EndpointMetricsMXBean.class, true), name);
+			registered.add(name);
+		} catch (JMException e) {
+			LOGGER.warn("Could not register JMX metrics for {}", endpoint, e);
+		}
+	}
+
+	/**
+	 * Unregister the MXBeans this registry published.
+	 */
+	void close() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (ObjectName name : registered) {
+			try {
+				server.unregisterMBean(name);
+			} catch (JMException e) {
+				LOGGER.debug("Could not unregister JMX metrics {}", name, e);
+			}
+		}
+		registered.clear();
+	}
+}
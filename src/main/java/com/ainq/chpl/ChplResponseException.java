@@ -0,0 +1,17 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * A response from the CHPL API that arrived but could not be decoded or parsed, e.g. malformed
+ * JSON, an unsupported Content-Encoding or a corrupt gzip body. Sending the same request again
+ * would get the same payload, so it is neither retried nor counted against the circuit.
+ */
+public class ChplResponseException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	public ChplResponseException(URI uri, IOException cause) {
+		super("Could not read the response from " + uri + ": " + cause.getMessage(), cause);
+	}
+}
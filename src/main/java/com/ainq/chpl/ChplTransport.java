@@ -0,0 +1,40 @@
+package com.ainq.chpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Carries the wrapper's requests to the CHPL API, or to something standing in for it.
+ * Selected with {@value ChplApiWrapper#TRANSPORT_PROPERTY}:
+ * <ul>
+ * <li>{@value #HTTP} - the live API over the pooled HTTP client (default)</li>
+ * <li>{@value #HTTP2} - the live API over HTTP/2 where the server supports it, see {@link #HTTP2_CLASS_NAME};
+ * falls back to {@value #HTTP} on Java 8</li>
+ * <li>{@value #RECORD} - the live API, saving every response under {@value ChplApiWrapper#TRANSPORT_DIR_PROPERTY}</li>
+ * <li>{@value #REPLAY} - the saved responses only, with optional injected latency and no network access</li>
+ * </ul>
+ */
+interface ChplTransport extends Closeable {
+	String HTTP = "http";
+	String HTTP2 = "http2";
+	String RECORD = "record";
+	String REPLAY = "replay";
+
+	/**
+	 * The HTTP/2 transport is built only on JDK 11 and later, so it is loaded by name.
+	 */
+	String HTTP2_CLASS_NAME = "com.ainq.chpl.Http2Transport";
+
+	/**
+	 * Execute a request and hand the response to the handler. The response body is released
+	 * once the handler returns.
+	 * @param request - the request
+	 * @param handler - reads the status, headers and body
+	 * @return whatever the handler returns
+	 * @throws IOException - if the request fails or the handler throws
+	 */
+	<T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException;
+}
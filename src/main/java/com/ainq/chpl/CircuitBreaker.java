@@ -0,0 +1,98 @@
+package com.ainq.chpl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fails requests fast while the API is down. After {@code failureThreshold} consecutive failures
+ * the circuit opens and every request is rejected for {@code openMillis}; then a single trial
+ * request is let through, closing the circuit on success and reopening it on failure.
+ */
+class CircuitBreaker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int failureThreshold;
+	private final long openNanos;
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	private long openedAtNanos;
+	private boolean trialInFlight;
+
+	/**
+	 * @param failureThreshold - consecutive failures that open the circuit
+	 * @param openMillis - how long the circuit stays open before a trial request
+	 */
+	CircuitBreaker(int failureThreshold, long openMillis) {
+		this.failureThreshold = Math.max(1, failureThreshold);
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+	}
+
+	/**
+	 * Ask permission to send a request.
+	 * @throws CircuitOpenException - if the circuit is open
+	 */
+	synchronized void beforeCall() throws CircuitOpenException {
+		if (state == State.OPEN) {
+			long remaining = openedAtNanos + openNanos - System.nanoTime();
+			if (remaining > 0) {
+				throw new CircuitOpenException(TimeUnit.NANOSECONDS.toMillis(remaining));
+			}
+			state = State.HALF_OPEN;
+			trialInFlight = false;
+		}
+		if (state == State.HALF_OPEN) {
+			if (trialInFlight) {
+				throw new CircuitOpenException(0);
+			}
+			trialInFlight = true;
+		}
+	}
+
+	/**
+	 * The server answered.
+	 */
+	synchronized void onSuccess() {
+		if (state != State.CLOSED) {
+			LOGGER.info("CHPL API recovered, closing circuit");
+		}
+		state = State.CLOSED;
+		consecutiveFailures = 0;
+		trialInFlight = false;
+	}
+
+	/**
+	 * The server failed or could not be reached.
+	 */
+	synchronized void onFailure() {
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+			if (state != State.OPEN) {
+				LOGGER.warn("Opening circuit after {} consecutive failures of the CHPL API", consecutiveFailures);
+			}
+			state = State.OPEN;
+			openedAtNanos = System.nanoTime();
+			trialInFlight = false;
+		}
+	}
+
+	/**
+	 * A permitted request ended without a verdict on the server, e.g. it was interrupted.
+	 * Frees the trial slot so the next request can probe the server.
+	 */
+	synchronized void onAbandoned() {
+		trialInFlight = false;
+	}
+
+	/**
+	 * @return current state
+	 */
+	synchronized State getState() {
+		return state;
+	}
+}
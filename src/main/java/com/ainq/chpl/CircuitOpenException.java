@@ -0,0 +1,24 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of sending a request while the circuit breaker considers the CHPL API down.
+ */
+public class CircuitOpenException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	private final long retryInMillis;
+
+	public CircuitOpenException(long retryInMillis) {
+		super("CHPL API circuit is open, next attempt allowed in " + retryInMillis + " ms");
+		this.retryInMillis = retryInMillis;
+	}
+
+	/**
+	 * @return time until the circuit lets a trial request through
+	 */
+	public long getRetryInMillis() {
+		return retryInMillis;
+	}
+}
@@ -0,0 +1,53 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.entity.DeflateInputStream;
+
+/**
+ * Decompresses gzip and deflate response bodies as they are read, so a compressed body is
+ * never held in memory whole, neither compressed nor decoded. Several codings are undone in the
+ * reverse of the order they are listed in, the last one applied first (RFC 9110, section 8.4).
+ */
+final class ContentEncoding {
+	/**
+	 * Value of the Accept-Encoding request header.
+	 */
+	static final String ACCEPTED = "gzip, deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private ContentEncoding() {
+	}
+
+	/**
+	 * @param body - body as transferred
+	 * @param contentEncoding - the response's Content-Encoding header, or null
+	 * @return stream of the decoded body
+	 * @throws IOException - for an encoding other than gzip, deflate or identity, or a corrupt gzip header
+	 */
+	static InputStream decode(InputStream body, Header contentEncoding) throws IOException {
+		if (contentEncoding == null) {
+			return body;
+		}
+		InputStream decoded = body;
+		HeaderElement[] codings = contentEncoding.getElements();
+		for (int i = codings.length - 1; i >= 0; i--) {
+			String coding = codings[i].getName().toLowerCase(Locale.ROOT);
+			if (coding.equals("gzip") || coding.equals("x-gzip")) {
+				decoded = new GZIPInputStream(decoded, BUFFER_SIZE);
+			} else if (coding.equals("deflate")) {
+				decoded = new DeflateInputStream(decoded);
+			} else if (!coding.equals("identity")) {
+				throw new ClientProtocolException("Unsupported Content-Encoding: " + contentEncoding.getValue());
+			}
+		}
+		return decoded;
+	}
+}
@@ -0,0 +1,247 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Materialized answer to "which education levels did test participants have, for the listings
+ * matching a search and certified within a date window", kept up to date as the window moves.
+ * Each listing's education levels are stored keyed by listing id and certification date, with a
+ * count per education level of the listings having it. Moving the window searches only the days
+ * that entered it, fetches details only for listings not already held, and retracts the listings
+ * whose certification date left it; listings in the overlap cost nothing.
+ * <p>
+ * Days that stay in the window are not searched again, so listings added to or removed from those
+ * days after they were searched are only noticed after {@link #clear()}.
+ * Instances are thread safe; create them with {@link ChplApiWrapper#newEducationLevelWindow(SearchQuery)}.
+ */
+public final class EducationLevelWindow {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EducationLevelWindow.class);
+
+	/**
+	 * Certification dates are reported as instants; the CHPL's days are US Eastern days.
+	 */
+	static final ZoneId CERTIFICATION_DATE_ZONE = ZoneId.of("America/New_York");
+
+	private final SearchQuery baseQuery;
+	private final Function<SearchQuery, Stream<Listing>> search;
+	private final SnapshotSync.DetailsReader details;
+	private final BoundedFanOut fanOut;
+
+	private final Map<Long, Entry> listings = new HashMap<>();
+	private final NavigableMap<LocalDate, Set<Long>> listingsByDate = new TreeMap<>();
+	private final Map<String, Integer> listingCounts = new HashMap<>();
+	private LocalDate start;
+	private LocalDate end;
+
+	private static final class Entry {
+		final LocalDate certificationDate;
+		final Set<String> educationTypeNames;
+
+		Entry(LocalDate certificationDate, Set<String> educationTypeNames) {
+			this.certificationDate = certificationDate;
+			this.educationTypeNames = educationTypeNames;
+		}
+	}
+
+	/**
+	 * @param baseQuery - filters other than the certification dates, which are replaced by the window's
+	 * @param search - runs a search
+	 * @param details - reads the education levels of one listing
+	 * @param fanOut - runs the details reads concurrently, or null to read them one at a time
+	 */
+	EducationLevelWindow(SearchQuery baseQuery, Function<SearchQuery, Stream<Listing>> search,
+			SnapshotSync.DetailsReader details, BoundedFanOut fanOut) {
+		this.baseQuery = baseQuery;
+		this.search = search;
+		this.details = details;
+		this.fanOut = fanOut;
+	}
+
+	/**
+	 * Move the window, folding in the listings certified on days that entered it and retracting
+	 * those certified on days that left it. A window not overlapping the current one is built from scratch.
+	 * @param start - first certification date in the window
+	 * @param end - last certification date in the window
+	 * @return education level names of the listings now in the window
+	 * @throws IOException - if a search or details request fails; the window is then left where it was
+	 */
+	public synchronized Set<String> moveTo(LocalDate start, LocalDate end) throws IOException {
+		if (end.isBefore(start)) {
+			throw new IllegalArgumentException("Window ends on " + end + " before it starts on " + start);
+		}
+		long began = System.currentTimeMillis();
+		boolean overlaps = this.start != null && !start.isAfter(this.end) && !end.isBefore(this.start);
+		List<LocalDate[]> entered = new ArrayList<>(2);
+		if (!overlaps) {
+			entered.add(new LocalDate[] { start, end });
+		} else {
+			if (start.isBefore(this.start)) {
+				entered.add(new LocalDate[] { start, this.start.minusDays(1) });
+			}
+			if (end.isAfter(this.end)) {
+				entered.add(new LocalDate[] { this.end.plusDays(1), end });
+			}
+		}
+
+		Map<Long, LocalDate> added = new LinkedHashMap<>();
+		for (LocalDate[] days : entered) {
+			findListings(days[0], days[1], overlaps, added);
+		}
+		Map<Long, Set<String>> fetched = fetch(added.keySet());
+
+		int retracted = 0;
+		if (!overlaps) {
+			retracted = listings.size();
+			clear();
+		} else {
+			retracted += retract(listingsByDate.headMap(start, false));
+			retracted += retract(listingsByDate.tailMap(end, false));
+		}
+		for (Map.Entry<Long, LocalDate> listing : added.entrySet()) {
+			fold(listing.getKey(), new Entry(listing.getValue(), fetched.get(listing.getKey())));
+		}
+		this.start = start;
+		this.end = end;
+		LOGGER.info("Moved the education level window to {}..{} in {} ms: {} listings fetched, {} retracted, {} held",
+				start, end, System.currentTimeMillis() - began, added.size(), retracted, listings.size());
+		return getEducationLevelNames();
+	}
+
+	/**
+	 * @return education level names of the listings in the window, sorted
+	 */
+	public synchronized Set<String> getEducationLevelNames() {
+		return Collections.unmodifiableSet(new TreeSet<>(listingCounts.keySet()));
+	}
+
+	/**
+	 * @return for each education level, the number of listings in the window with a participant having it
+	 */
+	public synchronized Map<String, Integer> getListingCounts() {
+		return Collections.unmodifiableMap(new TreeMap<>(listingCounts));
+	}
+
+	/**
+	 * @return number of listings in the window
+	 */
+	public synchronized int size() {
+		return listings.size();
+	}
+
+	/**
+	 * @return first day of the window, or null before the first move
+	 */
+	public synchronized LocalDate getStart() {
+		return start;
+	}
+
+	/**
+	 * @return last day of the window, or null before the first move
+	 */
+	public synchronized LocalDate getEnd() {
+		return end;
+	}
+
+	/**
+	 * Forget every listing, so the next move searches its whole window again.
+	 */
+	public synchronized void clear() {
+		listings.clear();
+		listingsByDate.clear();
+		listingCounts.clear();
+		start = null;
+		end = null;
+	}
+
+	/**
+	 * Collect the listings certified between two days that the window does not hold yet.
+	 * A listing's date is clamped to the days searched, so a time zone disagreement with
+	 * the API cannot file it under a day the search did not cover.
+	 */
+	private void findListings(LocalDate from, LocalDate to, boolean skipHeld, Map<Long, LocalDate> added)
+			throws IOException {
+		SearchQuery.Builder query = SearchQuery.builder().pageSize(baseQuery.getPageSize());
+		baseQuery.getParameters().forEach(query::filter);
+		query.certificationDateStart(from).certificationDateEnd(to);
+		try (Stream<Listing> found = search.apply(query.build())) {
+			found.forEach(listing -> {
+				if (skipHeld && listings.containsKey(listing.getId())) {
+					return;
+				}
+				LocalDate date = listing.getCertificationDate() == null ? from
+						: Instant.ofEpochMilli(listing.getCertificationDate()).atZone(CERTIFICATION_DATE_ZONE).toLocalDate();
+				if (date.isBefore(from)) {
+					date = from;
+				} else if (date.isAfter(to)) {
+					date = to;
+				}
+				added.putIfAbsent(listing.getId(), date);
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Map<Long, Set<String>> fetch(Set<Long> listingIds) throws IOException {
+		Map<Long, Set<String>> fetched = new ConcurrentHashMap<>();
+		BoundedFanOut.Task<Long> read = listingId -> fetched.put(listingId,
+				Collections.unmodifiableSet(details.educationTypeNames(listingId)));
+		if (fanOut != null) {
+			fanOut.forEach(listingIds, read);
+		} else {
+			for (Long listingId : listingIds) {
+				read.apply(listingId);
+			}
+		}
+		return fetched;
+	}
+
+	private void fold(long listingId, Entry entry) {
+		listings.put(listingId, entry);
+		listingsByDate.computeIfAbsent(entry.certificationDate, date -> new HashSet<>()).add(listingId);
+		for (String name : entry.educationTypeNames) {
+			listingCounts.merge(name, 1, Integer::sum);
+		}
+	}
+
+	/**
+	 * Remove every listing certified on the given days.
+	 * @param days - view of the days leaving the window
+	 * @return number of listings removed
+	 */
+	private int retract(NavigableMap<LocalDate, Set<Long>> days) {
+		int removed = 0;
+		for (Set<Long> listingIds : days.values()) {
+			for (Long listingId : listingIds) {
+				Entry entry = listings.remove(listingId);
+				for (String name : entry.educationTypeNames) {
+					listingCounts.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+				}
+				removed++;
+			}
+		}
+		days.clear();
+		return removed;
+	}
+}
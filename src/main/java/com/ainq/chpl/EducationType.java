@@ -0,0 +1,65 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * One entry of the education types reference data.
+ * Instances are immutable.
+ */
+public final class EducationType {
+	private final long id;
+	private final String name;
+
+	EducationType(long id, String name) {
+		this.id = id;
+		this.name = name;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public String toString() {
+		return "EducationType [id=" + id + ", name=" + name + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<EducationType> {
+		@Override
+		public EducationType read(JsonReader reader) throws IOException {
+			long id = 0;
+			String name = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "name":
+					name = ChplJson.nextString(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new EducationType(id, name);
+		}
+
+		@Override
+		public void write(JsonWriter writer, EducationType educationType) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(educationType.id);
+			writer.name("name").value(educationType.name);
+			writer.endObject();
+		}
+	}
+}
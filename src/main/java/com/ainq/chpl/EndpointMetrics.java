@@ -0,0 +1,203 @@
+package com.ainq.chpl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and latency histograms for one logical endpoint, e.g. {@value ChplApiWrapper#DETAILS_ENDPOINT}.
+ */
+class EndpointMetrics implements EndpointMetricsMXBean {
+	private final String endpoint;
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder decodedBytesRead = new LongAdder();
+	private final LongAdder hedges = new LongAdder();
+	private final LongAdder hedgeWins = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final LatencyHistogram network = new LatencyHistogram();
+	private final LatencyHistogram parse = new LatencyHistogram();
+
+	EndpointMetrics(String endpoint) {
+		this.endpoint = endpoint;
+	}
+
+	/**
+	 * Start timing one HTTP request.
+	 * @return the timer, to be finished with exactly one call to succeeded, failed or abandoned
+	 */
+	RequestTimer start() {
+		requests.increment();
+		return new RequestTimer();
+	}
+
+	/**
+	 * A hedge request was sent because the first one was slow.
+	 */
+	void hedgeSent() {
+		hedges.increment();
+	}
+
+	/**
+	 * A hedge request answered before the request it duplicated.
+	 */
+	void hedgeWon() {
+		hedgeWins.increment();
+	}
+
+	/**
+	 * @return point-in-time copy of the whole-request latencies
+	 */
+	LatencyHistogram.Snapshot latencySnapshot() {
+		return latency.snapshot();
+	}
+
+	/**
+	 * @return point-in-time copy
+	 */
+	EndpointMetricsSnapshot snapshot() {
+		return new EndpointMetricsSnapshot(endpoint, requests.sum(), errors.sum(), bytesRead.sum(),
+				decodedBytesRead.sum(), hedges.sum(), hedgeWins.sum(), latency.snapshot(), network.snapshot(),
+				parse.snapshot());
+	}
+
+	/**
+	 * Times the phases of one request.
+	 */
+	final class RequestTimer {
+		private final long startNanos = System.nanoTime();
+		private long headersNanos;
+		private long bytes;
+		private long decodedBytes;
+		private boolean errorStatus;
+
+		/**
+		 * The status line and headers arrived; the body is about to be read.
+		 * @param statusCode - HTTP status, 4xx and 5xx count as errors
+		 */
+		void headersReceived(int statusCode) {
+			headersNanos = System.nanoTime();
+			network.record(headersNanos - startNanos);
+			errorStatus = statusCode >= 400;
+		}
+
+		/**
+		 * @param bytes - body bytes read off the wire
+		 * @param decodedBytes - body bytes after decompression, equal to bytes when the body was not compressed
+		 */
+		void bodyRead(long bytes, long decodedBytes) {
+			this.bytes = bytes;
+			this.decodedBytes = decodedBytes;
+		}
+
+		/**
+		 * The request completed, possibly with an error status.
+		 */
+		void succeeded() {
+			finish(errorStatus);
+		}
+
+		/**
+		 * The request failed with an exception.
+		 */
+		void failed() {
+			finish(true);
+		}
+
+		/**
+		 * The request was aborted because another copy of it answered first; it is neither an
+		 * error nor a latency sample, since it was cut short on purpose.
+		 */
+		void abandoned() {
+			bytesRead.add(bytes);
+			decodedBytesRead.add(decodedBytes);
+		}
+
+		private void finish(boolean error) {
+			long end = System.nanoTime();
+			if (error) {
+				errors.increment();
+			}
+			bytesRead.add(bytes);
+			decodedBytesRead.add(decodedBytes);
+			latency.record(end - startNanos);
+			if (headersNanos != 0) {
+				parse.record(end - headersNanos);
+			}
+		}
+	}
+
+	@Override
+	public long getRequestCount() {
+		return requests.sum();
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errors.sum();
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead.sum();
+	}
+
+	@Override
+	public long getDecodedBytesRead() {
+		return decodedBytesRead.sum();
+	}
+
+	@Override
+	public long getHedgeCount() {
+		return hedges.sum();
+	}
+
+	@Override
+	public long getHedgeWinCount() {
+		return hedgeWins.sum();
+	}
+
+	@Override
+	public double getLatencyMeanMillis() {
+		return snapshot().getLatencyMeanMillis();
+	}
+
+	@Override
+	public double getLatencyP50Millis() {
+		return snapshot().getLatencyP50Millis();
+	}
+
+	@Override
+	public double getLatencyP99Millis() {
+		return snapshot().getLatencyP99Millis();
+	}
+
+	@Override
+	public double getLatencyP999Millis() {
+		return snapshot().getLatencyP999Millis();
+	}
+
+	@Override
+	public double getLatencyMaxMillis() {
+		return snapshot().getLatencyMaxMillis();
+	}
+
+	@Override
+	public double getNetworkP50Millis() {
+		return snapshot().getNetworkP50Millis();
+	}
+
+	@Override
+	public double getNetworkP99Millis() {
+		return snapshot().getNetworkP99Millis();
+	}
+
+	@Override
+	public double getParseP50Millis() {
+		return snapshot().getParseP50Millis();
+	}
+
+	@Override
+	public double getParseP99Millis() {
+		return snapshot().getParseP99Millis();
+	}
+}
@@ -0,0 +1,50 @@
+package com.ainq.chpl;
+
+/**
+ * JMX view of the metrics of one logical endpoint, registered as
+ * {@code com.ainq.chpl:type=EndpointMetrics,instance=<n>,name=<endpoint>}.
+ * Latencies are in milliseconds.
+ */
+public interface EndpointMetricsMXBean {
+	long getRequestCount();
+
+	long getErrorCount();
+
+	/**
+	 * @return response body bytes as transferred, compressed when the server compressed them
+	 */
+	long getBytesRead();
+
+	/**
+	 * @return response body bytes after decompression, as seen by the JSON parser
+	 */
+	long getDecodedBytesRead();
+
+	/**
+	 * @return duplicate requests sent because the first was slower than the hedging percentile
+	 */
+	long getHedgeCount();
+
+	/**
+	 * @return hedge requests that answered before the request they duplicated
+	 */
+	long getHedgeWinCount();
+
+	double getLatencyMeanMillis();
+
+	double getLatencyP50Millis();
+
+	double getLatencyP99Millis();
+
+	double getLatencyP999Millis();
+
+	double getLatencyMaxMillis();
+
+	double getNetworkP50Millis();
+
+	double getNetworkP99Millis();
+
+	double getParseP50Millis();
+
+	double getParseP99Millis();
+}
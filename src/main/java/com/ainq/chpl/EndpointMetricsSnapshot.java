@@ -0,0 +1,138 @@
+package com.ainq.chpl;
+
+/**
+ * Point-in-time metrics of one logical endpoint. Latencies are in milliseconds.
+ * <ul>
+ * <li>latency - whole request, from sending it until the body has been parsed</li>
+ * <li>network - from sending the request until the response headers arrived</li>
+ * <li>parse - reading and parsing the streamed body</li>
+ * </ul>
+ */
+public final class EndpointMetricsSnapshot implements EndpointMetricsMXBean {
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	private final String endpoint;
+	private final long requestCount;
+	private final long errorCount;
+	private final long bytesRead;
+	private final long decodedBytesRead;
+	private final long hedgeCount;
+	private final long hedgeWinCount;
+	private final LatencyHistogram.Snapshot latency;
+	private final LatencyHistogram.Snapshot network;
+	private final LatencyHistogram.Snapshot parse;
+
+	EndpointMetricsSnapshot(String endpoint, long requestCount, long errorCount, long bytesRead, long decodedBytesRead,
+			long hedgeCount, long hedgeWinCount, LatencyHistogram.Snapshot latency, LatencyHistogram.Snapshot network,
+			LatencyHistogram.Snapshot parse) {
+		this.endpoint = endpoint;
+		this.requestCount = requestCount;
+		this.errorCount = errorCount;
+		this.bytesRead = bytesRead;
+		this.decodedBytesRead = decodedBytesRead;
+		this.hedgeCount = hedgeCount;
+		this.hedgeWinCount = hedgeWinCount;
+		this.latency = latency;
+		this.network = network;
+		this.parse = parse;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	@Override
+	public long getRequestCount() {
+		return requestCount;
+	}
+
+	@Override
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+	@Override
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	@Override
+	public long getDecodedBytesRead() {
+		return decodedBytesRead;
+	}
+
+	@Override
+	public long getHedgeCount() {
+		return hedgeCount;
+	}
+
+	@Override
+	public long getHedgeWinCount() {
+		return hedgeWinCount;
+	}
+
+	@Override
+	public double getLatencyMeanMillis() {
+		return latency.getMean() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getLatencyP50Millis() {
+		return millis(latency, 0.50);
+	}
+
+	@Override
+	public double getLatencyP99Millis() {
+		return millis(latency, 0.99);
+	}
+
+	@Override
+	public double getLatencyP999Millis() {
+		return millis(latency, 0.999);
+	}
+
+	@Override
+	public double getLatencyMaxMillis() {
+		return latency.getMax() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getNetworkP50Millis() {
+		return millis(network, 0.50);
+	}
+
+	@Override
+	public double getNetworkP99Millis() {
+		return millis(network, 0.99);
+	}
+
+	@Override
+	public double getParseP50Millis() {
+		return millis(parse, 0.50);
+	}
+
+	@Override
+	public double getParseP99Millis() {
+		return millis(parse, 0.99);
+	}
+
+	/**
+	 * @param quantile - between 0 and 1
+	 * @return whole-request latency at that quantile in milliseconds
+	 */
+	public double getLatencyMillis(double quantile) {
+		return millis(latency, quantile);
+	}
+
+	private static double millis(LatencyHistogram.Snapshot histogram, double quantile) {
+		return histogram.getValueAtQuantile(quantile) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: requests=%d errors=%d bytes=%d decoded=%d p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms "
+				+ "network p50=%.1fms parse p50=%.1fms hedges=%d won=%d", endpoint, requestCount, errorCount, bytesRead,
+				decodedBytesRead, getLatencyP50Millis(), getLatencyP99Millis(), getLatencyP999Millis(),
+				getLatencyMaxMillis(), getNetworkP50Millis(), getParseP50Millis(), hedgeCount, hedgeWinCount);
+	}
+}
@@ -0,0 +1,56 @@
+package com.ainq.chpl;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Combines per-listing {@link ParticipantFacets} with a fork-join parallel reduce:
+ * the list is split in halves until a slice is small enough to merge sequentially,
+ * then the halves' partials are merged pairwise on the way back up.
+ */
+final class FacetAggregator {
+	static final int SEQUENTIAL_THRESHOLD = 256;
+
+	private FacetAggregator() {
+	}
+
+	/**
+	 * @param partials - one per listing; not modified
+	 * @param pool - pool to run the reduce on
+	 * @return the sum of all partials
+	 */
+	static ParticipantFacets merge(List<ParticipantFacets> partials, ForkJoinPool pool) {
+		return pool.invoke(new MergeTask(partials, 0, partials.size()));
+	}
+
+	private static final class MergeTask extends RecursiveTask<ParticipantFacets> {
+		private static final long serialVersionUID = 1L;
+
+		private final List<ParticipantFacets> partials;
+		private final int from;
+		private final int to;
+
+		MergeTask(List<ParticipantFacets> partials, int from, int to) {
+			this.partials = partials;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected ParticipantFacets compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				ParticipantFacets sum = new ParticipantFacets();
+				for (int i = from; i < to; i++) {
+					sum.merge(partials.get(i));
+				}
+				return sum;
+			}
+			int middle = (from + to) >>> 1;
+			MergeTask left = new MergeTask(partials, from, middle);
+			left.fork();
+			ParticipantFacets right = new MergeTask(partials, middle, to).compute();
+			return left.join().merge(right);
+		}
+	}
+}
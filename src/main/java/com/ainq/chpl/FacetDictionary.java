@@ -0,0 +1,64 @@
+package com.ainq.chpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense integer codes for the distinct values of one facet, so counts can be kept in
+ * primitive arrays indexed by code. Lookups of known values do not lock.
+ */
+class FacetDictionary {
+	private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+	private final List<String> values = new ArrayList<>();
+
+	/**
+	 * @param seed - values to encode first, in order, e.g. the reference data of the facet; may be null
+	 */
+	FacetDictionary(List<String> seed) {
+		if (seed != null) {
+			for (String value : seed) {
+				code(value);
+			}
+		}
+	}
+
+	/**
+	 * @param value - facet value
+	 * @return its code, assigned on first sight
+	 */
+	int code(String value) {
+		Integer code = codes.get(value);
+		if (code != null) {
+			return code;
+		}
+		synchronized (values) {
+			code = codes.get(value);
+			if (code == null) {
+				code = values.size();
+				values.add(value);
+				codes.put(value, code);
+			}
+			return code;
+		}
+	}
+
+	/**
+	 * @param code - a code returned by {@link #code(String)}
+	 * @return the value
+	 */
+	String value(int code) {
+		synchronized (values) {
+			return values.get(code);
+		}
+	}
+
+	/**
+	 * @return number of values encoded so far
+	 */
+	int size() {
+		synchronized (values) {
+			return values.size();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.ainq.chpl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts of test participants over a set of listings, by education type, age range,
+ * occupation and certification criterion. Instances are immutable.
+ */
+public final class FacetResult {
+
+	/**
+	 * Participant attributes that are counted.
+	 */
+	public enum Facet {
+		EDUCATION_TYPE, AGE_RANGE, OCCUPATION,
+		/**
+		 * Certification criterion number of the test tasks a participant took part in.
+		 */
+		CRITERION
+	}
+
+	private final int listingCount;
+	private final int participantCount;
+	private final Map<Facet, Map<String, Integer>> participants;
+	private final Map<Facet, Map<String, Integer>> listings;
+	private final Map<String, Map<String, Integer>> educationTypesByCriterion;
+
+	FacetResult(int listingCount, int participantCount, Map<Facet, Map<String, Integer>> participants,
+			Map<Facet, Map<String, Integer>> listings, Map<String, Map<String, Integer>> educationTypesByCriterion) {
+		this.listingCount = listingCount;
+		this.participantCount = participantCount;
+		this.participants = Collections.unmodifiableMap(new EnumMap<>(participants));
+		this.listings = Collections.unmodifiableMap(new EnumMap<>(listings));
+		this.educationTypesByCriterion = Collections.unmodifiableMap(educationTypesByCriterion);
+	}
+
+	/**
+	 * @return number of listings aggregated
+	 */
+	public int getListingCount() {
+		return listingCount;
+	}
+
+	/**
+	 * @return number of distinct participants across those listings; participants are told apart by
+	 *         id, and those without one are counted once per test task
+	 */
+	public int getParticipantCount() {
+		return participantCount;
+	}
+
+	/**
+	 * @param facet - attribute
+	 * @return participants per value, most frequent first
+	 */
+	public Map<String, Integer> getHistogram(Facet facet) {
+		return participants.get(facet);
+	}
+
+	/**
+	 * @param facet - attribute
+	 * @return listings with at least one participant per value, most frequent first
+	 */
+	public Map<String, Integer> getListingHistogram(Facet facet) {
+		return listings.get(facet);
+	}
+
+	/**
+	 * @param facet - attribute
+	 * @return distinct values seen, most frequent first
+	 */
+	public Set<String> getDistinct(Facet facet) {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(participants.get(facet).keySet()));
+	}
+
+	/**
+	 * @param facet - attribute
+	 * @param n - maximum number of values
+	 * @return the n values with the most participants, most frequent first
+	 */
+	public List<String> getTop(Facet facet, int n) {
+		List<String> top = new ArrayList<>(Math.min(n, participants.get(facet).size()));
+		for (String value : participants.get(facet).keySet()) {
+			if (top.size() == n) {
+				break;
+			}
+			top.add(value);
+		}
+		return top;
+	}
+
+	/**
+	 * @return for each criterion, its participants per education type, most frequent first
+	 */
+	public Map<String, Map<String, Integer>> getEducationTypesByCriterion() {
+		return educationTypesByCriterion;
+	}
+
+	/**
+	 * @param counts - count per code
+	 * @param dictionary - values of the codes
+	 * @return non-zero counts by value, by descending count then value
+	 */
+	static Map<String, Integer> histogram(int[] counts, FacetDictionary dictionary) {
+		List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+		for (int code = 0; code < counts.length; code++) {
+			if (counts[code] > 0) {
+				entries.add(new AbstractMap.SimpleImmutableEntry<>(dictionary.value(code), counts[code]));
+			}
+		}
+		entries.sort((a, b) -> a.getValue().equals(b.getValue()) ? a.getKey().compareTo(b.getKey())
+				: Integer.compare(b.getValue(), a.getValue()));
+		Map<String, Integer> histogram = new LinkedHashMap<>();
+		for (Map.Entry<String, Integer> entry : entries) {
+			histogram.put(entry.getKey(), entry.getValue());
+		}
+		return Collections.unmodifiableMap(histogram);
+	}
+
+	@Override
+	public String toString() {
+		return "FacetResult [listings=" + listingCount + ", participants=" + participantCount + ", educationTypes="
+				+ participants.get(Facet.EDUCATION_TYPE) + "]";
+	}
+}
@@ -0,0 +1,15 @@
+package com.ainq.chpl;
+
+/**
+ * Told when the CHPL API goes UP or DOWN, so callers can defer or shed work while it is down.
+ * Register with {@link ChplApiWrapper#addHealthListener(HealthListener)}.
+ */
+@FunctionalInterface
+public interface HealthListener {
+	/**
+	 * Called on the health check thread; implementations should return quickly.
+	 * @param previous - health before the transition
+	 * @param current - health after it
+	 */
+	void stateChanged(ApiHealth previous, ApiHealth current);
+}
@@ -0,0 +1,134 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.StatusLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Polls the status endpoint on a fixed schedule and keeps the outcome as an immutable
+ * {@link ApiHealth}, so that readiness probes and batch jobs read the last known state
+ * instead of calling the API themselves. A 2xx status is a success; an error status or a
+ * failed request is a failure, and {@code failureThreshold} failures in a row mark the API
+ * DOWN. One success marks it UP again. Listeners hear about every change of state.
+ */
+final class HealthMonitor {
+	private static final Logger LOGGER = LoggerFactory.getLogger(HealthMonitor.class);
+
+	/**
+	 * One status request.
+	 */
+	interface Probe {
+		/**
+		 * @return status line of the response
+		 * @throws IOException - if no response arrived
+		 */
+		StatusLine check() throws IOException;
+	}
+
+	private final Probe probe;
+	private final long intervalMillis;
+	private final int failureThreshold;
+	private final List<HealthListener> listeners = new CopyOnWriteArrayList<>();
+	private volatile ApiHealth health = ApiHealth.UNKNOWN;
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param probe - requests the status
+	 * @param intervalMillis - time between the end of one check and the start of the next
+	 * @param failureThreshold - consecutive failures before the API is considered DOWN
+	 */
+	HealthMonitor(Probe probe, long intervalMillis, int failureThreshold) {
+		this.probe = probe;
+		this.intervalMillis = intervalMillis;
+		this.failureThreshold = Math.max(1, failureThreshold);
+	}
+
+	/**
+	 * Start checking at once and then every interval; does nothing when already started.
+	 */
+	synchronized void start() {
+		if (scheduler != null) {
+			return;
+		}
+		scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("chpl-health"));
+		scheduler.scheduleWithFixedDelay(this::check, 0, intervalMillis, TimeUnit.MILLISECONDS);
+		LOGGER.info("Checking the CHPL API status every {} ms", intervalMillis);
+	}
+
+	synchronized boolean isStarted() {
+		return scheduler != null;
+	}
+
+	/**
+	 * Stop checking; the last known health stays readable.
+	 */
+	synchronized void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+			scheduler = null;
+		}
+	}
+
+	/**
+	 * @return last known health, a plain memory read
+	 */
+	ApiHealth getHealth() {
+		return health;
+	}
+
+	void addListener(HealthListener listener) {
+		listeners.add(listener);
+	}
+
+	void removeListener(HealthListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Run one check and publish its outcome. Only the scheduler thread calls this, except in tests.
+	 */
+	void check() {
+		long start = System.nanoTime();
+		String status = "";
+		boolean success = false;
+		try {
+			StatusLine statusLine = probe.check();
+			status = statusLine.getReasonPhrase() == null ? "" : statusLine.getReasonPhrase();
+			success = statusLine.getStatusCode() < 300;
+		} catch (IOException | RuntimeException e) {
+			LOGGER.debug("Status check failed: {}", e.toString());
+		}
+		long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		long now = System.currentTimeMillis();
+
+		ApiHealth previous = health;
+		int failures = success ? 0 : previous.getConsecutiveFailures() + 1;
+		ApiHealth.State state = success ? ApiHealth.State.UP
+				: failures >= failureThreshold ? ApiHealth.State.DOWN : previous.getState();
+		boolean changed = state != previous.getState();
+		ApiHealth current = new ApiHealth(state, status, latencyMillis, failures, now,
+				changed ? now : previous.getStateSinceMillis());
+		health = current;
+		if (changed) {
+			if (state == ApiHealth.State.DOWN) {
+				LOGGER.warn("CHPL API is DOWN after {} failed status checks, last status \"{}\"", failures, status);
+			} else {
+				LOGGER.info("CHPL API is {}", current);
+			}
+			for (HealthListener listener : listeners) {
+				try {
+					listener.stateChanged(previous, current);
+				} catch (RuntimeException e) {
+					LOGGER.warn("Health listener {} failed", listener, e);
+				}
+			}
+		}
+	}
+}
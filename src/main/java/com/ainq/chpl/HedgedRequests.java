@@ -0,0 +1,249 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Sends a second copy of a request attempt that has not completed within a high percentile of
+ * the endpoint's observed latency, and takes whichever response arrives first, so one slow
+ * response does not set the latency of a whole batch. The first attempt runs on the calling
+ * thread; only the hedge runs on this class's own threads, so hedging never waits on a pool
+ * shared with the caller. When the hedge answers first the first attempt is aborted, and when
+ * the first attempt answers first the hedge is.
+ * <p>
+ * Hedging works on single attempts, inside the rate limiter and retries, so waiting for a permit
+ * or backing off is not mistaken for a slow response. A hedge is only sent when the rate limiter
+ * has a permit available at once, and it is paid from a budget that every attempt adds a fraction
+ * of a hedge to, which bounds hedges to that fraction of the attempts over time, including when
+ * the API is slow across the board. Until enough latencies have been observed to estimate the
+ * percentile no attempt is hedged.
+ */
+final class HedgedRequests {
+	static final long MIN_SAMPLES = 20;
+	private static final long DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final long CREDITS_PER_HEDGE = 1000;
+	private static final long MAX_SAVED_HEDGES = 10;
+
+	/**
+	 * One attempt of the request.
+	 * @param <T> result type
+	 */
+	interface Attempt<T> {
+		/**
+		 * @param abort - where the attempt registers how to abort it once the other copy has answered
+		 * @return the result
+		 * @throws IOException - if the attempt fails or is aborted
+		 */
+		T call(Abort abort) throws IOException;
+	}
+
+	/**
+	 * Aborts an attempt in flight, e.g. by aborting its HTTP request.
+	 */
+	static final class Abort {
+		private Runnable action;
+		private boolean aborted;
+
+		/**
+		 * @param action - run on abort, at once if the attempt was aborted already
+		 */
+		void onAbort(Runnable action) {
+			boolean runNow;
+			synchronized (this) {
+				this.action = action;
+				runNow = aborted;
+			}
+			if (runNow) {
+				action.run();
+			}
+		}
+
+		void abort() {
+			Runnable run;
+			synchronized (this) {
+				aborted = true;
+				run = action;
+			}
+			if (run != null) {
+				run.run();
+			}
+		}
+	}
+
+	/**
+	 * State shared by the first attempt and the timer that may start the hedge.
+	 */
+	private static final class Race<T> {
+		final CompletableFuture<T> first = new CompletableFuture<>();
+		final Abort primaryAbort = new Abort();
+		final Abort hedgeAbort = new Abort();
+		boolean primaryDone;
+		CompletableFuture<T> hedge;
+	}
+
+	private final EndpointMetrics metrics;
+	private final double quantile;
+	private final long minDelayNanos;
+	private final long creditsPerRequest;
+	private final BooleanSupplier permit;
+	private final ScheduledExecutorService timer =
+			Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("chpl-hedge-timer"));
+	private final ExecutorService hedges = Executors.newCachedThreadPool(new DaemonThreadFactory("chpl-hedge"));
+	private final AtomicLong credits = new AtomicLong();
+	private volatile long delayNanos = -1;
+	private volatile long delayComputedAtNanos;
+
+	/**
+	 * @param metrics - attempt latencies of the endpoint, and where hedges are counted
+	 * @param quantile - latency quantile after which to hedge, e.g. 0.95
+	 * @param minDelayMillis - never hedge sooner than this
+	 * @param budgetPercent - hedges allowed per hundred attempts
+	 * @param permit - takes a rate limiter permit for the hedge if one is available without waiting
+	 */
+	HedgedRequests(EndpointMetrics metrics, double quantile, long minDelayMillis, double budgetPercent,
+			BooleanSupplier permit) {
+		this.metrics = metrics;
+		this.quantile = quantile;
+		this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+		this.creditsPerRequest = Math.round(budgetPercent / 100 * CREDITS_PER_HEDGE);
+		this.permit = permit;
+		this.delayComputedAtNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param attempt - one attempt of the request; may run twice concurrently, so it must be idempotent
+	 * @return the first successful result
+	 * @throws IOException - the first attempt's failure, if the hedge failed too or was never sent
+	 */
+	<T> T execute(Attempt<T> attempt) throws IOException {
+		earn();
+		long delay = delayNanos();
+		if (delay < 0) {
+			return attempt.call(new Abort());
+		}
+		Race<T> race = new Race<>();
+		ScheduledFuture<?> hedgeTimer = timer.schedule(() -> hedge(race, attempt), delay, TimeUnit.NANOSECONDS);
+		T value = null;
+		IOException ioFailure = null;
+		RuntimeException runtimeFailure = null;
+		try {
+			value = attempt.call(race.primaryAbort);
+		} catch (IOException e) {
+			ioFailure = e;
+		} catch (RuntimeException e) {
+			runtimeFailure = e;
+		}
+		CompletableFuture<T> hedge;
+		synchronized (race) {
+			race.primaryDone = true;
+			hedge = race.hedge;
+		}
+		hedgeTimer.cancel(false);
+		if (ioFailure == null && runtimeFailure == null) {
+			race.first.complete(value);
+			if (hedge != null) {
+				race.hedgeAbort.abort();
+				hedge.cancel(true);
+			}
+			return value;
+		}
+		if (hedge != null) {
+			// the first attempt failed, possibly because the hedge answered and aborted it
+			try {
+				return hedge.get();
+			} catch (InterruptedException e) {
+				race.hedgeAbort.abort();
+				hedge.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a response");
+			} catch (ExecutionException e) {
+				// report the first attempt's failure, as if there had been no hedge
+			}
+		}
+		if (ioFailure != null) {
+			throw ioFailure;
+		}
+		throw runtimeFailure;
+	}
+
+	/**
+	 * Start the hedge, unless the first attempt has finished, the budget is spent or the rate
+	 * limiter has no permit to spare. Runs on the timer thread.
+	 */
+	private <T> void hedge(Race<T> race, Attempt<T> attempt) {
+		synchronized (race) {
+			if (race.primaryDone || !spend()) {
+				return;
+			}
+			if (!permit.getAsBoolean()) {
+				refund();
+				return;
+			}
+			metrics.hedgeSent();
+			race.hedge = AsyncCalls.supply(() -> attempt.call(race.hedgeAbort), hedges);
+		}
+		race.hedge.thenAccept(value -> {
+			if (race.first.complete(value)) {
+				metrics.hedgeWon();
+				race.primaryAbort.abort();
+			}
+		});
+	}
+
+	/**
+	 * Stop the hedge timer and abandon hedges in flight.
+	 */
+	void close() {
+		timer.shutdownNow();
+		hedges.shutdownNow();
+	}
+
+	/**
+	 * @return nanoseconds to wait before hedging, or -1 while too few latencies have been observed
+	 */
+	long delayNanos() {
+		long now = System.nanoTime();
+		if (delayNanos < 0 || now - delayComputedAtNanos >= DELAY_REFRESH_NANOS) {
+			LatencyHistogram.Snapshot latency = metrics.latencySnapshot();
+			delayNanos = latency.getCount() < MIN_SAMPLES ? -1
+					: Math.max(minDelayNanos, latency.getValueAtQuantile(quantile));
+			delayComputedAtNanos = now;
+		}
+		return delayNanos;
+	}
+
+	private void earn() {
+		long limit = MAX_SAVED_HEDGES * CREDITS_PER_HEDGE;
+		long current;
+		do {
+			current = credits.get();
+			if (current >= limit) {
+				return;
+			}
+		} while (!credits.compareAndSet(current, Math.min(limit, current + creditsPerRequest)));
+	}
+
+	private boolean spend() {
+		long current;
+		do {
+			current = credits.get();
+			if (current < CREDITS_PER_HEDGE) {
+				return false;
+			}
+		} while (!credits.compareAndSet(current, current - CREDITS_PER_HEDGE));
+		return true;
+	}
+
+	private void refund() {
+		credits.addAndGet(CREDITS_PER_HEDGE);
+	}
+}
@@ -0,0 +1,314 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends requests over {@code java.net.http.HttpClient}, which multiplexes concurrent requests to
+ * a host as streams of a single HTTP/2 connection, so a large details fan-out needs a handful of
+ * sockets instead of one per request in flight. HTTPS hosts that do not offer h2 in ALPN, and
+ * plain HTTP hosts that decline the h2c upgrade, are spoken to over HTTP/1.1 instead.
+ * <p>
+ * Needs Java 11: this class is compiled by the java11 Maven profile and only ever loaded
+ * reflectively, see {@value ChplTransport#HTTP2}. Responses are handed to the handlers as
+ * HttpClient 4 responses so the rest of the wrapper is unaware of the client underneath; bodies
+ * stay compressed, as with the pooled client, for the wrapper to decode.
+ * <p>
+ * The socket timeout bounds the wait for the response headers and, separately, every wait for
+ * more of the body, like SO_TIMEOUT on the pooled client's sockets; {@code HttpRequest.timeout}
+ * alone stops counting once the headers have arrived. Aborting a request closes the body, which
+ * fails a read blocked on it. Before the headers arrive, an abort cancels the pending future, but
+ * on Java 11 to 15 cancelling that future does not stop the exchange: the request keeps its
+ * stream until the headers come back, and only then is the body closed.
+ */
+final class Http2Transport implements ChplTransport {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Http2Transport.class);
+	private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+	private static final ProtocolVersion HTTP_1_1 = new ProtocolVersion("HTTP", 1, 1);
+	/**
+	 * Headers java.net.http sets itself and refuses from callers.
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = new HashSet<>(Arrays.asList(
+			"connection", "content-length", "expect", "host", "upgrade"));
+
+	private final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory("chpl-http2"));
+	private final HttpClient client;
+	private final Duration requestTimeout;
+	private final Set<String> negotiated = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param config - reads the connect and socket timeouts of the pooled client
+	 */
+	Http2Transport(ChplConfig config) {
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NORMAL)
+				.executor(executor)
+				.connectTimeout(Duration.ofMillis(config.getInt(PooledHttpClient.CONNECT_TIMEOUT_PROPERTY, 5000)))
+				.build();
+		this.requestTimeout = Duration.ofMillis(config.getInt(PooledHttpClient.SOCKET_TIMEOUT_PROPERTY, 30000));
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(request.getURI())
+				.timeout(requestTimeout)
+				.method(request.getMethod(), HttpRequest.BodyPublishers.noBody());
+		for (Header header : request.getAllHeaders()) {
+			if (!RESTRICTED_HEADERS.contains(header.getName().toLowerCase(Locale.ROOT))) {
+				builder.header(header.getName(), header.getValue());
+			}
+		}
+		CompletableFuture<HttpResponse<InputStream>> pending =
+				client.sendAsync(builder.build(), info -> new TimedBody(requestTimeout));
+		if (request instanceof HttpExecutionAware) {
+			// HttpGet.abort() gives up on the response, or closes its body if it has arrived
+			((HttpExecutionAware) request).setCancellable(() -> {
+				pending.cancel(true);
+				pending.thenAccept(Http2Transport::closeQuietly);
+				return true;
+			});
+		}
+		HttpResponse<InputStream> response;
+		try {
+			response = pending.get();
+		} catch (InterruptedException e) {
+			pending.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + request.getURI());
+		} catch (CancellationException e) {
+			throw new IOException("Request to " + request.getURI() + " aborted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+		String host = request.getURI().getHost() + ":" + request.getURI().getPort();
+		if (negotiated.add(host)) {
+			LOGGER.info("Talking {} to {}", response.version(), request.getURI().getHost());
+		}
+		try (InputStream body = response.body()) {
+			return handler.handleResponse(toHttpResponse(response, body));
+		}
+	}
+
+	private static void closeQuietly(HttpResponse<InputStream> response) {
+		try {
+			response.body().close();
+		} catch (IOException e) {
+			LOGGER.debug("Could not close an aborted response body", e);
+		}
+	}
+
+	/**
+	 * Response body as a stream whose reads give up with a SocketTimeoutException when no data
+	 * has arrived for the timeout, and fail at once when the stream is closed from another thread.
+	 */
+	private static final class TimedBody extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+		// markers, compared by identity
+		private static final List<ByteBuffer> END = new ArrayList<>(0);
+		private static final List<ByteBuffer> CLOSED = new ArrayList<>(0);
+
+		private final long timeoutMillis;
+		private final BlockingQueue<List<ByteBuffer>> received = new LinkedBlockingQueue<>();
+		private final AtomicBoolean closed = new AtomicBoolean();
+		private volatile Flow.Subscription subscription;
+		private volatile Throwable failure;
+		private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+		private ByteBuffer current;
+		private boolean ended;
+
+		TimedBody(Duration timeout) {
+			this.timeoutMillis = timeout.toMillis();
+		}
+
+		@Override
+		public CompletionStage<InputStream> getBody() {
+			return CompletableFuture.completedFuture(this);
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (closed.get()) {
+				subscription.cancel();
+			} else {
+				subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> item) {
+			received.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			failure = throwable;
+			received.add(END);
+		}
+
+		@Override
+		public void onComplete() {
+			received.add(END);
+		}
+
+		@Override
+		public int read() throws IOException {
+			ByteBuffer buffer = current();
+			return buffer == null ? -1 : buffer.get() & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			ByteBuffer buffer = current();
+			if (buffer == null) {
+				return -1;
+			}
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return current == null ? 0 : current.remaining();
+		}
+
+		@Override
+		public void close() {
+			if (closed.compareAndSet(false, true)) {
+				received.add(CLOSED);
+				Flow.Subscription s = subscription;
+				if (s != null) {
+					s.cancel();
+				}
+			}
+		}
+
+		/**
+		 * @return a buffer with bytes left, or null at the end of the body
+		 */
+		private ByteBuffer current() throws IOException {
+			while (current == null || !current.hasRemaining()) {
+				if (buffers.hasNext()) {
+					current = buffers.next();
+					continue;
+				}
+				if (ended) {
+					return null;
+				}
+				if (closed.get() && received.isEmpty()) {
+					throw new IOException("Response body closed");
+				}
+				List<ByteBuffer> next;
+				try {
+					next = received.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new InterruptedIOException("Interrupted while reading the response body");
+				}
+				if (next == null) {
+					close();
+					throw new SocketTimeoutException("No response data for " + timeoutMillis + " ms");
+				}
+				if (next == CLOSED) {
+					throw new IOException("Response body closed");
+				}
+				if (next == END) {
+					ended = true;
+					if (failure != null) {
+						throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+					}
+					return null;
+				}
+				buffers = next.iterator();
+				subscription.request(1);
+			}
+			return current;
+		}
+	}
+
+	private static org.apache.http.HttpResponse toHttpResponse(HttpResponse<InputStream> response, InputStream body) {
+		int status = response.statusCode();
+		// HTTP/2 has no reason phrase, callers such as getChplStatus expect the standard one
+		BasicHttpResponse adapted = new BasicHttpResponse(new BasicStatusLine(
+				response.version() == HttpClient.Version.HTTP_2 ? HTTP_2 : HTTP_1_1, status,
+				EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH)));
+		for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+			if (header.getKey().startsWith(":")) {
+				continue;
+			}
+			for (String value : header.getValue()) {
+				adapted.addHeader(header.getKey(), value);
+			}
+		}
+		if (status != 204 && status != 304) {
+			long contentLength = response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH).orElse(-1);
+			InputStreamEntity entity = new InputStreamEntity(body, contentLength);
+			entity.setContentType(adapted.getFirstHeader(HttpHeaders.CONTENT_TYPE));
+			entity.setContentEncoding(adapted.getFirstHeader(HttpHeaders.CONTENT_ENCODING));
+			adapted.setEntity(entity);
+		}
+		return adapted;
+	}
+
+	@Override
+	public void close() {
+		if (client instanceof AutoCloseable) {
+			// Java 21 and later; before that the connections close when the client is garbage collected
+			try {
+				((AutoCloseable) client).close();
+			} catch (Exception e) {
+				LOGGER.debug("Could not close the HTTP/2 client", e);
+			}
+		}
+		executor.shutdownNow();
+	}
+}
@@ -0,0 +1,30 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+
+/**
+ * Sends requests to the live API over the pooled HTTP client.
+ */
+class HttpTransport implements ChplTransport {
+	private final PooledHttpClient httpClient;
+
+	/**
+	 * @param httpClient - pooled client, closed with this transport
+	 */
+	HttpTransport(PooledHttpClient httpClient) {
+		this.httpClient = httpClient;
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+		return httpClient.httpClient().execute(request, handler);
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+	}
+}
@@ -0,0 +1,150 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Summary of one certified product listing as returned by the CHPL search API.
+ * Instances are immutable.
+ */
+public final class Listing {
+	private final long id;
+	private final String chplProductNumber;
+	private final String edition;
+	private final String developer;
+	private final String product;
+	private final String version;
+	private final String certificationStatus;
+	private final Long certificationDate;
+	private final Long lastModifiedDate;
+
+	Listing(long id, String chplProductNumber, String edition, String developer, String product, String version,
+			String certificationStatus, Long certificationDate, Long lastModifiedDate) {
+		this.id = id;
+		this.chplProductNumber = chplProductNumber;
+		this.edition = edition;
+		this.developer = developer;
+		this.product = product;
+		this.version = version;
+		this.certificationStatus = certificationStatus;
+		this.certificationDate = certificationDate;
+		this.lastModifiedDate = lastModifiedDate;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getChplProductNumber() {
+		return chplProductNumber;
+	}
+
+	public String getEdition() {
+		return edition;
+	}
+
+	public String getDeveloper() {
+		return developer;
+	}
+
+	public String getProduct() {
+		return product;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public String getCertificationStatus() {
+		return certificationStatus;
+	}
+
+	/**
+	 * @return certification date in milliseconds since the epoch, or null if not reported
+	 */
+	public Long getCertificationDate() {
+		return certificationDate;
+	}
+
+	/**
+	 * @return when the listing last changed in milliseconds since the epoch, or null if not reported
+	 */
+	public Long getLastModifiedDate() {
+		return lastModifiedDate;
+	}
+
+	@Override
+	public String toString() {
+		return "Listing [id=" + id + ", chplProductNumber=" + chplProductNumber + ", developer=" + developer
+				+ ", product=" + product + ", version=" + version + "]";
+	}
+
+	/**
+	 * Reads a search result. Edition, developer, product, version and certification status
+	 * are accepted both as plain strings and as small objects; they are written as strings.
+	 */
+	static final class Adapter extends TypeAdapter<Listing> {
+		@Override
+		public Listing read(JsonReader reader) throws IOException {
+			long id = 0;
+			String chplProductNumber = null, edition = null, developer = null, product = null, version = null,
+					certificationStatus = null;
+			Long certificationDate = null, lastModifiedDate = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "chplProductNumber":
+					chplProductNumber = ChplJson.nextString(reader);
+					break;
+				case "edition":
+					edition = ChplJson.readName(reader, "name");
+					break;
+				case "developer":
+					developer = ChplJson.readName(reader, "name");
+					break;
+				case "product":
+					product = ChplJson.readName(reader, "name");
+					break;
+				case "version":
+					version = ChplJson.readName(reader, "version");
+					break;
+				case "certificationStatus":
+					certificationStatus = ChplJson.readName(reader, "name");
+					break;
+				case "certificationDate":
+					certificationDate = ChplJson.nextLong(reader);
+					break;
+				case "lastModifiedDate":
+					lastModifiedDate = ChplJson.nextLong(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new Listing(id, chplProductNumber, edition, developer, product, version, certificationStatus,
+					certificationDate, lastModifiedDate);
+		}
+
+		@Override
+		public void write(JsonWriter writer, Listing listing) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(listing.id);
+			writer.name("chplProductNumber").value(listing.chplProductNumber);
+			writer.name("edition").value(listing.edition);
+			writer.name("developer").value(listing.developer);
+			writer.name("product").value(listing.product);
+			writer.name("version").value(listing.version);
+			writer.name("certificationStatus").value(listing.certificationStatus);
+			writer.name("certificationDate").value(listing.certificationDate);
+			writer.name("lastModifiedDate").value(listing.lastModifiedDate);
+			writer.endObject();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The parts of a listing's details response the wrapper works with: its certification
+ * results and its safety-enhanced design section.
+ * Instances are immutable.
+ */
+public final class ListingDetails {
+	private static final Sed NO_SED = new Sed(Collections.<TestTask>emptyList());
+
+	private final long id;
+	private final String chplProductNumber;
+	private final List<CertificationResult> certificationResults;
+	private final Sed sed;
+
+	ListingDetails(long id, String chplProductNumber, List<CertificationResult> certificationResults, Sed sed) {
+		this.id = id;
+		this.chplProductNumber = chplProductNumber;
+		this.certificationResults = Collections.unmodifiableList(certificationResults);
+		this.sed = sed == null ? NO_SED : sed;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getChplProductNumber() {
+		return chplProductNumber;
+	}
+
+	public List<CertificationResult> getCertificationResults() {
+		return certificationResults;
+	}
+
+	/**
+	 * @return the safety-enhanced design section, without test tasks if the listing has none
+	 */
+	public Sed getSed() {
+		return sed;
+	}
+
+	/**
+	 * @return distinct, non-null education type names of every test participant
+	 */
+	public Set<String> getEducationTypeNames() {
+		Set<String> names = new HashSet<>();
+		for (TestTask task : sed.getTestTasks()) {
+			for (TestParticipant participant : task.getTestParticipants()) {
+				if (participant.getEducationTypeName() != null) {
+					names.add(participant.getEducationTypeName());
+				}
+			}
+		}
+		return names;
+	}
+
+	@Override
+	public String toString() {
+		return "ListingDetails [id=" + id + ", chplProductNumber=" + chplProductNumber + ", certificationResults="
+				+ certificationResults.size() + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<ListingDetails> {
+		private final TypeAdapter<CertificationResult> resultAdapter = new CertificationResult.Adapter();
+		private final TypeAdapter<Sed> sedAdapter = new Sed.Adapter().nullSafe();
+
+		@Override
+		public ListingDetails read(JsonReader reader) throws IOException {
+			long id = 0;
+			String chplProductNumber = null;
+			List<CertificationResult> certificationResults = Collections.emptyList();
+			Sed sed = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "chplProductNumber":
+					chplProductNumber = ChplJson.nextString(reader);
+					break;
+				case "certificationResults":
+					certificationResults = ChplJson.readList(reader, resultAdapter);
+					break;
+				case "sed":
+					sed = sedAdapter.read(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new ListingDetails(id, chplProductNumber, certificationResults, sed);
+		}
+
+		@Override
+		public void write(JsonWriter writer, ListingDetails details) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(details.id);
+			writer.name("chplProductNumber").value(details.chplProductNumber);
+			writer.name("certificationResults");
+			ChplJson.writeList(writer, resultAdapter, details.certificationResults);
+			writer.name("sed");
+			sedAdapter.write(writer, details.sed);
+			writer.endObject();
+		}
+	}
+}
@@ -0,0 +1,351 @@
+package com.ainq.chpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of raw listing details responses keyed by listing id, surviving JVM restarts.
+ * <p>
+ * Bodies are appended to {@value #DATA_FILE} and read back through a read-only memory mapping.
+ * {@value #INDEX_FILE} starts with a magic number and format version, followed by an append-only
+ * log of (listing id, offset, length, stored at) records which is replayed on open; an eviction is
+ * logged as a record with a negative length. An index without that header, e.g. from an older
+ * format, is discarded together with the data file.
+ * When the live bytes exceed the configured maximum the least recently used entries are evicted,
+ * and once more than half of the data file is dead space both files are rewritten (compacted).
+ * The whole data file is mapped and addressed with int offsets, so the live bytes may be at most
+ * half of {@link #MAX_DATA_BYTES} and the files are compacted before an append would pass it.
+ * Entries older than the time to live are dropped when they are read.
+ */
+class ListingDetailsStore implements Closeable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ListingDetailsStore.class);
+	static final String DATA_FILE = "details.dat";
+	static final String INDEX_FILE = "details.idx";
+	private static final int INDEX_MAGIC = 0x43484449;
+	private static final int INDEX_VERSION = 1;
+	private static final int REMOVED = -1;
+	private static final long MIN_COMPACTION_BYTES = 1024 * 1024;
+	/** Largest data file that can be mapped in one buffer. */
+	static final long MAX_DATA_BYTES = Integer.MAX_VALUE;
+
+	private static final class Location {
+		private final long offset;
+		private final int length;
+		private final long storedAtMillis;
+
+		Location(long offset, int length, long storedAtMillis) {
+			this.offset = offset;
+			this.length = length;
+			this.storedAtMillis = storedAtMillis;
+		}
+	}
+
+	private final File directory;
+	private final long maxBytes;
+	private final long maxDataBytes;
+	private final long ttlMillis;
+	private final LongSupplier clock;
+	private final LinkedHashMap<String, Location> index = new LinkedHashMap<>(256, 0.75f, true);
+	private RandomAccessFile dataFile;
+	private FileChannel dataChannel;
+	private DataOutputStream indexLog;
+	private MappedByteBuffer mapped;
+	private long liveBytes;
+
+	/**
+	 * Open the store, creating the directory and files if needed.
+	 * @param directory - directory holding the data and index files
+	 * @param maxBytes - maximum size of the live entries, at most half of {@link #MAX_DATA_BYTES}
+	 * @param ttlMillis - how long an entry is served after it was stored, 0 to keep entries until evicted
+	 * @throws IOException - if the files cannot be opened
+	 * @throws IllegalArgumentException - if maxBytes is larger than the store can address
+	 */
+	ListingDetailsStore(File directory, long maxBytes, long ttlMillis) throws IOException {
+		this(directory, maxBytes, ttlMillis, MAX_DATA_BYTES, System::currentTimeMillis);
+	}
+
+	/**
+	 * @param directory - directory holding the data and index files
+	 * @param maxBytes - maximum size of the live entries, at most half of maxDataBytes
+	 * @param ttlMillis - how long an entry is served after it was stored, 0 to keep entries until evicted
+	 * @param maxDataBytes - largest data file, at most {@link #MAX_DATA_BYTES}
+	 * @param clock - wall clock in milliseconds, persisted with each entry
+	 * @throws IOException - if the files cannot be opened
+	 * @throws IllegalArgumentException - if maxBytes is larger than the store can address
+	 */
+	ListingDetailsStore(File directory, long maxBytes, long ttlMillis, long maxDataBytes, LongSupplier clock)
+			throws IOException {
+		this.directory = directory;
+		this.maxDataBytes = Math.min(maxDataBytes, MAX_DATA_BYTES);
+		if (maxBytes > this.maxDataBytes / 2) {
+			// the data file grows to twice the live bytes before it is compacted
+			throw new IllegalArgumentException("Details cache size " + maxBytes + " exceeds the maximum of "
+					+ this.maxDataBytes / 2 + " bytes");
+		}
+		this.maxBytes = maxBytes;
+		this.ttlMillis = ttlMillis;
+		this.clock = clock;
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create details cache directory " + directory);
+		}
+		open();
+		LOGGER.info("Opened listing details cache in {} with {} entries ({} bytes)", directory, index.size(), liveBytes);
+	}
+
+	/**
+	 * @param listingId - listing id
+	 * @return the cached details body, or null if it is not cached or has expired
+	 * @throws IOException - if the data file cannot be mapped
+	 */
+	synchronized byte[] get(String listingId) throws IOException {
+		Location location = index.get(listingId);
+		if (location == null) {
+			return null;
+		}
+		if (isExpired(location)) {
+			remove(listingId);
+			return null;
+		}
+		ByteBuffer view = mapping(location.offset + location.length).duplicate();
+		view.position((int) location.offset);
+		byte[] body = new byte[location.length];
+		view.get(body);
+		return body;
+	}
+
+	/**
+	 * @param listingId - listing id
+	 * @return true if the listing is cached and has not expired
+	 */
+	synchronized boolean contains(String listingId) {
+		Location location = index.get(listingId);
+		return location != null && !isExpired(location);
+	}
+
+	/**
+	 * Append a details body, replacing any earlier entry for the same listing.
+	 * @param listingId - listing id
+	 * @param body - raw details response
+	 * @throws IOException - if the files cannot be written
+	 */
+	synchronized void put(String listingId, byte[] body) throws IOException {
+		if (body.length > maxBytes) {
+			return;
+		}
+		if (dataChannel.size() + body.length > maxDataBytes) {
+			// live bytes are at most half the limit, so compaction always makes room
+			compact();
+		}
+		long offset = dataChannel.size();
+		ByteBuffer buffer = ByteBuffer.wrap(body);
+		while (buffer.hasRemaining()) {
+			dataChannel.write(buffer, offset + buffer.position());
+		}
+		long storedAt = clock.getAsLong();
+		logIndex(listingId, offset, body.length, storedAt);
+		Location previous = index.put(listingId, new Location(offset, body.length, storedAt));
+		if (previous != null) {
+			liveBytes -= previous.length;
+		}
+		liveBytes += body.length;
+		evictIfNeeded();
+	}
+
+	/**
+	 * Drop the entry for a listing, e.g. because the listing changed.
+	 * @param listingId - listing id
+	 * @throws IOException - if the index cannot be written
+	 */
+	synchronized void remove(String listingId) throws IOException {
+		Location previous = index.remove(listingId);
+		if (previous != null) {
+			liveBytes -= previous.length;
+			logIndex(listingId, 0, REMOVED, 0);
+		}
+	}
+
+	/**
+	 * @return number of cached listings
+	 */
+	synchronized int size() {
+		return index.size();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		mapped = null;
+		indexLog.close();
+		dataFile.close();
+	}
+
+	private void open() throws IOException {
+		File data = new File(directory, DATA_FILE);
+		File indexFile = new File(directory, INDEX_FILE);
+		dataFile = new RandomAccessFile(data, "rw");
+		dataChannel = dataFile.getChannel();
+		boolean replayed = replayIndex(indexFile, dataChannel.size());
+		if (!replayed) {
+			if (dataChannel.size() > 0) {
+				LOGGER.warn("Discarding listing details cache in {} without a readable index", directory);
+			}
+			dataChannel.truncate(0);
+		}
+		indexLog = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, replayed)));
+		if (!replayed) {
+			writeIndexHeader(indexLog);
+			indexLog.flush();
+		}
+		mapped = null;
+	}
+
+	/**
+	 * @return false if there is no index in the current format, in which case the data is unusable
+	 */
+	private boolean replayIndex(File indexFile, long dataSize) throws IOException {
+		index.clear();
+		liveBytes = 0;
+		if (!indexFile.exists() || dataSize > maxDataBytes) {
+			return false;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+			try {
+				if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+					return false;
+				}
+			} catch (EOFException noHeader) {
+				return false;
+			}
+			while (true) {
+				String listingId = in.readUTF();
+				long offset = in.readLong();
+				int length = in.readInt();
+				long storedAt = in.readLong();
+				Location previous;
+				if (length == REMOVED) {
+					previous = index.remove(listingId);
+				} else if (offset + length <= dataSize) {
+					previous = index.put(listingId, new Location(offset, length, storedAt));
+					liveBytes += length;
+				} else {
+					// the body was not fully written before a crash
+					previous = index.remove(listingId);
+				}
+				if (previous != null) {
+					liveBytes -= previous.length;
+				}
+			}
+		} catch (EOFException endOfLog) {
+			// a truncated trailing record is ignored
+		}
+		return true;
+	}
+
+	private static void writeIndexHeader(DataOutputStream out) throws IOException {
+		out.writeInt(INDEX_MAGIC);
+		out.writeInt(INDEX_VERSION);
+	}
+
+	private void logIndex(String listingId, long offset, int length, long storedAt) throws IOException {
+		indexLog.writeUTF(listingId);
+		indexLog.writeLong(offset);
+		indexLog.writeInt(length);
+		indexLog.writeLong(storedAt);
+		indexLog.flush();
+	}
+
+	private boolean isExpired(Location location) {
+		return ttlMillis > 0 && clock.getAsLong() - location.storedAtMillis >= ttlMillis;
+	}
+
+	private MappedByteBuffer mapping(long requiredSize) throws IOException {
+		if (mapped == null || mapped.capacity() < requiredSize) {
+			mapped = dataChannel.map(FileChannel.MapMode.READ_ONLY, 0, dataChannel.size());
+		}
+		return mapped;
+	}
+
+	private void evictIfNeeded() throws IOException {
+		Iterator<Map.Entry<String, Location>> eldest = index.entrySet().iterator();
+		while (liveBytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<String, Location> entry = eldest.next();
+			eldest.remove();
+			liveBytes -= entry.getValue().length;
+			logIndex(entry.getKey(), 0, REMOVED, 0);
+		}
+		long fileBytes = dataChannel.size();
+		if (fileBytes > MIN_COMPACTION_BYTES && fileBytes > 2 * liveBytes) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrite the live entries, in least-recently-used order, into fresh data and index files.
+	 */
+	private void compact() throws IOException {
+		File compactedData = new File(directory, DATA_FILE + ".compact");
+		File compactedIndex = new File(directory, INDEX_FILE + ".compact");
+		MappedByteBuffer source = mapping(dataChannel.size());
+		try (FileChannel out = new RandomAccessFile(compactedData, "rw").getChannel();
+				DataOutputStream indexOut = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(compactedIndex)))) {
+			out.truncate(0);
+			writeIndexHeader(indexOut);
+			long position = 0;
+			for (Map.Entry<String, Location> entry : index.entrySet()) {
+				Location location = entry.getValue();
+				ByteBuffer body = source.duplicate();
+				body.position((int) location.offset);
+				body.limit((int) (location.offset + location.length));
+				while (body.hasRemaining()) {
+					out.write(body, position + (body.position() - location.offset));
+				}
+				indexOut.writeUTF(entry.getKey());
+				indexOut.writeLong(position);
+				indexOut.writeInt(location.length);
+				indexOut.writeLong(location.storedAtMillis);
+				position += location.length;
+			}
+		}
+		long before = dataChannel.size();
+		File indexFile = new File(directory, INDEX_FILE);
+		boolean dataMoved = false;
+		close();
+		try {
+			Files.move(compactedData.toPath(), new File(directory, DATA_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING);
+			dataMoved = true;
+			Files.move(compactedIndex.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			if (dataMoved) {
+				// the old index does not describe the compacted data, so the reopened store starts empty
+				Files.deleteIfExists(indexFile.toPath());
+			}
+			throw e;
+		} finally {
+			Files.deleteIfExists(compactedData.toPath());
+			Files.deleteIfExists(compactedIndex.toPath());
+			open();
+		}
+		LOGGER.debug("Compacted listing details cache from {} to {} bytes", before, dataChannel.size());
+	}
+}
@@ -0,0 +1,137 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over every listing of a search, one page at a time. While the caller consumes
+ * a page, the next one is already being fetched, so at most two pages are held in memory.
+ * Paging stops at the reported record count, or at the first short or empty page when the
+ * API does not report one.
+ * <p>
+ * Fetch failures surface as {@link UncheckedIOException} from {@link #hasNext()}.
+ * Not thread safe; close it (or the stream) when abandoning iteration early.
+ */
+class ListingPager implements Iterator<Listing>, AutoCloseable {
+
+	/**
+	 * Fetches one page of results.
+	 */
+	interface PageFetcher {
+		SearchPage fetch(int pageNumber) throws IOException;
+	}
+
+	private final PageFetcher fetcher;
+	private final int pageSize;
+	private final ExecutorService prefetcher;
+	private Iterator<Listing> current = Collections.emptyIterator();
+	private Future<SearchPage> pending;
+	private int nextPageNumber;
+	private long received;
+	private boolean started;
+	private boolean exhausted;
+
+	/**
+	 * @param fetcher - fetches a page by number
+	 * @param pageSize - page size requested, used to detect the last page
+	 * @param prefetcher - runs the page fetches
+	 */
+	ListingPager(PageFetcher fetcher, int pageSize, ExecutorService prefetcher) {
+		this.fetcher = fetcher;
+		this.pageSize = pageSize;
+		this.prefetcher = prefetcher;
+	}
+
+	/**
+	 * @return a sequential stream over the listings which closes this pager when closed
+	 */
+	Stream<Listing> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (!started) {
+			started = true;
+			prefetch();
+		}
+		while (!current.hasNext()) {
+			if (exhausted) {
+				return false;
+			}
+			SearchPage page = awaitPending();
+			received += page.getResults().size();
+			boolean more;
+			if (page.getResults().isEmpty()) {
+				more = false;
+			} else if (page.getRecordCount() >= 0) {
+				more = received < page.getRecordCount();
+			} else {
+				more = page.getResults().size() >= pageSize;
+			}
+			if (more) {
+				prefetch();
+			} else {
+				exhausted = true;
+			}
+			current = page.getResults().iterator();
+		}
+		return true;
+	}
+
+	@Override
+	public Listing next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return current.next();
+	}
+
+	@Override
+	public void close() {
+		exhausted = true;
+		current = Collections.emptyIterator();
+		if (pending != null) {
+			pending.cancel(true);
+			pending = null;
+		}
+	}
+
+	private void prefetch() {
+		final int pageNumber = nextPageNumber++;
+		pending = prefetcher.submit(() -> fetcher.fetch(pageNumber));
+	}
+
+	private SearchPage awaitPending() {
+		try {
+			SearchPage page = pending.get();
+			pending = null;
+			return page;
+		} catch (ExecutionException e) {
+			close();
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw new UncheckedIOException((IOException) cause);
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new UncheckedIOException(new IOException(cause));
+		} catch (InterruptedException e) {
+			close();
+			Thread.currentThread().interrupt();
+			throw new UncheckedIOException(new IOException("Interrupted while waiting for search results", e));
+		}
+	}
+}
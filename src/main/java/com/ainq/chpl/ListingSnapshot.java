@@ -0,0 +1,390 @@
+package com.ainq.chpl;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Read-only, memory-mapped copy of every listing with the education type names of its test
+ * participants, written by {@link SnapshotSync}. The file holds:
+ * <ul>
+ * <li>a header with the sync watermark and the offsets of the sections below</li>
+ * <li>a dictionary of every distinct string, each stored once and referred to by its index</li>
+ * <li>the education type codes of all listings, one run per listing</li>
+ * <li>one fixed-width record per listing, sorted by id, so a listing is found by binary search</li>
+ * </ul>
+ * Only the dictionary is decoded into the heap; records are read straight from the mapping.
+ * Instances are safe for concurrent readers.
+ */
+public final class ListingSnapshot implements Closeable {
+	static final String FILE_NAME = "listings.snap";
+
+	private static final int MAGIC = 0x43484c53;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+	private static final int NO_STRING = -1;
+	private static final long NO_DATE = Long.MIN_VALUE;
+
+	static final int RECORD_BYTES = 56;
+	private static final int ID = 0;
+	private static final int LAST_MODIFIED = 8;
+	private static final int CERTIFICATION_DATE = 16;
+	private static final int PRODUCT_NUMBER = 24;
+	private static final int EDITION = 28;
+	private static final int DEVELOPER = 32;
+	private static final int PRODUCT = 36;
+	private static final int VERSION_NAME = 40;
+	private static final int STATUS = 44;
+	private static final int EDUCATION_START = 48;
+	private static final int EDUCATION_COUNT = 52;
+
+	private final File file;
+	private final ByteBuffer buffer;
+	private final long watermark;
+	private final long syncedAt;
+	private final String[] dictionary;
+	private final int educationOffset;
+	private final int recordOffset;
+	private final int recordCount;
+
+	private ListingSnapshot(File file, ByteBuffer buffer) throws IOException {
+		this.file = file;
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			throw new IOException("Not a listing snapshot: " + file);
+		}
+		this.watermark = buffer.getLong(8);
+		this.syncedAt = buffer.getLong(16);
+		int dictionaryOffset = buffer.getInt(24);
+		int dictionaryCount = buffer.getInt(28);
+		this.educationOffset = buffer.getInt(32);
+		this.recordOffset = buffer.getInt(40);
+		this.recordCount = buffer.getInt(44);
+		this.dictionary = new String[dictionaryCount];
+		int position = dictionaryOffset;
+		for (int i = 0; i < dictionaryCount; i++) {
+			int length = buffer.getInt(position);
+			byte[] bytes = new byte[length];
+			ByteBuffer slice = buffer.duplicate();
+			slice.position(position + 4);
+			slice.get(bytes);
+			dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+			position += 4 + length;
+		}
+	}
+
+	/**
+	 * @param directory - directory holding the snapshot
+	 * @return the snapshot, or null if the directory has none yet
+	 * @throws IOException - if the snapshot exists but cannot be read
+	 */
+	public static ListingSnapshot open(File directory) throws IOException {
+		File file = new File(directory, FILE_NAME);
+		if (!file.isFile()) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ListingSnapshot(file, mapped);
+		}
+	}
+
+	/**
+	 * @return number of listings
+	 */
+	public int size() {
+		return recordCount;
+	}
+
+	/**
+	 * @return the latest lastModifiedDate of any listing in the snapshot, or Long.MIN_VALUE when none was reported
+	 */
+	public long getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * @return when the snapshot was written, in milliseconds since the epoch
+	 */
+	public long getSyncedAt() {
+		return syncedAt;
+	}
+
+	/**
+	 * @param row - between 0 and size() - 1, in id order
+	 * @return the listing summary
+	 */
+	public Listing getListing(int row) {
+		int record = record(row);
+		return new Listing(buffer.getLong(record + ID), string(record + PRODUCT_NUMBER), string(record + EDITION),
+				string(record + DEVELOPER), string(record + PRODUCT), string(record + VERSION_NAME),
+				string(record + STATUS), date(record + CERTIFICATION_DATE), date(record + LAST_MODIFIED));
+	}
+
+	/**
+	 * @return every listing, in id order
+	 */
+	public Stream<Listing> listings() {
+		return IntStream.range(0, recordCount).mapToObj(this::getListing);
+	}
+
+	/**
+	 * @param id - listing id
+	 * @return its row, or -1 if the snapshot does not have it
+	 */
+	public int find(long id) {
+		int low = 0;
+		int high = recordCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleId = getId(middle);
+			if (middleId < id) {
+				low = middle + 1;
+			} else if (middleId > id) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param row - listing row
+	 * @return education type names of its test participants
+	 */
+	public Set<String> getEducationTypeNames(int row) {
+		int record = record(row);
+		int start = buffer.getInt(record + EDUCATION_START);
+		int count = buffer.getInt(record + EDUCATION_COUNT);
+		Set<String> names = new HashSet<>(count * 2);
+		for (int i = 0; i < count; i++) {
+			names.add(dictionary[buffer.getInt(educationOffset + (start + i) * 4)]);
+		}
+		return names;
+	}
+
+	/**
+	 * @return distinct education type names across all listings
+	 */
+	public Set<String> getEducationTypeNames() {
+		int codeCount = (recordOffset - educationOffset) / 4;
+		boolean[] seen = new boolean[dictionary.length];
+		Set<String> names = new HashSet<>();
+		for (int i = 0; i < codeCount; i++) {
+			int code = buffer.getInt(educationOffset + i * 4);
+			if (!seen[code]) {
+				seen[code] = true;
+				names.add(dictionary[code]);
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * The offline counterpart of {@link ChplApiWrapper#getEducationLevelsForSpecificListings()}.
+	 * @param filter - selects the listings whose participants are included
+	 * @return distinct education type names across the selected listings
+	 */
+	public Set<String> getEducationTypeNames(Predicate<Listing> filter) {
+		boolean[] seen = new boolean[dictionary.length];
+		Set<String> names = new HashSet<>();
+		for (int row = 0; row < recordCount; row++) {
+			if (!filter.test(getListing(row))) {
+				continue;
+			}
+			int record = record(row);
+			int start = buffer.getInt(record + EDUCATION_START);
+			int count = buffer.getInt(record + EDUCATION_COUNT);
+			for (int i = 0; i < count; i++) {
+				int code = buffer.getInt(educationOffset + (start + i) * 4);
+				if (!seen[code]) {
+					seen[code] = true;
+					names.add(dictionary[code]);
+				}
+			}
+		}
+		return names;
+	}
+
+	long getId(int row) {
+		return buffer.getLong(record(row) + ID);
+	}
+
+	long getLastModified(int row) {
+		return buffer.getLong(record(row) + LAST_MODIFIED);
+	}
+
+	/**
+	 * Does nothing: the file is closed as soon as it is mapped, and the mapping itself is released
+	 * only when this snapshot is garbage collected. Java has no supported way to unmap a buffer,
+	 * and forcing it would crash any thread still reading this snapshot. Closing is kept so that
+	 * callers can use try-with-resources should that change; a closed snapshot stays readable.
+	 */
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public String toString() {
+		return "ListingSnapshot [" + file + ", listings=" + recordCount + ", strings=" + dictionary.length + "]";
+	}
+
+	private int record(int row) {
+		if (row < 0 || row >= recordCount) {
+			throw new IndexOutOfBoundsException("Row " + row + " of " + recordCount);
+		}
+		return recordOffset + row * RECORD_BYTES;
+	}
+
+	private String string(int position) {
+		int code = buffer.getInt(position);
+		return code == NO_STRING ? null : dictionary[code];
+	}
+
+	private Long date(int position) {
+		long value = buffer.getLong(position);
+		return value == NO_DATE ? null : value;
+	}
+
+	/**
+	 * One listing with its participants' education type names, to be written.
+	 */
+	static final class Entry {
+		final Listing listing;
+		final Collection<String> educationTypeNames;
+
+		Entry(Listing listing, Collection<String> educationTypeNames) {
+			this.listing = listing;
+			this.educationTypeNames = educationTypeNames;
+		}
+	}
+
+	/**
+	 * Write a snapshot, replacing the previous one atomically. Readers of the previous
+	 * snapshot keep their mapping of the old file.
+	 * @param directory - created if missing
+	 * @param entries - listings to write, in any order
+	 * @param syncedAt - time of the sync
+	 * @throws IOException - if the snapshot cannot be written
+	 */
+	static void write(File directory, List<Entry> entries, long syncedAt) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create snapshot directory " + directory);
+		}
+		List<Entry> sorted = new ArrayList<>(entries);
+		Collections.sort(sorted, Comparator.comparingLong(entry -> entry.listing.getId()));
+
+		Map<String, Integer> codes = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		long watermark = NO_DATE;
+		int educationCodes = 0;
+		for (Entry entry : sorted) {
+			Listing listing = entry.listing;
+			for (String value : new String[] { listing.getChplProductNumber(), listing.getEdition(), listing.getDeveloper(),
+					listing.getProduct(), listing.getVersion(), listing.getCertificationStatus() }) {
+				code(value, codes, strings);
+			}
+			for (String name : entry.educationTypeNames) {
+				code(name, codes, strings);
+			}
+			educationCodes += entry.educationTypeNames.size();
+			if (listing.getLastModifiedDate() != null) {
+				watermark = Math.max(watermark, listing.getLastModifiedDate());
+			}
+		}
+
+		File file = new File(directory, FILE_NAME);
+		File temp = new File(directory, FILE_NAME + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+			List<byte[]> encoded = new ArrayList<>(strings.size());
+			long dictionaryBytes = 0;
+			for (String value : strings) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				encoded.add(bytes);
+				dictionaryBytes += 4 + bytes.length;
+			}
+			long dictionaryOffset = HEADER_BYTES;
+			long educationOffset = dictionaryOffset + dictionaryBytes;
+			long recordOffset = educationOffset + 4L * educationCodes;
+			long size = recordOffset + (long) RECORD_BYTES * sorted.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot of " + sorted.size() + " listings exceeds 2 GB");
+			}
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(watermark);
+			out.writeLong(syncedAt);
+			out.writeInt((int) dictionaryOffset);
+			out.writeInt(strings.size());
+			out.writeInt((int) educationOffset);
+			out.writeInt(educationCodes);
+			out.writeInt((int) recordOffset);
+			out.writeInt(sorted.size());
+			out.write(new byte[HEADER_BYTES - 48]);
+
+			for (byte[] bytes : encoded) {
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			for (Entry entry : sorted) {
+				for (String name : entry.educationTypeNames) {
+					out.writeInt(codes.get(name));
+				}
+			}
+			int educationStart = 0;
+			for (Entry entry : sorted) {
+				Listing listing = entry.listing;
+				out.writeLong(listing.getId());
+				out.writeLong(listing.getLastModifiedDate() == null ? NO_DATE : listing.getLastModifiedDate());
+				out.writeLong(listing.getCertificationDate() == null ? NO_DATE : listing.getCertificationDate());
+				out.writeInt(code(listing.getChplProductNumber(), codes, strings));
+				out.writeInt(code(listing.getEdition(), codes, strings));
+				out.writeInt(code(listing.getDeveloper(), codes, strings));
+				out.writeInt(code(listing.getProduct(), codes, strings));
+				out.writeInt(code(listing.getVersion(), codes, strings));
+				out.writeInt(code(listing.getCertificationStatus(), codes, strings));
+				out.writeInt(educationStart);
+				out.writeInt(entry.educationTypeNames.size());
+				educationStart += entry.educationTypeNames.size();
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int code(String value, Map<String, Integer> codes, List<String> strings) {
+		if (value == null) {
+			return NO_STRING;
+		}
+		Integer code = codes.get(value);
+		if (code == null) {
+			code = strings.size();
+			codes.put(value, code);
+			strings.add(value);
+		}
+		return code;
+	}
+}
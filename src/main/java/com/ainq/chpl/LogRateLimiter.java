@@ -0,0 +1,57 @@
+package com.ainq.chpl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many messages per second are logged for each key, typically an endpoint, so that a
+ * burst of requests or an outage of the API cannot flood the log. Messages over the cap are
+ * counted, and the next one let through reports how many were dropped.
+ */
+final class LogRateLimiter {
+	private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final int messagesPerSecond;
+	private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+
+	/**
+	 * @param messagesPerSecond - messages let through per key and second, 0 or less for no cap
+	 */
+	LogRateLimiter(int messagesPerSecond) {
+		this.messagesPerSecond = messagesPerSecond;
+	}
+
+	/**
+	 * @param key - what the message is about
+	 * @return -1 if the message should be dropped, otherwise the number dropped for the key since the last one let through
+	 */
+	long acquire(String key) {
+		if (messagesPerSecond <= 0) {
+			return 0;
+		}
+		return windows.computeIfAbsent(key, ignored -> new Window()).acquire(messagesPerSecond);
+	}
+
+	private static final class Window {
+		private long startNanos = System.nanoTime();
+		private int used;
+		private long dropped;
+
+		synchronized long acquire(int limit) {
+			long now = System.nanoTime();
+			if (now - startNanos >= WINDOW_NANOS) {
+				startNanos = now;
+				used = 0;
+			}
+			if (used >= limit) {
+				dropped++;
+				return -1;
+			}
+			used++;
+			long reported = dropped;
+			dropped = 0;
+			return reported;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.ainq.chpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dense indices for the test participants of all listings in one aggregation, so a participant
+ * who took part in the testing of several listings is counted once. Each index keeps the facet
+ * codes the participant was first seen with. Lookups of known participants do not lock.
+ */
+final class ParticipantDictionary {
+	private final ConcurrentHashMap<String, Integer> indices = new ConcurrentHashMap<>();
+	private final List<int[]> codes = new ArrayList<>();
+
+	/**
+	 * @param id - participant id, or null for a participant without one, who always gets a new index
+	 * @param participantCodes - facet codes by facet ordinal, -1 where unknown
+	 * @return the participant's index, assigned on first sight
+	 */
+	int index(String id, int[] participantCodes) {
+		Integer index = id == null ? null : indices.get(id);
+		if (index != null) {
+			return index;
+		}
+		synchronized (codes) {
+			index = id == null ? null : indices.get(id);
+			if (index == null) {
+				index = codes.size();
+				codes.add(participantCodes);
+				if (id != null) {
+					indices.put(id, index);
+				}
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * @param index - an index returned by {@link #index(String, int[])}
+	 * @return the participant's facet codes by facet ordinal, -1 where unknown
+	 */
+	int[] codes(int index) {
+		synchronized (codes) {
+			return codes.get(index);
+		}
+	}
+}
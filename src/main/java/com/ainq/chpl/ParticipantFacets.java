@@ -0,0 +1,323 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Partial facet counts over one or more listings. A partial is built per listing straight from the
+ * details stream, and partials are combined with {@link #merge(ParticipantFacets)}.
+ * <p>
+ * Participants are identified across listings by their id through a shared
+ * {@link ParticipantDictionary}, so a participant who took part in the testing of several listings
+ * is counted once in the participant count and in every histogram, with the attributes they were
+ * first seen with. Participants without an id are counted once per task. A listing partial keeps
+ * the indices of its participants in arrays, merged partials keep them in bit sets, and the
+ * histograms are only counted in {@link #toResult}.
+ */
+final class ParticipantFacets {
+	private static final FacetResult.Facet[] FACETS = FacetResult.Facet.values();
+	private static final int CRITERION = FacetResult.Facet.CRITERION.ordinal();
+	private static final int EDUCATION_TYPE = FacetResult.Facet.EDUCATION_TYPE.ordinal();
+	private static final int[] EMPTY = new int[0];
+
+	private int listings;
+	private final int[][] listingCounts = new int[FACETS.length][];
+	/**
+	 * Participants of a single listing, overall and by criterion code; null once merged.
+	 */
+	private int[] listingParticipants;
+	private int[][] listingCriterionParticipants;
+	private final BitSet participants = new BitSet();
+	private BitSet[] criterionParticipants = new BitSet[0];
+
+	ParticipantFacets() {
+		Arrays.fill(listingCounts, EMPTY);
+	}
+
+	/**
+	 * Read the sed test tasks of one listing's details.
+	 * @param in - details response body
+	 * @param dictionaries - one per facet, by ordinal; shared between listings
+	 * @param participantDictionary - participants of all listings; shared between listings
+	 * @return counts for that listing
+	 * @throws IOException - if the body cannot be read or is not JSON
+	 */
+	static ParticipantFacets read(InputStream in, FacetDictionary[] dictionaries,
+			ParticipantDictionary participantDictionary) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		BitSet members = new BitSet();
+		Map<Integer, BitSet> criterionMembers = new TreeMap<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals("sed") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+				reader.beginObject();
+				while (reader.hasNext()) {
+					if (reader.nextName().equals("testTasks") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+						reader.beginArray();
+						while (reader.hasNext()) {
+							readTask(reader, dictionaries, participantDictionary, members, criterionMembers);
+						}
+						reader.endArray();
+					} else {
+						reader.skipValue();
+					}
+				}
+				reader.endObject();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		ParticipantFacets facets = new ParticipantFacets();
+		facets.listings = 1;
+		facets.listingParticipants = members.stream().toArray();
+		int criteria = criterionMembers.isEmpty() ? 0 : ((TreeMap<Integer, BitSet>) criterionMembers).lastKey() + 1;
+		facets.listingCriterionParticipants = new int[criteria][];
+		Arrays.fill(facets.listingCriterionParticipants, EMPTY);
+		BitSet[] seen = new BitSet[FACETS.length];
+		for (int f = 0; f < FACETS.length; f++) {
+			seen[f] = new BitSet();
+		}
+		for (int p : facets.listingParticipants) {
+			int[] codes = participantDictionary.codes(p);
+			for (int f = 0; f < CRITERION; f++) {
+				if (codes[f] >= 0) {
+					seen[f].set(codes[f]);
+				}
+			}
+		}
+		for (Map.Entry<Integer, BitSet> entry : criterionMembers.entrySet()) {
+			facets.listingCriterionParticipants[entry.getKey()] = entry.getValue().stream().toArray();
+			seen[CRITERION].set(entry.getKey());
+		}
+		for (int f = 0; f < FACETS.length; f++) {
+			for (int code = seen[f].nextSetBit(0); code >= 0; code = seen[f].nextSetBit(code + 1)) {
+				facets.listingCounts[f] = increment(facets.listingCounts[f], code, 1);
+			}
+		}
+		return facets;
+	}
+
+	private static void readTask(JsonReader reader, FacetDictionary[] dictionaries,
+			ParticipantDictionary participantDictionary, BitSet members, Map<Integer, BitSet> criterionMembers)
+			throws IOException {
+		List<Integer> criteria = new ArrayList<>();
+		List<Integer> taskParticipants = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (name.equals("criteria") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					String number = readField(reader, "number");
+					if (number != null) {
+						criteria.add(dictionaries[CRITERION].code(number));
+					}
+				}
+				reader.endArray();
+			} else if (name.equals("testParticipants") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					int participant = readParticipant(reader, dictionaries, participantDictionary);
+					taskParticipants.add(participant);
+					members.set(participant);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		for (int criterion : criteria) {
+			BitSet criterionSet = criterionMembers.computeIfAbsent(criterion, c -> new BitSet());
+			for (int participant : taskParticipants) {
+				criterionSet.set(participant);
+			}
+		}
+	}
+
+	/**
+	 * @return index of the participant in the participant dictionary
+	 */
+	private static int readParticipant(JsonReader reader, FacetDictionary[] dictionaries,
+			ParticipantDictionary participantDictionary) throws IOException {
+		String id = null;
+		int[] codes = { -1, -1, -1, -1 };
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+			switch (name) {
+			case "id":
+				id = reader.nextString();
+				break;
+			case "educationTypeName":
+				codes[EDUCATION_TYPE] = dictionaries[EDUCATION_TYPE].code(reader.nextString());
+				break;
+			case "ageRange":
+				codes[FacetResult.Facet.AGE_RANGE.ordinal()] = dictionaries[FacetResult.Facet.AGE_RANGE.ordinal()]
+						.code(reader.nextString());
+				break;
+			case "occupation":
+				codes[FacetResult.Facet.OCCUPATION.ordinal()] = dictionaries[FacetResult.Facet.OCCUPATION.ordinal()]
+						.code(reader.nextString());
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return participantDictionary.index(id, codes);
+	}
+
+	private static String readField(JsonReader reader, String field) throws IOException {
+		if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+			reader.skipValue();
+			return null;
+		}
+		String value = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if (reader.nextName().equals(field) && reader.peek() == JsonToken.STRING) {
+				value = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return value;
+	}
+
+	/**
+	 * Add another partial into this one.
+	 * @param other - partial to add; not modified
+	 * @return this
+	 */
+	ParticipantFacets merge(ParticipantFacets other) {
+		if (listingParticipants != null) {
+			addParticipantsTo(this);
+			listingParticipants = null;
+			listingCriterionParticipants = null;
+		}
+		listings += other.listings;
+		for (int f = 0; f < FACETS.length; f++) {
+			listingCounts[f] = add(listingCounts[f], other.listingCounts[f]);
+		}
+		other.addParticipantsTo(this);
+		return this;
+	}
+
+	private void addParticipantsTo(ParticipantFacets sum) {
+		if (listingParticipants == null) {
+			sum.participants.or(participants);
+			sum.growCriteria(criterionParticipants.length);
+			for (int c = 0; c < criterionParticipants.length; c++) {
+				sum.criterionParticipants[c].or(criterionParticipants[c]);
+			}
+			return;
+		}
+		for (int p : listingParticipants) {
+			sum.participants.set(p);
+		}
+		sum.growCriteria(listingCriterionParticipants.length);
+		for (int c = 0; c < listingCriterionParticipants.length; c++) {
+			for (int p : listingCriterionParticipants[c]) {
+				sum.criterionParticipants[c].set(p);
+			}
+		}
+	}
+
+	/**
+	 * @param dictionaries - the dictionaries the partials were encoded with
+	 * @param participantDictionary - the participant dictionary the partials were read with
+	 * @return decoded, immutable result
+	 */
+	FacetResult toResult(FacetDictionary[] dictionaries, ParticipantDictionary participantDictionary) {
+		if (listingParticipants != null) {
+			return new ParticipantFacets().merge(this).toResult(dictionaries, participantDictionary);
+		}
+		int[][] participantCounts = new int[FACETS.length][];
+		Arrays.fill(participantCounts, EMPTY);
+		for (int p = participants.nextSetBit(0); p >= 0; p = participants.nextSetBit(p + 1)) {
+			int[] codes = participantDictionary.codes(p);
+			for (int f = 0; f < CRITERION; f++) {
+				if (codes[f] >= 0) {
+					participantCounts[f] = increment(participantCounts[f], codes[f], 1);
+				}
+			}
+		}
+		int[][] criterionEducation = new int[criterionParticipants.length][];
+		for (int c = 0; c < criterionParticipants.length; c++) {
+			BitSet members = criterionParticipants[c];
+			criterionEducation[c] = EMPTY;
+			if (members.isEmpty()) {
+				continue;
+			}
+			participantCounts[CRITERION] = increment(participantCounts[CRITERION], c, members.cardinality());
+			for (int p = members.nextSetBit(0); p >= 0; p = members.nextSetBit(p + 1)) {
+				int education = participantDictionary.codes(p)[EDUCATION_TYPE];
+				if (education >= 0) {
+					criterionEducation[c] = increment(criterionEducation[c], education, 1);
+				}
+			}
+		}
+
+		Map<FacetResult.Facet, Map<String, Integer>> participantHistograms = new EnumMap<>(FacetResult.Facet.class);
+		Map<FacetResult.Facet, Map<String, Integer>> listingHistograms = new EnumMap<>(FacetResult.Facet.class);
+		for (FacetResult.Facet facet : FACETS) {
+			participantHistograms.put(facet, FacetResult.histogram(participantCounts[facet.ordinal()],
+					dictionaries[facet.ordinal()]));
+			listingHistograms.put(facet, FacetResult.histogram(listingCounts[facet.ordinal()],
+					dictionaries[facet.ordinal()]));
+		}
+		Map<String, Map<String, Integer>> byCriterion = new LinkedHashMap<>();
+		FacetDictionary criteria = dictionaries[CRITERION];
+		for (String criterion : participantHistograms.get(FacetResult.Facet.CRITERION).keySet()) {
+			byCriterion.put(criterion, FacetResult.histogram(criterionEducation[criteria.code(criterion)],
+					dictionaries[EDUCATION_TYPE]));
+		}
+		return new FacetResult(listings, participants.cardinality(), participantHistograms, listingHistograms,
+				byCriterion);
+	}
+
+	private void growCriteria(int length) {
+		if (criterionParticipants.length < length) {
+			int previous = criterionParticipants.length;
+			criterionParticipants = Arrays.copyOf(criterionParticipants, length);
+			for (int c = previous; c < length; c++) {
+				criterionParticipants[c] = new BitSet();
+			}
+		}
+	}
+
+	private static int[] increment(int[] counts, int code, int by) {
+		int[] grown = counts.length > code ? counts : Arrays.copyOf(counts, Math.max(code + 1, counts.length * 2));
+		grown[code] += by;
+		return grown;
+	}
+
+	private static int[] add(int[] counts, int[] other) {
+		int[] sum = counts.length >= other.length ? counts : Arrays.copyOf(counts, other.length);
+		for (int i = 0; i < other.length; i++) {
+			sum[i] += other[i];
+		}
+		return sum;
+	}
+}
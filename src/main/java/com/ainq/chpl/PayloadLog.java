@@ -0,0 +1,101 @@
+package com.ainq.chpl;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs the start of a sample of response bodies to the {@value #LOGGER_NAME} logger at DEBUG.
+ * Nothing is copied or formatted unless that logger is enabled and the response is picked by
+ * the sample; the body is then copied, up to a cap, as the wrapper reads it, never read twice.
+ */
+final class PayloadLog {
+	static final String LOGGER_NAME = "com.ainq.chpl.payload";
+	private static final Logger LOGGER = LoggerFactory.getLogger(LOGGER_NAME);
+
+	private final int sampleRate;
+	private final int maxBytes;
+	private final AtomicLong responses = new AtomicLong();
+
+	/**
+	 * @param sampleRate - log one response in this many, 0 or less to log none
+	 * @param maxBytes - bytes of each body logged at most
+	 */
+	PayloadLog(int sampleRate, int maxBytes) {
+		this.sampleRate = sampleRate;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * @param body - decoded response body
+	 * @return the body, wrapped to keep a copy of its start if this response is to be logged
+	 */
+	InputStream capture(InputStream body) {
+		if (sampleRate <= 0 || !LOGGER.isDebugEnabled() || responses.getAndIncrement() % sampleRate != 0) {
+			return body;
+		}
+		return new Capture(body, maxBytes);
+	}
+
+	/**
+	 * Log what was captured, if anything.
+	 * @param body - the stream returned by {@link #capture(InputStream)}, after it was read
+	 * @param statusCode - response status
+	 * @param url - request URL
+	 */
+	void log(InputStream body, int statusCode, Object url) {
+		if (body instanceof Capture) {
+			Capture capture = (Capture) body;
+			LOGGER.debug("Response {} from {} ({} bytes read): {}{}", statusCode, url, capture.total,
+					new String(capture.copy, 0, capture.copied, StandardCharsets.UTF_8),
+					capture.total > capture.copied ? "..." : "");
+		}
+	}
+
+	private static final class Capture extends FilterInputStream {
+		private final byte[] copy;
+		private int copied;
+		private long total;
+
+		Capture(InputStream in, int maxBytes) {
+			super(in);
+			this.copy = new byte[Math.max(0, maxBytes)];
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				if (copied < copy.length) {
+					copy[copied++] = (byte) b;
+				}
+				total++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int n = super.read(buffer, offset, length);
+			if (n > 0) {
+				int kept = Math.min(n, copy.length - copied);
+				System.arraycopy(buffer, offset, copy, copied, kept);
+				copied += kept;
+				total += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			total += skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package com.ainq.chpl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * One long-lived HTTP client with a pool of keep-alive connections shared by every
+ * request the wrapper makes, so TCP and TLS setup is paid once per connection
+ * instead of once per call. The client's transparent decompression is off: the wrapper
+ * negotiates and decodes compressed bodies itself so it can count bytes on the wire.
+ */
+class PooledHttpClient implements Closeable {
+	static final String MAX_CONNECTIONS_TOTAL_PROPERTY = "httpMaxConnectionsTotal";
+	static final String MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "httpMaxConnectionsPerRoute";
+	static final String CONNECT_TIMEOUT_PROPERTY = "httpConnectTimeoutMillis";
+	static final String SOCKET_TIMEOUT_PROPERTY = "httpSocketTimeoutMillis";
+	static final String CONNECTION_REQUEST_TIMEOUT_PROPERTY = "httpConnectionRequestTimeoutMillis";
+	static final String IDLE_EVICT_PROPERTY = "httpIdleEvictMillis";
+	static final String KEEP_ALIVE_PROPERTY = "httpKeepAliveMillis";
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final RequestConfig requestConfig;
+	private final long keepAliveMillis;
+
+	PooledHttpClient(ChplConfig config) {
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(config.getInt(MAX_CONNECTIONS_TOTAL_PROPERTY, 20));
+		connectionManager.setDefaultMaxPerRoute(config.getInt(MAX_CONNECTIONS_PER_ROUTE_PROPERTY, 10));
+		keepAliveMillis = config.getLong(KEEP_ALIVE_PROPERTY, 30000);
+
+		requestConfig = RequestConfig.custom()
+				.setConnectTimeout(config.getInt(CONNECT_TIMEOUT_PROPERTY, 5000))
+				.setSocketTimeout(config.getInt(SOCKET_TIMEOUT_PROPERTY, 30000))
+				.setConnectionRequestTimeout(config.getInt(CONNECTION_REQUEST_TIMEOUT_PROPERTY, 5000))
+				.build();
+
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.disableContentCompression()
+				.setKeepAliveStrategy(new KeepAliveStrategy(keepAliveMillis))
+				.evictExpiredConnections()
+				.evictIdleConnections(config.getLong(IDLE_EVICT_PROPERTY, 30000), TimeUnit.MILLISECONDS)
+				.build();
+	}
+
+	/**
+	 * @return the underlying pooled client
+	 */
+	CloseableHttpClient httpClient() {
+		return httpClient;
+	}
+
+	/**
+	 * @return totals across all routes: leased, available, pending and max connections
+	 */
+	PoolStats getPoolStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	/**
+	 * Open connections to the host of a URL and leave them idle in the pool, so the first
+	 * requests to that host find the TCP and TLS handshakes already done. Connections already
+	 * open in the pool count towards the number asked for.
+	 * @param url - any URL on the host
+	 * @param connections - connections wanted, capped at the per-route maximum
+	 * @return number of connections newly opened
+	 * @throws IOException - if a connection cannot be leased or opened; those opened so far stay pooled
+	 */
+	int preconnect(String url, int connections) throws IOException {
+		HttpHost host = URIUtils.extractHost(URI.create(url));
+		if (host == null) {
+			throw new IOException("No host in " + url);
+		}
+		// the same route the client plans for requests to this host, or the pooled connections would not be reused
+		HttpHost target = new HttpHost(host.getHostName(), DefaultSchemePortResolver.INSTANCE.resolve(host),
+				host.getSchemeName());
+		HttpRoute route = new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+		int wanted = Math.min(connections, connectionManager.getMaxPerRoute(route));
+		List<HttpClientConnection> leased = new ArrayList<>(wanted);
+		int opened = 0;
+		try {
+			while (leased.size() < wanted) {
+				HttpClientConnection connection = connectionManager.requestConnection(route, null)
+						.get(requestConfig.getConnectionRequestTimeout(), TimeUnit.MILLISECONDS);
+				leased.add(connection);
+				if (!connection.isOpen()) {
+					HttpClientContext context = HttpClientContext.create();
+					connectionManager.connect(connection, route, requestConfig.getConnectTimeout(), context);
+					connectionManager.routeComplete(connection, route, context);
+					opened++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while opening connections to " + target);
+		} catch (ExecutionException e) {
+			throw new IOException("Could not lease a connection to " + target, e.getCause());
+		} finally {
+			for (HttpClientConnection connection : leased) {
+				connectionManager.releaseConnection(connection, null, keepAliveMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		return opened;
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+	}
+
+	/**
+	 * Honours the server's Keep-Alive timeout when it sends one and otherwise keeps
+	 * connections for the configured default.
+	 */
+	private static final class KeepAliveStrategy implements ConnectionKeepAliveStrategy {
+		private final long defaultKeepAliveMillis;
+
+		KeepAliveStrategy(long defaultKeepAliveMillis) {
+			this.defaultKeepAliveMillis = defaultKeepAliveMillis;
+		}
+
+		@Override
+		public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+			HeaderElementIterator it = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+			while (it.hasNext()) {
+				HeaderElement element = it.nextElement();
+				if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+					try {
+						return Math.min(Long.parseLong(element.getValue()) * 1000, defaultKeepAliveMillis);
+					} catch (NumberFormatException ignore) {
+						// fall through to the default
+					}
+				}
+			}
+			return defaultKeepAliveMillis;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * One entry of the practice types reference data.
+ * Instances are immutable.
+ */
+public final class PracticeType {
+	private final long id;
+	private final String name;
+	private final String description;
+
+	PracticeType(long id, String name, String description) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public String toString() {
+		return "PracticeType [id=" + id + ", name=" + name + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<PracticeType> {
+		@Override
+		public PracticeType read(JsonReader reader) throws IOException {
+			long id = 0;
+			String name = null, description = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "name":
+					name = ChplJson.nextString(reader);
+					break;
+				case "description":
+					description = ChplJson.nextString(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new PracticeType(id, name, description);
+		}
+
+		@Override
+		public void write(JsonWriter writer, PracticeType practiceType) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(practiceType.id);
+			writer.name("name").value(practiceType.name);
+			writer.name("description").value(practiceType.description);
+			writer.endObject();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Passes requests on to another transport and saves each response before handing it back,
+ * for later use by a {@link ReplayTransport}. Bodies are buffered in memory to be saved.
+ * Not Modified and transient failures (5xx, 408, 429) are not saved, so they never replace
+ * a good recording.
+ */
+class RecordingTransport implements ChplTransport {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RecordingTransport.class);
+
+	private final ChplTransport delegate;
+	private final ResponseRecordings recordings;
+
+	/**
+	 * @param delegate - transport making the real requests, closed with this one
+	 * @param recordings - where responses are saved
+	 */
+	RecordingTransport(ChplTransport delegate, ResponseRecordings recordings) {
+		this.delegate = delegate;
+		this.recordings = recordings;
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+		return delegate.execute(request, response -> {
+			HttpEntity entity = response.getEntity();
+			byte[] body = entity == null ? null : EntityUtils.toByteArray(entity);
+			ResponseRecordings.Recording recording = ResponseRecordings.Recording.of(response, body);
+			if (isRecordable(response)) {
+				try {
+					recordings.save(request.getURI(), recording);
+				} catch (IOException e) {
+					LOGGER.warn("Could not record the response to {}", request.getURI(), e);
+				}
+			}
+			return handler.handleResponse(recording.toResponse());
+		});
+	}
+
+	private static boolean isRecordable(HttpResponse response) {
+		int status = response.getStatusLine().getStatusCode();
+		return status != HttpStatus.SC_NOT_MODIFIED && status < HttpStatus.SC_INTERNAL_SERVER_ERROR
+				&& status != HttpStatus.SC_REQUEST_TIMEOUT && status != 429;
+	}
+
+	@Override
+	public void close() throws IOException {
+		delegate.close();
+	}
+}
@@ -0,0 +1,53 @@
+package com.ainq.chpl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Immutable snapshot of one reference-data resource: its typed elements, and their names
+ * both in response order and pre-sorted alphabetically.
+ */
+final class ReferenceData<T> {
+	private final List<T> elements;
+	private final List<String> names;
+	private final List<String> sortedNames;
+
+	/**
+	 * @param elements - elements in the order the API returned them
+	 * @param nameOf - the name of an element
+	 */
+	ReferenceData(List<T> elements, Function<? super T, String> nameOf) {
+		this.elements = Collections.unmodifiableList(new ArrayList<>(elements));
+		List<String> names = new ArrayList<>(elements.size());
+		for (T element : elements) {
+			names.add(nameOf.apply(element));
+		}
+		this.names = Collections.unmodifiableList(names);
+		List<String> sorted = new ArrayList<>(names);
+		sorted.sort(String.CASE_INSENSITIVE_ORDER);
+		this.sortedNames = Collections.unmodifiableList(sorted);
+	}
+
+	/**
+	 * @return elements in response order
+	 */
+	List<T> getElements() {
+		return elements;
+	}
+
+	/**
+	 * @return names in response order
+	 */
+	List<String> getNames() {
+		return names;
+	}
+
+	/**
+	 * @return names sorted A -> Z, ignoring case
+	 */
+	List<String> getSortedNames() {
+		return sortedNames;
+	}
+}
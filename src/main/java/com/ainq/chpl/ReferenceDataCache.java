@@ -0,0 +1,195 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Holds an immutable snapshot of one reference-data resource for a fixed time to live.
+ * <ul>
+ * <li>The first read loads the snapshot on the calling thread.</li>
+ * <li>Reads within the TTL return the snapshot without any network call.</li>
+ * <li>Reads after the TTL return the stale snapshot and start one background refresh,
+ * which revalidates with ETag / If-Modified-Since so an unchanged resource costs a 304.</li>
+ * <li>A failed refresh keeps serving the stale snapshot and is retried with an exponential backoff,
+ * from {@value #MIN_RETRY_MILLIS} ms up to the TTL, so an outage does not send every read upstream.</li>
+ * </ul>
+ * @param <T> snapshot type, must be immutable
+ */
+class ReferenceDataCache<T> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReferenceDataCache.class);
+	static final long MIN_RETRY_MILLIS = 1000;
+
+	/**
+	 * Fetches the resource, conditionally when validators from a previous response are known.
+	 * @param <T> snapshot type
+	 */
+	interface Loader<T> {
+		/**
+		 * @param etag - ETag of the cached snapshot, or null
+		 * @param lastModified - Last-Modified of the cached snapshot, or null
+		 * @return a new snapshot, or {@link Response#notModified()}
+		 * @throws IOException - if the resource could not be fetched
+		 */
+		Response<T> load(String etag, String lastModified) throws IOException;
+	}
+
+	/**
+	 * Result of a (conditional) fetch.
+	 * @param <T> snapshot type
+	 */
+	static final class Response<T> {
+		private final T value;
+		private final String etag;
+		private final String lastModified;
+		private final boolean notModified;
+
+		private Response(T value, String etag, String lastModified, boolean notModified) {
+			this.value = value;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.notModified = notModified;
+		}
+
+		static <T> Response<T> of(T value, String etag, String lastModified) {
+			return new Response<>(value, etag, lastModified, false);
+		}
+
+		static <T> Response<T> notModified() {
+			return new Response<>(null, null, null, true);
+		}
+
+		boolean isNotModified() {
+			return notModified;
+		}
+	}
+
+	private static final class Entry<T> {
+		private final T value;
+		private final String etag;
+		private final String lastModified;
+		private final long refreshAtNanos;
+		private final long retryNanos;
+
+		Entry(T value, String etag, String lastModified, long refreshAtNanos, long retryNanos) {
+			this.value = value;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.refreshAtNanos = refreshAtNanos;
+			this.retryNanos = retryNanos;
+		}
+	}
+
+	private final String name;
+	private final Loader<T> loader;
+	private final long ttlNanos;
+	private final long minRetryNanos;
+	private final Executor refresher;
+	private final LongSupplier nanoClock;
+	private final AtomicBoolean refreshing = new AtomicBoolean();
+	private volatile Entry<T> entry;
+
+	/**
+	 * @param name - resource name used in log messages
+	 * @param loader - fetches the resource
+	 * @param ttlMillis - how long a snapshot is served before it is revalidated
+	 * @param refresher - runs background refreshes
+	 */
+	ReferenceDataCache(String name, Loader<T> loader, long ttlMillis, Executor refresher) {
+		this(name, loader, ttlMillis, refresher, System::nanoTime);
+	}
+
+	/**
+	 * @param name - resource name used in log messages
+	 * @param loader - fetches the resource
+	 * @param ttlMillis - how long a snapshot is served before it is revalidated
+	 * @param refresher - runs background refreshes
+	 * @param nanoClock - monotonic clock in nanoseconds
+	 */
+	ReferenceDataCache(String name, Loader<T> loader, long ttlMillis, Executor refresher, LongSupplier nanoClock) {
+		this.name = name;
+		this.loader = loader;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.minRetryNanos = Math.min(ttlNanos, TimeUnit.MILLISECONDS.toNanos(MIN_RETRY_MILLIS));
+		this.refresher = refresher;
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * @return the current snapshot, loading it on the calling thread if there is none yet
+	 * @throws IOException - if there is no snapshot and the first load failed
+	 */
+	T get() throws IOException {
+		Entry<T> current = entry;
+		if (current == null) {
+			synchronized (this) {
+				current = entry;
+				if (current == null) {
+					current = store(loader.load(null, null), null);
+				}
+			}
+		} else if (nanoClock.getAsLong() - current.refreshAtNanos >= 0) {
+			refreshInBackground();
+		}
+		return current.value;
+	}
+
+	/**
+	 * Drop the snapshot so the next read loads it again.
+	 */
+	void invalidate() {
+		entry = null;
+	}
+
+	private void refreshInBackground() {
+		if (!refreshing.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			refresher.execute(this::refresh);
+		} catch (RuntimeException e) {
+			refreshing.set(false);
+			LOGGER.warn("Could not schedule refresh of {}, serving stale data", name, e);
+		}
+	}
+
+	private void refresh() {
+		try {
+			Entry<T> current = entry;
+			if (current == null) {
+				return;
+			}
+			Response<T> response = loader.load(current.etag, current.lastModified);
+			store(response, current);
+			LOGGER.debug("Refreshed {} ({})", name, response.isNotModified() ? "not modified" : "changed");
+		} catch (IOException | RuntimeException e) {
+			Entry<T> current = entry;
+			if (current != null) {
+				long retryNanos = current.retryNanos == 0 ? minRetryNanos : Math.min(ttlNanos, current.retryNanos * 2);
+				entry = new Entry<>(current.value, current.etag, current.lastModified, nanoClock.getAsLong() + retryNanos,
+						retryNanos);
+				LOGGER.warn("Failed to refresh {}, serving stale data and retrying in {} ms: {}", name,
+						TimeUnit.NANOSECONDS.toMillis(retryNanos), e.toString());
+			}
+		} finally {
+			refreshing.set(false);
+		}
+	}
+
+	private Entry<T> store(Response<T> response, Entry<T> current) {
+		Entry<T> updated;
+		long refreshAt = nanoClock.getAsLong() + ttlNanos;
+		if (response.notModified && current != null) {
+			updated = new Entry<>(current.value, current.etag, current.lastModified, refreshAt, 0);
+		} else {
+			updated = new Entry<>(response.value, response.etag, response.lastModified, refreshAt, 0);
+		}
+		entry = updated;
+		return updated;
+	}
+}
@@ -0,0 +1,62 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * Answers requests from saved responses without touching the network. A request with no
+ * recording gets a 404. A conditional request whose If-None-Match matches the recorded ETag
+ * gets a 304. Every response can be delayed by a fixed latency to mimic the remote API.
+ */
+class ReplayTransport implements ChplTransport {
+	static final String NOT_RECORDED = "Not Recorded";
+
+	private final ResponseRecordings recordings;
+	private final long latencyMillis;
+
+	/**
+	 * @param recordings - saved responses
+	 * @param latencyMillis - delay added before every response, 0 for none
+	 */
+	ReplayTransport(ResponseRecordings recordings, long latencyMillis) {
+		this.recordings = recordings;
+		this.latencyMillis = latencyMillis;
+	}
+
+	@Override
+	public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+		if (latencyMillis > 0) {
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while replaying " + request.getURI());
+			}
+		}
+		ResponseRecordings.Recording recording = recordings.load(request.getURI());
+		if (recording == null) {
+			return handler.handleResponse(new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_FOUND, NOT_RECORDED));
+		}
+		Header ifNoneMatch = request.getFirstHeader(HttpHeaders.IF_NONE_MATCH);
+		String etag = recording.getHeader(HttpHeaders.ETAG);
+		if (ifNoneMatch != null && etag != null && etag.equals(ifNoneMatch.getValue())) {
+			BasicHttpResponse notModified = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+			notModified.setHeader(HttpHeaders.ETAG, etag);
+			return handler.handleResponse(notModified);
+		}
+		return handler.handleResponse(recording.toResponse());
+	}
+
+	@Override
+	public void close() {
+	}
+}
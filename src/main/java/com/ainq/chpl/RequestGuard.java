@@ -0,0 +1,141 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resilience around one idempotent GET: the circuit breaker is consulted first, then the rate
+ * limiter, and failures the server is responsible for are retried with exponential backoff and
+ * full jitter (never sooner than the server's Retry-After).
+ * <p>
+ * Client errors (4xx other than 408 and 429) are neither retried nor counted against the circuit,
+ * and neither are responses that arrived but could not be decoded or parsed
+ * ({@link ChplResponseException}): only transport failures and retryable statuses are.
+ */
+class RequestGuard {
+	private static final Logger LOGGER = LoggerFactory.getLogger(RequestGuard.class);
+
+	private final AdaptiveRateLimiter rateLimiter;
+	private final CircuitBreaker circuitBreaker;
+	private final int maxAttempts;
+	private final long baseDelayMillis;
+	private final long maxDelayMillis;
+
+	/**
+	 * @param rateLimiter - limiter to acquire from before each attempt, or null for no limit
+	 * @param circuitBreaker - breaker guarding the API
+	 * @param maxAttempts - attempts per request including the first
+	 * @param baseDelayMillis - backoff before the first retry, doubled for each further retry
+	 * @param maxDelayMillis - upper bound on the backoff
+	 */
+	RequestGuard(AdaptiveRateLimiter rateLimiter, CircuitBreaker circuitBreaker, int maxAttempts,
+			long baseDelayMillis, long maxDelayMillis) {
+		this.rateLimiter = rateLimiter;
+		this.circuitBreaker = circuitBreaker;
+		this.maxAttempts = Math.max(1, maxAttempts);
+		this.baseDelayMillis = baseDelayMillis;
+		this.maxDelayMillis = maxDelayMillis;
+	}
+
+	/**
+	 * @param url - request URL, for logging
+	 * @param call - sends the request
+	 * @return the call's result
+	 * @throws IOException - the last failure once retries are exhausted, or {@link CircuitOpenException}
+	 */
+	<T> T execute(String url, SingleFlight.Call<T> call) throws IOException {
+		for (int attempt = 1;; attempt++) {
+			circuitBreaker.beforeCall();
+			boolean recorded = false;
+			try {
+				if (rateLimiter != null) {
+					rateLimiter.acquire();
+				}
+				T result = call.call();
+				recorded = true;
+				circuitBreaker.onSuccess();
+				if (rateLimiter != null) {
+					rateLimiter.onSuccess();
+				}
+				return result;
+			} catch (IOException e) {
+				if (isInterruption(e)) {
+					throw e;
+				}
+				recorded = true;
+				long retryAfterMillis = -1;
+				boolean retryable;
+				if (e instanceof ChplHttpException) {
+					ChplHttpException httpException = (ChplHttpException) e;
+					retryable = httpException.isRetryable();
+					retryAfterMillis = httpException.getRetryAfterMillis();
+					if (httpException.isThrottled()) {
+						circuitBreaker.onSuccess();
+						if (rateLimiter != null) {
+							rateLimiter.onThrottled(retryAfterMillis);
+						}
+					} else if (retryable) {
+						circuitBreaker.onFailure();
+					} else {
+						circuitBreaker.onSuccess();
+					}
+				} else if (e instanceof HttpResponseException || e instanceof ChplResponseException) {
+					retryable = false;
+					circuitBreaker.onSuccess();
+				} else {
+					retryable = true;
+					circuitBreaker.onFailure();
+				}
+				if (!retryable || attempt >= maxAttempts) {
+					throw e;
+				}
+				long delay = Math.max(backoff(attempt), retryAfterMillis);
+				LOGGER.warn("Attempt {} of {} for {} failed ({}), retrying in {} ms", attempt, maxAttempts, url,
+						e.getMessage(), delay);
+				sleep(delay);
+			} finally {
+				if (!recorded) {
+					circuitBreaker.onAbandoned();
+				}
+			}
+		}
+	}
+
+	/**
+	 * For extra requests that are only worth sending when they cost no waiting, such as hedges.
+	 * @return true if the rate limiter gave a permit at once, or there is no rate limiter
+	 */
+	boolean tryAcquirePermit() {
+		return rateLimiter == null || rateLimiter.tryAcquire();
+	}
+
+	/**
+	 * Full jitter: a uniformly random delay between 0 and the exponential bound.
+	 */
+	long backoff(int attempt) {
+		long bound = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+		return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+	}
+
+	/**
+	 * Socket and connect timeouts are InterruptedIOExceptions too, but they are failures of the server.
+	 */
+	private static boolean isInterruption(IOException e) {
+		return Thread.currentThread().isInterrupted() || e.getClass() == InterruptedIOException.class;
+	}
+
+	private static void sleep(long millis) throws InterruptedIOException {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off");
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.ainq.chpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+
+/**
+ * Directory of saved responses, one file per request. Requests are identified by path and
+ * query only, so recordings made against one host replay against any other, and request
+ * headers such as the API key are never written. Loaded recordings stay in memory.
+ */
+class ResponseRecordings {
+	private static final int MAGIC = 0x43484c52;
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".rec";
+
+	private final File directory;
+	private final ConcurrentHashMap<String, Recording> loaded = new ConcurrentHashMap<>();
+
+	/**
+	 * @param directory - created if missing
+	 * @throws IOException - if the directory cannot be created
+	 */
+	ResponseRecordings(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create recordings directory " + directory);
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * @param uri - request URI
+	 * @return identity of the request: raw path and query
+	 */
+	static String key(URI uri) {
+		String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+		return uri.getRawQuery() == null ? path : path + "?" + uri.getRawQuery();
+	}
+
+	/**
+	 * Save a response, replacing any earlier one for the same request.
+	 * @param uri - request URI
+	 * @param recording - the response
+	 * @throws IOException - if it cannot be written
+	 */
+	void save(URI uri, Recording recording) throws IOException {
+		String key = key(uri);
+		File file = file(key);
+		File temp = new File(directory, file.getName() + ".tmp" + Thread.currentThread().getId());
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(key);
+			out.writeInt(recording.statusCode);
+			out.writeUTF(recording.reasonPhrase == null ? "" : recording.reasonPhrase);
+			out.writeInt(recording.headers.size());
+			for (Header header : recording.headers) {
+				out.writeUTF(header.getName());
+				out.writeUTF(header.getValue() == null ? "" : header.getValue());
+			}
+			out.writeInt(recording.body == null ? -1 : recording.body.length);
+			if (recording.body != null) {
+				out.write(recording.body);
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		loaded.put(key, recording);
+	}
+
+	/**
+	 * @param uri - request URI
+	 * @return the saved response, or null if there is none
+	 * @throws IOException - if the recording exists but cannot be read
+	 */
+	Recording load(URI uri) throws IOException {
+		String key = key(uri);
+		Recording recording = loaded.get(key);
+		if (recording != null) {
+			return recording;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file(key))))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not a response recording: " + file(key));
+			}
+			String recordedKey = in.readUTF();
+			if (!recordedKey.equals(key)) {
+				throw new IOException("Recording " + file(key) + " is for " + recordedKey + ", not " + key);
+			}
+			int statusCode = in.readInt();
+			String reasonPhrase = in.readUTF();
+			int headerCount = in.readInt();
+			List<Header> headers = new ArrayList<>(headerCount);
+			for (int i = 0; i < headerCount; i++) {
+				headers.add(new BasicHeader(in.readUTF(), in.readUTF()));
+			}
+			int length = in.readInt();
+			byte[] body = null;
+			if (length >= 0) {
+				body = new byte[length];
+				in.readFully(body);
+			}
+			recording = new Recording(statusCode, reasonPhrase, headers, body);
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+		Recording raced = loaded.putIfAbsent(key, recording);
+		return raced == null ? recording : raced;
+	}
+
+	private File file(String key) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(digest.length * 2 + SUFFIX.length());
+			for (byte b : digest) {
+				name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return new File(directory, name.append(SUFFIX).toString());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is required of every JVM", e);
+		}
+	}
+
+	/**
+	 * One saved response: status line, headers and body.
+	 */
+	static final class Recording {
+		private final int statusCode;
+		private final String reasonPhrase;
+		private final List<Header> headers;
+		private final byte[] body;
+
+		Recording(int statusCode, String reasonPhrase, List<Header> headers, byte[] body) {
+			this.statusCode = statusCode;
+			this.reasonPhrase = reasonPhrase;
+			this.headers = Collections.unmodifiableList(headers);
+			this.body = body;
+		}
+
+		/**
+		 * @param response - response whose status and headers are copied
+		 * @param body - its body, already read, or null if it had none
+		 * @return the recording
+		 */
+		static Recording of(HttpResponse response, byte[] body) {
+			List<Header> headers = new ArrayList<>();
+			for (Header header : response.getAllHeaders()) {
+				headers.add(new BasicHeader(header.getName(), header.getValue()));
+			}
+			return new Recording(response.getStatusLine().getStatusCode(), response.getStatusLine().getReasonPhrase(),
+					headers, body);
+		}
+
+		int getStatusCode() {
+			return statusCode;
+		}
+
+		/**
+		 * @param name - header name, case insensitive
+		 * @return its first value, or null
+		 */
+		String getHeader(String name) {
+			for (Header header : headers) {
+				if (header.getName().equalsIgnoreCase(name)) {
+					return header.getValue();
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * @return a fresh response over the recorded body
+		 */
+		HttpResponse toResponse() {
+			BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, reasonPhrase);
+			for (Header header : headers) {
+				response.addHeader(header);
+			}
+			if (body != null) {
+				response.setEntity(new ByteArrayEntity(body));
+			}
+			return response;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * One page of search results, read straight from the response stream.
+ */
+final class SearchPage {
+	private static final TypeAdapter<Listing> LISTING_ADAPTER = ChplJson.GSON.getAdapter(Listing.class);
+
+	private final int recordCount;
+	private final List<Listing> results;
+
+	SearchPage(int recordCount, List<Listing> results) {
+		this.recordCount = recordCount;
+		this.results = Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * @return total number of listings matching the query, or -1 if the API did not report it
+	 */
+	int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * @return listings on this page
+	 */
+	List<Listing> getResults() {
+		return results;
+	}
+
+	/**
+	 * Read a search response: an object with "recordCount" and "results", or a bare array of listings.
+	 * @param in - UTF-8 encoded response body
+	 * @return the page
+	 * @throws IOException - if the body cannot be read or is not a search response
+	 */
+	static SearchPage read(InputStream in) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		List<Listing> results = new ArrayList<>();
+		int recordCount = -1;
+		if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+			readListings(reader, results);
+			return new SearchPage(recordCount, results);
+		}
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+			case "recordCount":
+				recordCount = reader.nextInt();
+				break;
+			case "results":
+				readListings(reader, results);
+				break;
+			default:
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return new SearchPage(recordCount, results);
+	}
+
+	private static void readListings(JsonReader reader, List<Listing> results) throws IOException {
+		reader.beginArray();
+		while (reader.hasNext()) {
+			results.add(LISTING_ADAPTER.read(reader));
+		}
+		reader.endArray();
+	}
+}
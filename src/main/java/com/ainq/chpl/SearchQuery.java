@@ -0,0 +1,258 @@
+package com.ainq.chpl;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed filters for the CHPL search API. Build one with {@link #builder()} and pass it to
+ * {@link ChplApiWrapper#search(SearchQuery)}; paging parameters are added by the wrapper.
+ * Instances are immutable.
+ */
+public final class SearchQuery {
+	public static final int DEFAULT_PAGE_SIZE = 100;
+
+	static final String CERTIFICATION_EDITIONS = "certificationEditions";
+	static final String CERTIFICATION_DATE_START = "certificationDateStart";
+	static final String CERTIFICATION_DATE_END = "certificationDateEnd";
+	static final String PAGE_NUMBER = "pageNumber";
+	static final String PAGE_SIZE = "pageSize";
+
+	private final Map<String, String> parameters;
+	private final int pageSize;
+
+	private SearchQuery(Map<String, String> parameters, int pageSize) {
+		this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * @return a builder with no filters
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Parse a query string such as the one configured in {@value ChplApiWrapper#SEARCH_ENDPOINT}.
+	 * Paging parameters become the page size of the query; everything else is kept as a filter.
+	 * @param queryString - query string without the leading '?', may be null or empty
+	 * @return the query
+	 */
+	public static SearchQuery parse(String queryString) {
+		Builder builder = builder();
+		if (queryString == null || queryString.isEmpty()) {
+			return builder.build();
+		}
+		for (String pair : queryString.split("&")) {
+			if (pair.isEmpty()) {
+				continue;
+			}
+			int separator = pair.indexOf('=');
+			String name = decode(separator < 0 ? pair : pair.substring(0, separator));
+			String value = separator < 0 ? "" : decode(pair.substring(separator + 1));
+			if (PAGE_SIZE.equals(name)) {
+				builder.pageSize(Integer.parseInt(value));
+			} else if (!PAGE_NUMBER.equals(name)) {
+				builder.filter(name, value);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return filter parameters in the order they were added
+	 */
+	public Map<String, String> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * @return number of listings requested per page
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * @param pageNumber - zero-based page number
+	 * @return the URL query string for one page of results
+	 */
+	String toQueryString(int pageNumber) {
+		StringBuilder query = new StringBuilder();
+		for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+			query.append(encode(parameter.getKey())).append('=').append(encode(parameter.getValue())).append('&');
+		}
+		query.append(PAGE_NUMBER).append('=').append(pageNumber)
+				.append('&').append(PAGE_SIZE).append('=').append(pageSize);
+		return query.toString();
+	}
+
+	@Override
+	public String toString() {
+		return toQueryString(0);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof SearchQuery)) {
+			return false;
+		}
+		SearchQuery query = (SearchQuery) other;
+		return pageSize == query.pageSize && parameters.equals(query.parameters);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * parameters.hashCode() + pageSize;
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Collects filters for a {@link SearchQuery}. Setting a filter again replaces its value.
+	 */
+	public static final class Builder {
+		private final Map<String, String> parameters = new LinkedHashMap<>();
+		private int pageSize = DEFAULT_PAGE_SIZE;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param editions - certification editions, e.g. "2015"
+		 * @return this builder
+		 */
+		public Builder certificationEditions(String... editions) {
+			return list(CERTIFICATION_EDITIONS, editions);
+		}
+
+		/**
+		 * @param start - first certification date included, or null for no lower bound
+		 * @return this builder
+		 */
+		public Builder certificationDateStart(LocalDate start) {
+			return filter(CERTIFICATION_DATE_START, start == null ? null : start.toString());
+		}
+
+		/**
+		 * @param end - last certification date included, or null for no upper bound
+		 * @return this builder
+		 */
+		public Builder certificationDateEnd(LocalDate end) {
+			return filter(CERTIFICATION_DATE_END, end == null ? null : end.toString());
+		}
+
+		/**
+		 * @param developer - developer name
+		 * @return this builder
+		 */
+		public Builder developer(String developer) {
+			return filter("developer", developer);
+		}
+
+		/**
+		 * @param product - product name
+		 * @return this builder
+		 */
+		public Builder product(String product) {
+			return filter("product", product);
+		}
+
+		/**
+		 * @param practiceType - "Ambulatory" or "Inpatient"
+		 * @return this builder
+		 */
+		public Builder practiceType(String practiceType) {
+			return filter("practiceType", practiceType);
+		}
+
+		/**
+		 * @param statuses - certification statuses, e.g. "Active"
+		 * @return this builder
+		 */
+		public Builder certificationStatuses(String... statuses) {
+			return list("certificationStatuses", statuses);
+		}
+
+		/**
+		 * @param criteria - certification criteria numbers, e.g. "170.315 (a)(1)"
+		 * @return this builder
+		 */
+		public Builder certificationCriteria(String... criteria) {
+			return list("certificationCriteria", criteria);
+		}
+
+		/**
+		 * @param searchTerm - free text matched against developer, product and CHPL product number
+		 * @return this builder
+		 */
+		public Builder searchTerm(String searchTerm) {
+			return filter("searchTerm", searchTerm);
+		}
+
+		/**
+		 * Any other search API parameter.
+		 * @param name - parameter name
+		 * @param value - parameter value, null removes the parameter
+		 * @return this builder
+		 */
+		public Builder filter(String name, String value) {
+			if (PAGE_NUMBER.equals(name) || PAGE_SIZE.equals(name)) {
+				throw new IllegalArgumentException(name + " is managed by the result pager");
+			}
+			if (value == null) {
+				parameters.remove(name);
+			} else {
+				parameters.put(name, value);
+			}
+			return this;
+		}
+
+		/**
+		 * @param pageSize - listings fetched per request
+		 * @return this builder
+		 */
+		public Builder pageSize(int pageSize) {
+			if (pageSize <= 0) {
+				throw new IllegalArgumentException("pageSize must be positive");
+			}
+			this.pageSize = pageSize;
+			return this;
+		}
+
+		/**
+		 * @return the query
+		 */
+		public SearchQuery build() {
+			return new SearchQuery(parameters, pageSize);
+		}
+
+		private Builder list(String name, String... values) {
+			List<String> nonEmpty = new ArrayList<>(Arrays.asList(values));
+			nonEmpty.removeIf(value -> value == null || value.isEmpty());
+			return filter(name, nonEmpty.isEmpty() ? null : String.join(",", nonEmpty));
+		}
+	}
+}
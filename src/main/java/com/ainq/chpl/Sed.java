@@ -0,0 +1,57 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The safety-enhanced design section of a listing's details.
+ * Instances are immutable.
+ */
+public final class Sed {
+	private final List<TestTask> testTasks;
+
+	Sed(List<TestTask> testTasks) {
+		this.testTasks = Collections.unmodifiableList(testTasks);
+	}
+
+	public List<TestTask> getTestTasks() {
+		return testTasks;
+	}
+
+	@Override
+	public String toString() {
+		return "Sed [testTasks=" + testTasks.size() + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<Sed> {
+		private final TypeAdapter<TestTask> taskAdapter = new TestTask.Adapter();
+
+		@Override
+		public Sed read(JsonReader reader) throws IOException {
+			List<TestTask> testTasks = Collections.emptyList();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				if (reader.nextName().equals("testTasks")) {
+					testTasks = ChplJson.readList(reader, taskAdapter);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new Sed(testTasks);
+		}
+
+		@Override
+		public void write(JsonWriter writer, Sed sed) throws IOException {
+			writer.beginObject();
+			writer.name("testTasks");
+			ChplJson.writeList(writer, taskAdapter, sed.testTasks);
+			writer.endObject();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller runs the call and
+ * everyone who asks for the key while it is in flight waits for, and shares, its result.
+ * Nothing is cached once the call completes. A leader that is interrupted or cancelled by its
+ * own caller does not pass that on: the callers waiting for it run the call again instead, one
+ * of them as the new leader.
+ * @param <K> key type
+ * @param <V> result type, shared between callers so it must not be mutated
+ */
+class SingleFlight<K, V> {
+
+	/**
+	 * The deduplicated work.
+	 * @param <V> result type
+	 */
+	interface Call<V> {
+		V call() throws IOException;
+	}
+
+	/**
+	 * Completes the leader's future when the leader gave up because its own caller interrupted it.
+	 */
+	private static final class Abandoned extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		Abandoned(Throwable cause) {
+			super(cause);
+		}
+	}
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+	private final LongAdder executed = new LongAdder();
+	private final LongAdder coalesced = new LongAdder();
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * Run the call, or join the identical call already in flight.
+	 * @param key - identifies identical calls
+	 * @param call - work to run when no identical call is in flight
+	 * @return the (possibly shared) result
+	 * @throws IOException - the (possibly shared) failure
+	 */
+	V execute(K key, Call<V> call) throws IOException {
+		while (true) {
+			CompletableFuture<V> mine = new CompletableFuture<>();
+			CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+			if (existing == null) {
+				return lead(key, mine, call);
+			}
+			waiting.incrementAndGet();
+			try {
+				return await(existing);
+			} catch (Abandoned e) {
+				// the leader's caller gave up; take over or join whoever did
+			} finally {
+				waiting.decrementAndGet();
+			}
+		}
+	}
+
+	private V lead(K key, CompletableFuture<V> mine, Call<V> call) throws IOException {
+		executed.increment();
+		try {
+			V result = call.call();
+			mine.complete(result);
+			return result;
+		} catch (IOException | RuntimeException | Error e) {
+			mine.completeExceptionally(isInterruption(e) ? new Abandoned(e) : e);
+			throw e;
+		} finally {
+			inFlight.remove(key, mine);
+		}
+	}
+
+	/**
+	 * Socket and connect timeouts are InterruptedIOExceptions too, but they are failures of the
+	 * server that every caller would see, so they are shared.
+	 */
+	private static boolean isInterruption(Throwable e) {
+		return Thread.currentThread().isInterrupted() || e.getClass() == InterruptedIOException.class
+				|| e instanceof ClosedByInterruptException || e instanceof CancellationException;
+	}
+
+	/**
+	 * @return calls that actually ran
+	 */
+	long getExecutedCount() {
+		return executed.sum();
+	}
+
+	/**
+	 * @return calls that received the result or failure of one already in flight instead of running
+	 */
+	long getCoalescedCount() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * @return callers currently waiting for a call in flight
+	 */
+	int getWaitingCount() {
+		return waiting.get();
+	}
+
+	private V await(CompletableFuture<V> leader) throws IOException, Abandoned {
+		try {
+			V result = leader.get();
+			coalesced.increment();
+			return result;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for a shared request");
+			interrupted.initCause(e);
+			throw interrupted;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Abandoned) {
+				throw (Abandoned) cause;
+			}
+			coalesced.increment();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+}
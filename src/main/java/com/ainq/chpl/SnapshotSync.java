@@ -0,0 +1,136 @@
+package com.ainq.chpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the {@link ListingSnapshot} in a directory up to date. The search summaries of every
+ * listing are read each time, since they are cheap and reveal removed listings. Details are
+ * fetched only for listings that are new, were modified after the previous snapshot's watermark,
+ * or do not report a lastModifiedDate; every other listing keeps the education types already in
+ * the snapshot.
+ */
+class SnapshotSync {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotSync.class);
+
+	/**
+	 * Reads the education type names from the details of one listing.
+	 */
+	interface DetailsReader {
+		Set<String> educationTypeNames(long listingId) throws IOException;
+	}
+
+	private final File directory;
+	private final Supplier<Stream<Listing>> listings;
+	private final DetailsReader details;
+	private final DetailsReader changedDetails;
+	private final BoundedFanOut fanOut;
+
+	/**
+	 * @param directory - where the snapshot lives
+	 * @param listings - every listing to be in the snapshot, as search summaries
+	 * @param details - reads details of new and changed listings
+	 * @param fanOut - runs the details reads concurrently, or null to read them one at a time
+	 */
+	SnapshotSync(File directory, Supplier<Stream<Listing>> listings, DetailsReader details, BoundedFanOut fanOut) {
+		this(directory, listings, details, details, fanOut);
+	}
+
+	/**
+	 * @param directory - where the snapshot lives
+	 * @param listings - every listing to be in the snapshot, as search summaries
+	 * @param details - reads details of listings new to the snapshot
+	 * @param changedDetails - reads details of listings modified since the previous sync; must not
+	 * answer from a cache that may predate the modification
+	 * @param fanOut - runs the details reads concurrently, or null to read them one at a time
+	 */
+	SnapshotSync(File directory, Supplier<Stream<Listing>> listings, DetailsReader details,
+			DetailsReader changedDetails, BoundedFanOut fanOut) {
+		this.directory = directory;
+		this.listings = listings;
+		this.details = details;
+		this.changedDetails = changedDetails;
+		this.fanOut = fanOut;
+	}
+
+	/**
+	 * @return the new snapshot
+	 * @throws IOException - if listings or details cannot be fetched, or the snapshot cannot be written;
+	 * the previous snapshot is then left as it was
+	 */
+	ListingSnapshot sync() throws IOException {
+		long start = System.currentTimeMillis();
+		try (ListingSnapshot previous = ListingSnapshot.open(directory)) {
+			return sync(start, previous);
+		}
+	}
+
+	private ListingSnapshot sync(long start, ListingSnapshot previous) throws IOException {
+		long watermark = previous == null ? Long.MIN_VALUE : previous.getWatermark();
+		List<Listing> current;
+		try (Stream<Listing> stream = listings.get()) {
+			current = stream.collect(Collectors.toList());
+		}
+
+		List<ListingSnapshot.Entry> entries = new ArrayList<>(current.size());
+		List<Listing> changed = new ArrayList<>();
+		Set<Long> modified = new HashSet<>();
+		Set<Long> ids = new HashSet<>(current.size() * 2);
+		int kept = 0;
+		for (Listing listing : current) {
+			if (!ids.add(listing.getId())) {
+				continue;
+			}
+			int row = previous == null ? -1 : previous.find(listing.getId());
+			if (row >= 0) {
+				kept++;
+			}
+			Long lastModified = listing.getLastModifiedDate();
+			if (row < 0 || lastModified == null || lastModified > watermark) {
+				changed.add(listing);
+				if (row >= 0) {
+					modified.add(listing.getId());
+				}
+			} else {
+				entries.add(new ListingSnapshot.Entry(listing, previous.getEducationTypeNames(row)));
+			}
+		}
+
+		Map<Long, Set<String>> fetched = new ConcurrentHashMap<>();
+		BoundedFanOut.Task<Listing> fetch = listing -> fetched.put(listing.getId(), Collections.unmodifiableSet(
+				(modified.contains(listing.getId()) ? changedDetails : details).educationTypeNames(listing.getId())));
+		if (fanOut != null) {
+			fanOut.forEach(changed, fetch);
+		} else {
+			for (Listing listing : changed) {
+				fetch.apply(listing);
+			}
+		}
+		for (Listing listing : changed) {
+			entries.add(new ListingSnapshot.Entry(listing, fetched.get(listing.getId())));
+		}
+
+		ListingSnapshot.write(directory, entries, start);
+		int removed = 0;
+		if (previous != null) {
+			removed = previous.size() - kept;
+		}
+		ListingSnapshot snapshot = ListingSnapshot.open(directory);
+		LOGGER.info("Synced {} listings into {} in {} ms: {} fetched, {} unchanged, {} removed", entries.size(),
+				directory, System.currentTimeMillis() - start, changed.size(), entries.size() - changed.size(), removed);
+		return snapshot;
+	}
+}
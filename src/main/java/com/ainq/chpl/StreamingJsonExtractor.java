@@ -0,0 +1,121 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Pulls the scalar values found at a fixed set of dotted paths out of a JSON document
+ * without building a tree. Everything off those paths is skipped by the reader.
+ * Arrays are traversed transparently, so {@code sed.testTasks.testParticipants.educationTypeName}
+ * visits the name of every participant of every task.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+class StreamingJsonExtractor {
+
+	/**
+	 * Receives each extracted value.
+	 */
+	interface ValueHandler {
+		/**
+		 * @param path - the configured path the value was found at
+		 * @param value - the value as a string; numbers and booleans are converted, nulls are not reported
+		 */
+		void value(String path, String value);
+	}
+
+	private final Node root = new Node();
+
+	/**
+	 * @param paths - dotted paths to extract
+	 */
+	StreamingJsonExtractor(String... paths) {
+		for (String path : paths) {
+			Node node = root;
+			for (String segment : path.split("\\.")) {
+				node = node.children.computeIfAbsent(segment, key -> new Node());
+			}
+			node.path = path;
+		}
+	}
+
+	/**
+	 * Extract the configured paths from a UTF-8 encoded stream. The stream is not closed.
+	 * @param in - JSON document
+	 * @param handler - receives each value found
+	 * @throws IOException - if the stream cannot be read or is not valid JSON
+	 */
+	void extract(InputStream in, ValueHandler handler) throws IOException {
+		extract(new InputStreamReader(in, StandardCharsets.UTF_8), handler);
+	}
+
+	/**
+	 * Extract the configured paths from a character stream. The reader is not closed.
+	 * @param in - JSON document
+	 * @param handler - receives each value found
+	 * @throws IOException - if the reader fails or the document is not valid JSON
+	 */
+	void extract(Reader in, ValueHandler handler) throws IOException {
+		JsonReader reader = new JsonReader(in);
+		walk(reader, root, handler);
+	}
+
+	private void walk(JsonReader reader, Node node, ValueHandler handler) throws IOException {
+		JsonToken token = reader.peek();
+		switch (token) {
+		case BEGIN_ARRAY:
+			reader.beginArray();
+			while (reader.hasNext()) {
+				walk(reader, node, handler);
+			}
+			reader.endArray();
+			break;
+		case BEGIN_OBJECT:
+			if (node.children.isEmpty()) {
+				reader.skipValue();
+				break;
+			}
+			reader.beginObject();
+			while (reader.hasNext()) {
+				Node child = node.children.get(reader.nextName());
+				if (child == null) {
+					reader.skipValue();
+				} else {
+					walk(reader, child, handler);
+				}
+			}
+			reader.endObject();
+			break;
+		case STRING:
+		case NUMBER:
+			if (node.path != null) {
+				handler.value(node.path, reader.nextString());
+			} else {
+				reader.skipValue();
+			}
+			break;
+		case BOOLEAN:
+			if (node.path != null) {
+				handler.value(node.path, String.valueOf(reader.nextBoolean()));
+			} else {
+				reader.skipValue();
+			}
+			break;
+		default:
+			reader.skipValue();
+		}
+	}
+
+	private static final class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private String path;
+	}
+}
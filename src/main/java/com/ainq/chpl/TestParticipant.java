@@ -0,0 +1,143 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A participant of a safety-enhanced design test task.
+ * Instances are immutable.
+ */
+public final class TestParticipant {
+	private final String id;
+	private final String gender;
+	private final String educationTypeName;
+	private final String ageRange;
+	private final String occupation;
+	private final Integer professionalExperienceMonths;
+	private final Integer computerExperienceMonths;
+	private final Integer productExperienceMonths;
+	private final String assistiveTechnologyNeeds;
+
+	TestParticipant(String id, String gender, String educationTypeName, String ageRange, String occupation,
+			Integer professionalExperienceMonths, Integer computerExperienceMonths, Integer productExperienceMonths,
+			String assistiveTechnologyNeeds) {
+		this.id = id;
+		this.gender = gender;
+		this.educationTypeName = educationTypeName;
+		this.ageRange = ageRange;
+		this.occupation = occupation;
+		this.professionalExperienceMonths = professionalExperienceMonths;
+		this.computerExperienceMonths = computerExperienceMonths;
+		this.productExperienceMonths = productExperienceMonths;
+		this.assistiveTechnologyNeeds = assistiveTechnologyNeeds;
+	}
+
+	/**
+	 * @return participant id as text, since some API versions report it as a string; null if not reported
+	 */
+	public String getId() {
+		return id;
+	}
+
+	public String getGender() {
+		return gender;
+	}
+
+	public String getEducationTypeName() {
+		return educationTypeName;
+	}
+
+	public String getAgeRange() {
+		return ageRange;
+	}
+
+	public String getOccupation() {
+		return occupation;
+	}
+
+	public Integer getProfessionalExperienceMonths() {
+		return professionalExperienceMonths;
+	}
+
+	public Integer getComputerExperienceMonths() {
+		return computerExperienceMonths;
+	}
+
+	public Integer getProductExperienceMonths() {
+		return productExperienceMonths;
+	}
+
+	public String getAssistiveTechnologyNeeds() {
+		return assistiveTechnologyNeeds;
+	}
+
+	@Override
+	public String toString() {
+		return "TestParticipant [id=" + id + ", educationTypeName=" + educationTypeName + ", ageRange=" + ageRange
+				+ ", occupation=" + occupation + "]";
+	}
+
+	static final class Adapter extends TypeAdapter<TestParticipant> {
+		@Override
+		public TestParticipant read(JsonReader reader) throws IOException {
+			String id = null, gender = null, educationTypeName = null, ageRange = null, occupation = null,
+					assistiveTechnologyNeeds = null;
+			Integer professionalExperienceMonths = null, computerExperienceMonths = null, productExperienceMonths = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = ChplJson.nextString(reader);
+					break;
+				case "gender":
+					gender = ChplJson.nextString(reader);
+					break;
+				case "educationTypeName":
+					educationTypeName = ChplJson.nextString(reader);
+					break;
+				case "ageRange":
+					ageRange = ChplJson.nextString(reader);
+					break;
+				case "occupation":
+					occupation = ChplJson.nextString(reader);
+					break;
+				case "professionalExperienceMonths":
+					professionalExperienceMonths = ChplJson.nextInteger(reader);
+					break;
+				case "computerExperienceMonths":
+					computerExperienceMonths = ChplJson.nextInteger(reader);
+					break;
+				case "productExperienceMonths":
+					productExperienceMonths = ChplJson.nextInteger(reader);
+					break;
+				case "assistiveTechnologyNeeds":
+					assistiveTechnologyNeeds = ChplJson.nextString(reader);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new TestParticipant(id, gender, educationTypeName, ageRange, occupation, professionalExperienceMonths,
+					computerExperienceMonths, productExperienceMonths, assistiveTechnologyNeeds);
+		}
+
+		@Override
+		public void write(JsonWriter writer, TestParticipant participant) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(participant.id);
+			writer.name("gender").value(participant.gender);
+			writer.name("educationTypeName").value(participant.educationTypeName);
+			writer.name("ageRange").value(participant.ageRange);
+			writer.name("occupation").value(participant.occupation);
+			writer.name("professionalExperienceMonths").value(participant.professionalExperienceMonths);
+			writer.name("computerExperienceMonths").value(participant.computerExperienceMonths);
+			writer.name("productExperienceMonths").value(participant.productExperienceMonths);
+			writer.name("assistiveTechnologyNeeds").value(participant.assistiveTechnologyNeeds);
+			writer.endObject();
+		}
+	}
+}
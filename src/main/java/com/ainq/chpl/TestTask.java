@@ -0,0 +1,121 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * A safety-enhanced design test task with the criteria it covers and its participants.
+ * Instances are immutable.
+ */
+public final class TestTask {
+	private final long id;
+	private final String description;
+	private final List<String> criteria;
+	private final List<TestParticipant> testParticipants;
+
+	TestTask(long id, String description, List<String> criteria, List<TestParticipant> testParticipants) {
+		this.id = id;
+		this.description = description;
+		this.criteria = Collections.unmodifiableList(criteria);
+		this.testParticipants = Collections.unmodifiableList(testParticipants);
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	/**
+	 * @return numbers of the certification criteria the task was run for, such as "170.315 (a)(1)"
+	 */
+	public List<String> getCriteria() {
+		return criteria;
+	}
+
+	public List<TestParticipant> getTestParticipants() {
+		return testParticipants;
+	}
+
+	@Override
+	public String toString() {
+		return "TestTask [id=" + id + ", criteria=" + criteria + ", testParticipants=" + testParticipants.size() + "]";
+	}
+
+	/**
+	 * Criteria are read from their "number" field and written back as objects holding only that field.
+	 */
+	static final class Adapter extends TypeAdapter<TestTask> {
+		private final TypeAdapter<TestParticipant> participantAdapter = new TestParticipant.Adapter();
+
+		@Override
+		public TestTask read(JsonReader reader) throws IOException {
+			long id = 0;
+			String description = null;
+			List<String> criteria = Collections.emptyList();
+			List<TestParticipant> testParticipants = Collections.emptyList();
+			reader.beginObject();
+			while (reader.hasNext()) {
+				switch (reader.nextName()) {
+				case "id":
+					id = reader.nextLong();
+					break;
+				case "description":
+					description = ChplJson.nextString(reader);
+					break;
+				case "criteria":
+					criteria = readCriteria(reader);
+					break;
+				case "testParticipants":
+					testParticipants = ChplJson.readList(reader, participantAdapter);
+					break;
+				default:
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+			return new TestTask(id, description, criteria, testParticipants);
+		}
+
+		private static List<String> readCriteria(JsonReader reader) throws IOException {
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				return Collections.emptyList();
+			}
+			List<String> criteria = new ArrayList<>();
+			reader.beginArray();
+			while (reader.hasNext()) {
+				String number = ChplJson.readName(reader, "number");
+				if (number != null) {
+					criteria.add(number);
+				}
+			}
+			reader.endArray();
+			return criteria;
+		}
+
+		@Override
+		public void write(JsonWriter writer, TestTask task) throws IOException {
+			writer.beginObject();
+			writer.name("id").value(task.id);
+			writer.name("description").value(task.description);
+			writer.name("criteria").beginArray();
+			for (String number : task.criteria) {
+				writer.beginObject().name("number").value(number).endObject();
+			}
+			writer.endArray();
+			writer.name("testParticipants");
+			ChplJson.writeList(writer, participantAdapter, task.testParticipants);
+			writer.endObject();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package com.ainq.chpl;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * Counts the bytes of a response body as transferred and remembers whether reading them failed,
+ * which tells a broken connection apart from a payload that cannot be decoded or parsed.
+ */
+class WireInputStream extends CountingInputStream {
+	private boolean failed;
+
+	/**
+	 * @param in - the body stream of the connection
+	 */
+	WireInputStream(InputStream in) {
+		super(in);
+	}
+
+	/**
+	 * @return true if the connection failed while the body was read or closed
+	 */
+	boolean hasFailed() {
+		return failed;
+	}
+
+	@Override
+	public int read() throws IOException {
+		try {
+			return super.read();
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] b) throws IOException {
+		try {
+			return super.read(b);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		try {
+			return super.read(b, off, len);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public long skip(long length) throws IOException {
+		try {
+			return super.skip(length);
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+}
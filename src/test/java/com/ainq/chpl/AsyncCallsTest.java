@@ -0,0 +1,67 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AsyncCallsTest {
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		executor = AsyncCalls.newExecutor(AsyncCalls.VIRTUAL, 0);
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testCompletesWithResultAndComposes() throws Exception {
+		CompletableFuture<Integer> sum = AsyncCalls.supply(() -> 2, executor)
+				.thenCombine(AsyncCalls.supply(() -> 3, executor), Integer::sum);
+		assertEquals(Integer.valueOf(5), sum.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testCompletesExceptionally() throws Exception {
+		CompletableFuture<String> future = AsyncCalls.supply(() -> {
+			throw new IOException("unavailable");
+		}, executor);
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected the call to fail");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+
+	@Test
+	public void testCancelInterruptsRunningCall() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch interrupted = new CountDownLatch(1);
+		CompletableFuture<String> future = AsyncCalls.supply(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(30000);
+			} catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return "late";
+		}, executor);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		assertTrue(future.cancel(true));
+		assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		assertTrue(future.isCancelled());
+	}
+}
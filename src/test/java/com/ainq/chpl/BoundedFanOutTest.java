@@ -0,0 +1,93 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BoundedFanOutTest {
+	private static ExecutorService executor;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		executor = Executors.newFixedThreadPool(4, new DaemonThreadFactory("fan-out-test"));
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testAllItemsProcessedWithinParallelismLimit() throws Exception {
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			items.add(i);
+		}
+		Set<Integer> seen = ConcurrentHashMap.newKeySet();
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+
+		new BoundedFanOut(executor, 5000).forEach(items, item -> {
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			seen.add(item);
+			inFlight.decrementAndGet();
+		});
+
+		assertEquals(100, seen.size());
+		assertTrue(maxInFlight.get() <= 4);
+	}
+
+	@Test
+	public void testFailureIsRethrown() throws Exception {
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			items.add(i);
+		}
+		try {
+			new BoundedFanOut(executor, 5000).forEach(items, item -> {
+				if (item == 3) {
+					throw new IOException("boom");
+				}
+			});
+			fail("Expected the failure of one item to fail the batch");
+		} catch (IOException e) {
+			assertEquals("boom", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testSlowItemTimesOut() throws Exception {
+		List<Integer> items = new ArrayList<>();
+		items.add(1);
+		long start = System.currentTimeMillis();
+		try {
+			new BoundedFanOut(executor, 100).forEach(items, item -> {
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			fail("Expected the slow item to time out");
+		} catch (IOException e) {
+			assertTrue(System.currentTimeMillis() - start < 5000);
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+public class ChplConfigTest {
+
+	@Test
+	public void testOutOfRangeIntFallsBackToDefault() {
+		Properties properties = new Properties();
+		properties.setProperty("detailsParallelism", "4294967304");
+		properties.setProperty("asyncThreads", "16");
+		properties.setProperty("detailsTimeoutMillis", "30s");
+		ChplConfig config = new ChplConfig(properties);
+
+		assertEquals(1, config.getInt("detailsParallelism", 1));
+		assertEquals(16, config.getInt("asyncThreads", 8));
+		assertEquals(30000, config.getInt("detailsTimeoutMillis", 30000));
+		assertEquals(4294967304L, config.getLong("detailsParallelism", 1));
+	}
+}
@@ -0,0 +1,95 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ChplJsonTest {
+
+	@Test
+	public void testDetailsMatchStreamingExtraction() throws IOException {
+		String json = DetailsFixtures.details(42, 30, 12, 10);
+		ListingDetails details = ChplJson.read(stream(json), ListingDetails.class);
+
+		assertEquals(42, details.getId());
+		assertEquals(30, details.getCertificationResults().size());
+		assertEquals("170.315 (a)(3)", details.getCertificationResults().get(3).getNumber());
+		assertTrue(details.getCertificationResults().get(3).isSuccess());
+		assertFalse(details.getCertificationResults().get(3).isSed());
+		assertEquals(12, details.getSed().getTestTasks().size());
+		TestTask task = details.getSed().getTestTasks().get(5);
+		assertEquals("[170.315 (a)(5)]", task.getCriteria().toString());
+		assertEquals(10, task.getTestParticipants().size());
+		assertEquals("5003", task.getTestParticipants().get(3).getId());
+		assertNotNull(task.getTestParticipants().get(3).getProductExperienceMonths());
+
+		Set<String> streamed = new HashSet<>();
+		new StreamingJsonExtractor(ChplApiWrapper.EDUCATION_TYPE_NAME_PATH)
+				.extract(stream(json), (path, value) -> streamed.add(value));
+		assertEquals(streamed, details.getEducationTypeNames());
+	}
+
+	@Test
+	public void testWrittenDetailsReadBackTheSame() throws IOException {
+		ListingDetails details = ChplJson.read(stream(DetailsFixtures.details(7, 4, 3, 5)), ListingDetails.class);
+		String written = ChplJson.GSON.toJson(details);
+		ListingDetails reread = ChplJson.read(stream(written), ListingDetails.class);
+
+		assertEquals(written, ChplJson.GSON.toJson(reread));
+		assertEquals(details.getEducationTypeNames(), reread.getEducationTypeNames());
+	}
+
+	@Test
+	public void testMissingAndNullSectionsAreEmpty() throws IOException {
+		ListingDetails details = ChplJson.read(stream("{\"id\":3,\"certificationResults\":null,\"sed\":null,"
+				+ "\"extra\":{\"sed\":[1]}}"), ListingDetails.class);
+		assertEquals(3, details.getId());
+		assertTrue(details.getCertificationResults().isEmpty());
+		assertTrue(details.getSed().getTestTasks().isEmpty());
+		assertTrue(details.getEducationTypeNames().isEmpty());
+	}
+
+	@Test
+	public void testReferenceListsAreReadBareOrWrapped() throws IOException {
+		List<EducationType> educationTypes = ChplJson.readList(
+				stream("{\"data\":[{\"id\":1,\"name\":\"Associate degree\"},{\"id\":2,\"name\":\"Master's degree\"}]}"),
+				EducationType.class, "data");
+		assertEquals(2, educationTypes.size());
+		assertEquals("Master's degree", educationTypes.get(1).getName());
+
+		List<PracticeType> practiceTypes = ChplJson.readList(
+				stream("[{\"id\":1,\"name\":\"Ambulatory\",\"description\":\"Ambulatory care settings\"}]"),
+				PracticeType.class, "data");
+		assertEquals(1, practiceTypes.size());
+		assertEquals("Ambulatory care settings", practiceTypes.get(0).getDescription());
+	}
+
+	@Test
+	public void testListingNamesAreStringsOrObjects() throws IOException {
+		Listing listing = ChplJson.read(stream("{\"id\":9,\"edition\":{\"name\":\"2015\"},\"developer\":\"Developer A\","
+				+ "\"version\":{\"version\":\"1.0\"},\"certificationDate\":1488326400000,\"lastModifiedDate\":null}"),
+				Listing.class);
+		assertEquals(9, listing.getId());
+		assertEquals("2015", listing.getEdition());
+		assertEquals("Developer A", listing.getDeveloper());
+		assertEquals("1.0", listing.getVersion());
+		assertEquals(Long.valueOf(1488326400000L), listing.getCertificationDate());
+		assertNull(listing.getLastModifiedDate());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMismatchedDocumentIsAnIOException() throws IOException {
+		ChplJson.read(stream("[1,2]"), ListingDetails.class);
+	}
+
+	private static ByteArrayInputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,39 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+
+import org.junit.Test;
+
+public class ChplMetricsTest {
+
+	@Test
+	public void testInstancesPublishUnderTheirOwnNames() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ChplMetrics first = new ChplMetrics(true);
+		ChplMetrics second = new ChplMetrics(true);
+		first.endpoint("details").start().succeeded();
+		second.endpoint("details");
+
+		assertFalse(first.objectName("details").equals(second.objectName("details")));
+		assertEquals(1L, server.getAttribute(first.objectName("details"), "RequestCount"));
+		assertEquals(0L, server.getAttribute(second.objectName("details"), "RequestCount"));
+	}
+
+	@Test
+	public void testCloseUnregistersOnlyOwnMBeans() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ChplMetrics first = new ChplMetrics(true);
+		ChplMetrics second = new ChplMetrics(true);
+		first.endpoint("details");
+		second.endpoint("details");
+
+		first.close();
+		assertFalse(server.isRegistered(first.objectName("details")));
+		assertTrue(server.isRegistered(second.objectName("details")));
+		second.close();
+	}
+}
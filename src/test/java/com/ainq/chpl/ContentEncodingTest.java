@@ -0,0 +1,115 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+public class ContentEncodingTest {
+	private static final String BODY = repeat("{\"id\":1,\"name\":\"Bachelor's degree\"},", 200);
+
+	@Test
+	public void testGzipAndDeflateBodiesAreDecodedWhileRead() throws IOException {
+		byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(gzip(plain)),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "gzip"))));
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(deflate(plain, false)),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "deflate"))));
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(deflate(plain, true)),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "deflate"))));
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(plain), null)));
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(plain),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "identity"))));
+	}
+
+	@Test
+	public void testStackedCodingsAreUndoneLastFirst() throws IOException {
+		byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(gzip(deflate(plain, false))),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "deflate, gzip"))));
+		assertEquals(BODY, read(ContentEncoding.decode(new ByteArrayInputStream(deflate(gzip(plain), false)),
+				new BasicHeader(HttpHeaders.CONTENT_ENCODING, "gzip, identity, deflate"))));
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedEncodingFails() throws IOException {
+		ContentEncoding.decode(new ByteArrayInputStream(new byte[1]), new BasicHeader(HttpHeaders.CONTENT_ENCODING, "br"));
+	}
+
+	@Test
+	public void testMetricsReportWireAndDecodedSize() throws IOException {
+		String educationTypes = "{\"data\":[" + repeat("{\"id\":1,\"name\":\"Master's degree\"},", 99)
+				+ "{\"id\":2,\"name\":\"Associate degree\"}]}";
+		byte[] compressed = gzip(educationTypes.getBytes(StandardCharsets.UTF_8));
+		File directory = Files.createTempDirectory("recordings").toFile();
+		try {
+			BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+			new ResponseRecordings(directory).save(new HttpGet("http://host/rest/data/education_types").getURI(),
+					ResponseRecordings.Recording.of(response, compressed));
+
+			Properties properties = new Properties();
+			properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY, "http://host/rest");
+			properties.setProperty("educationTypesApi", "/data/education_types");
+			properties.setProperty(ChplApiWrapper.TRANSPORT_PROPERTY, ChplTransport.REPLAY);
+			properties.setProperty(ChplApiWrapper.TRANSPORT_DIR_PROPERTY, directory.getPath());
+			properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+			try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+				assertEquals(100, wrapper.getEducationLevelNames().size());
+				EndpointMetricsSnapshot metrics = wrapper.getMetrics().get(ChplApiWrapper.EDUCATION_TYPES_ENDPOINT);
+				assertEquals(compressed.length, metrics.getBytesRead());
+				assertEquals(educationTypes.length(), metrics.getDecodedBytesRead());
+			}
+		} finally {
+			FileUtils.deleteDirectory(directory);
+		}
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try (InputStream decoded = in) {
+			return IOUtils.toString(decoded, "UTF-8");
+		}
+	}
+
+	private static byte[] gzip(byte[] plain) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(plain);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] deflate(byte[] plain, boolean raw) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))) {
+			deflate.write(plain);
+		}
+		return out.toByteArray();
+	}
+
+	private static String repeat(String text, int times) {
+		StringBuilder repeated = new StringBuilder(text.length() * times);
+		for (int i = 0; i < times; i++) {
+			repeated.append(text);
+		}
+		return repeated.toString();
+	}
+}
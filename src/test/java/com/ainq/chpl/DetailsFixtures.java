@@ -0,0 +1,74 @@
+package com.ainq.chpl;
+
+import java.util.Random;
+
+/**
+ * Synthetic listing details payloads shaped like the CHPL details response:
+ * many certification results with long free-text fields, plus a sed section
+ * whose test tasks carry the test participants.
+ */
+final class DetailsFixtures {
+	static final String[] EDUCATION_TYPES = {
+			"No high school degree", "High school graduate, diploma or the equivalent (for example: GED)",
+			"Some college credit, no degree", "Trade/technical/vocational training", "Associate degree",
+			"Bachelor's degree", "Master's degree", "Doctorate degree (e.g., MD, DNP, DMD, PhD)" };
+
+	private DetailsFixtures() {
+	}
+
+	/**
+	 * @param listingId - id written into the payload
+	 * @param certificationResults - number of certification results to generate
+	 * @param testTasks - number of test tasks in the sed section
+	 * @param participantsPerTask - participants per test task
+	 * @return JSON document
+	 */
+	static String details(long listingId, int certificationResults, int testTasks, int participantsPerTask) {
+		Random random = new Random(listingId);
+		StringBuilder json = new StringBuilder(4096);
+		json.append("{\"id\":").append(listingId).append(",\"chplProductNumber\":\"15.04.04.2891.Test.01.00.1.170301\"");
+		json.append(",\"certificationResults\":[");
+		for (int i = 0; i < certificationResults; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(i).append(",\"number\":\"170.315 (a)(").append(i).append(")\"")
+					.append(",\"title\":\"Computerized Provider Order Entry (CPOE) - Medications\"")
+					.append(",\"success\":true,\"gap\":null,\"sed\":").append(i % 2 == 0)
+					.append(",\"apiDocumentation\":\"https://example.org/api/documentation/").append(i).append("\"")
+					.append(",\"privacySecurityFramework\":\"Approach 1 Approach 2\"")
+					.append(",\"additionalSoftware\":[],\"testToolsUsed\":[{\"testToolId\":4,\"testToolName\":\"Inferno\",\"testToolVersion\":\"1.2\"}]")
+					.append(",\"testStandards\":[],\"testFunctionality\":[]")
+					.append(",\"testDataUsed\":[{\"testData\":{\"id\":1,\"name\":\"ONC Test Method\"},\"version\":\"1.0\",\"alteration\":null}]")
+					.append(",\"testProcedures\":[{\"testProcedure\":{\"id\":1,\"name\":\"ONC Test Method\"},\"testProcedureVersion\":\"1.1\"}]")
+					.append('}');
+		}
+		json.append("],\"sed\":{\"ucdProcesses\":[{\"name\":\"NISTIR 7741\",\"details\":\"Followed the NISTIR 7741 process\"}]");
+		json.append(",\"testTasks\":[");
+		for (int t = 0; t < testTasks; t++) {
+			if (t > 0) {
+				json.append(',');
+			}
+			json.append("{\"id\":").append(t).append(",\"description\":\"Task ").append(t)
+					.append(" - record a medication order\",\"taskSuccessAverage\":95.5,\"taskPathDeviationObserved\":3")
+					.append(",\"criteria\":[{\"number\":\"170.315 (a)(").append(t % certificationResults).append(")\"}]")
+					.append(",\"testParticipants\":[");
+			for (int p = 0; p < participantsPerTask; p++) {
+				if (p > 0) {
+					json.append(',');
+				}
+				json.append("{\"id\":").append(t * 1000 + p)
+						.append(",\"gender\":\"").append(random.nextBoolean() ? "Female" : "Male").append('"')
+						.append(",\"educationTypeName\":\"").append(EDUCATION_TYPES[random.nextInt(EDUCATION_TYPES.length)]).append('"')
+						.append(",\"ageRange\":\"").append(20 + 10 * random.nextInt(5)).append('-').append(29 + 10 * random.nextInt(5)).append('"')
+						.append(",\"occupation\":\"Nurse\",\"professionalExperienceMonths\":").append(random.nextInt(300))
+						.append(",\"computerExperienceMonths\":").append(random.nextInt(300))
+						.append(",\"productExperienceMonths\":").append(random.nextInt(100))
+						.append(",\"assistiveTechnologyNeeds\":\"None\"}");
+			}
+			json.append("]}");
+		}
+		json.append("]}}");
+		return json.toString();
+	}
+}
@@ -0,0 +1,120 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class EducationLevelWindowTest {
+	private static final LocalDate MARCH_1 = LocalDate.of(2017, 3, 1);
+
+	private final List<Listing> listings = new ArrayList<>();
+	private final List<SearchQuery> searches = new ArrayList<>();
+	private final List<Long> fetched = Collections.synchronizedList(new ArrayList<>());
+	private long failingListing = -1;
+
+	private final EducationLevelWindow window = new EducationLevelWindow(
+			SearchQuery.builder().certificationEditions("2015").build(), query -> {
+				searches.add(query);
+				LocalDate from = LocalDate.parse(query.getParameters().get(SearchQuery.CERTIFICATION_DATE_START));
+				LocalDate to = LocalDate.parse(query.getParameters().get(SearchQuery.CERTIFICATION_DATE_END));
+				return listings.stream().filter(listing -> {
+					LocalDate day = day(listing);
+					return !day.isBefore(from) && !day.isAfter(to);
+				});
+			}, listingId -> {
+				if (listingId == failingListing) {
+					throw new IOException("details unavailable");
+				}
+				fetched.add(listingId);
+				return educationTypes(listingId);
+			}, null);
+
+	@Test
+	public void testSlidingFetchesOnlyListingsThatEntered() throws IOException {
+		for (int day = 0; day < 20; day++) {
+			listings.add(listing(day, MARCH_1.plusDays(day)));
+		}
+		assertEquals(expected(0, 9), window.moveTo(MARCH_1, MARCH_1.plusDays(9)));
+		assertEquals(10, fetched.size());
+		assertEquals("2015", searches.get(0).getParameters().get(SearchQuery.CERTIFICATION_EDITIONS));
+
+		fetched.clear();
+		searches.clear();
+		assertEquals(expected(5, 14), window.moveTo(MARCH_1.plusDays(5), MARCH_1.plusDays(14)));
+		assertEquals(Arrays.asList(10L, 11L, 12L, 13L, 14L), fetched);
+		assertEquals(1, searches.size());
+		assertEquals("2017-03-11", searches.get(0).getParameters().get(SearchQuery.CERTIFICATION_DATE_START));
+		assertEquals(10, window.size());
+		assertEquals(Integer.valueOf(5), window.getListingCounts().get("Even 0"));
+
+		fetched.clear();
+		assertEquals(expected(3, 14), window.moveTo(MARCH_1.plusDays(3), MARCH_1.plusDays(14)));
+		assertEquals(Arrays.asList(3L, 4L), fetched);
+	}
+
+	@Test
+	public void testDisjointWindowStartsOver() throws IOException {
+		for (int day = 0; day < 20; day++) {
+			listings.add(listing(day, MARCH_1.plusDays(day)));
+		}
+		window.moveTo(MARCH_1, MARCH_1.plusDays(4));
+		fetched.clear();
+		assertEquals(expected(15, 19), window.moveTo(MARCH_1.plusDays(15), MARCH_1.plusDays(19)));
+		assertEquals(Arrays.asList(15L, 16L, 17L, 18L, 19L), fetched);
+		assertEquals(5, window.size());
+	}
+
+	@Test
+	public void testFailedMoveLeavesWindowUnchanged() throws IOException {
+		for (int day = 0; day < 10; day++) {
+			listings.add(listing(day, MARCH_1.plusDays(day)));
+		}
+		window.moveTo(MARCH_1, MARCH_1.plusDays(4));
+		failingListing = 7;
+		try {
+			window.moveTo(MARCH_1.plusDays(3), MARCH_1.plusDays(9));
+			fail("listing 7 cannot be read");
+		} catch (IOException expected) {
+			// the window stays where it was
+		}
+		assertEquals(MARCH_1.plusDays(4), window.getEnd());
+		assertEquals(expected(0, 4), window.getEducationLevelNames());
+		assertEquals(5, window.size());
+	}
+
+	private static Listing listing(long id, LocalDate certified) {
+		long millis = certified.atStartOfDay(EducationLevelWindow.CERTIFICATION_DATE_ZONE).toInstant().toEpochMilli();
+		return new Listing(id, null, "2015", "Developer", "Product " + id, "1.0", "Active", millis, null);
+	}
+
+	private static LocalDate day(Listing listing) {
+		return Instant.ofEpochMilli(listing.getCertificationDate())
+				.atZone(EducationLevelWindow.CERTIFICATION_DATE_ZONE).toLocalDate();
+	}
+
+	/**
+	 * Every listing has a name of its own plus one shared with every other listing of the same parity.
+	 */
+	private static Set<String> educationTypes(long listingId) {
+		return new HashSet<>(Arrays.asList("Listing " + listingId, (listingId % 2 == 0 ? "Even " : "Odd ") + 0));
+	}
+
+	private static Set<String> expected(long first, long last) {
+		Set<String> names = new TreeSet<>();
+		for (long id = first; id <= last; id++) {
+			names.addAll(educationTypes(id));
+		}
+		return names;
+	}
+}
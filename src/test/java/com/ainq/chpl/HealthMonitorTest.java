@@ -0,0 +1,101 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class HealthMonitorTest {
+	private static final StatusLine OK = new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK");
+	private static final StatusLine UNAVAILABLE = new BasicStatusLine(HttpVersion.HTTP_1_1, 503, "Service Unavailable");
+
+	@Test
+	public void testTransitionsAfterConsecutiveFailures() {
+		Deque<Object> outcomes = new ArrayDeque<>();
+		HealthMonitor monitor = new HealthMonitor(() -> {
+			Object outcome = outcomes.removeFirst();
+			if (outcome instanceof IOException) {
+				throw (IOException) outcome;
+			}
+			return (StatusLine) outcome;
+		}, 1000, 2);
+		List<String> transitions = new ArrayList<>();
+		monitor.addListener((previous, current) -> transitions.add(previous.getState() + "->" + current.getState()));
+		assertEquals(ApiHealth.State.UNKNOWN, monitor.getHealth().getState());
+
+		outcomes.add(OK);
+		outcomes.add(UNAVAILABLE);
+		outcomes.add(new IOException("Connection refused"));
+		outcomes.add(OK);
+		monitor.check();
+		assertTrue(monitor.getHealth().isUp());
+		assertEquals("OK", monitor.getHealth().getStatus());
+
+		monitor.check();
+		assertTrue("one failure is tolerated", monitor.getHealth().isUp());
+		assertEquals("Service Unavailable", monitor.getHealth().getStatus());
+		assertEquals(1, monitor.getHealth().getConsecutiveFailures());
+
+		monitor.check();
+		assertEquals(ApiHealth.State.DOWN, monitor.getHealth().getState());
+		assertEquals("", monitor.getHealth().getStatus());
+		assertEquals(2, monitor.getHealth().getConsecutiveFailures());
+
+		monitor.check();
+		assertTrue(monitor.getHealth().isUp());
+		assertEquals(0, monitor.getHealth().getConsecutiveFailures());
+		assertEquals("[UNKNOWN->UP, UP->DOWN, DOWN->UP]", transitions.toString());
+	}
+
+	@Test
+	public void testCachedStatusComesFromBackgroundChecks() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		AtomicInteger hits = new AtomicInteger();
+		server.createContext("/rest/status", exchange -> {
+			hits.incrementAndGet();
+			byte[] bytes = "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+		try {
+			Properties properties = new Properties();
+			properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+					"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+			properties.setProperty("statusApi", "/status");
+			properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+			properties.setProperty(ChplApiWrapper.HEALTH_MONITOR_PROPERTY, "true");
+			properties.setProperty(ChplApiWrapper.HEALTH_CHECK_INTERVAL_PROPERTY, "60000");
+			try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+				long deadline = System.currentTimeMillis() + 10000;
+				while (!wrapper.getHealth().isUp() && System.currentTimeMillis() < deadline) {
+					Thread.sleep(10);
+				}
+				assertTrue(wrapper.getHealth().isUp());
+				for (int i = 0; i < 100; i++) {
+					assertEquals("OK", wrapper.getCachedChplStatus());
+				}
+				assertEquals(1, hits.get());
+			}
+		} finally {
+			server.stop(0);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgedRequestsTest {
+	private EndpointMetrics metrics;
+
+	@Before
+	public void setUp() {
+		metrics = new EndpointMetrics("details");
+	}
+
+	@Test
+	public void testHedgeAnswersForSlowAttemptAndAbortsIt() throws IOException {
+		recordFastRequests(HedgedRequests.MIN_SAMPLES);
+		HedgedRequests hedging = new HedgedRequests(metrics, 0.95, 10, 100, () -> true);
+		AtomicInteger calls = new AtomicInteger();
+		AtomicReference<Thread> primaryThread = new AtomicReference<>();
+		Thread caller = Thread.currentThread();
+
+		long start = System.currentTimeMillis();
+		String result = hedging.execute(abort -> {
+			calls.incrementAndGet();
+			if (Thread.currentThread() != caller) {
+				return "hedge";
+			}
+			primaryThread.compareAndSet(null, Thread.currentThread());
+			abort.onAbort(caller::interrupt);
+			sleep(10000);
+			return "primary";
+		});
+
+		assertEquals("hedge", result);
+		assertTrue(System.currentTimeMillis() - start < 2000);
+		assertSame("the first attempt runs on the calling thread", caller, primaryThread.get());
+		Thread.interrupted();
+		assertEquals(2, calls.get());
+		assertEquals(1, metrics.getHedgeCount());
+		assertEquals(1, metrics.getHedgeWinCount());
+	}
+
+	@Test
+	public void testNoHedgeWithoutEnoughSamples() throws IOException {
+		recordFastRequests(HedgedRequests.MIN_SAMPLES - 1);
+		HedgedRequests hedging = new HedgedRequests(metrics, 0.95, 10, 100, () -> true);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertEquals("primary", hedging.execute(abort -> {
+			calls.incrementAndGet();
+			sleep(100);
+			return "primary";
+		}));
+		assertEquals(1, calls.get());
+		assertEquals(0, metrics.getHedgeCount());
+	}
+
+	@Test
+	public void testBudgetLimitsHedges() throws IOException {
+		recordFastRequests(HedgedRequests.MIN_SAMPLES);
+		// one hedge per two requests
+		HedgedRequests hedging = new HedgedRequests(metrics, 0.95, 10, 50, () -> true);
+		for (int i = 0; i < 4; i++) {
+			hedging.execute(abort -> sleep(100));
+		}
+		assertEquals(2, metrics.getHedgeCount());
+	}
+
+	@Test
+	public void testNoHedgeWhileRateLimited() throws IOException {
+		recordFastRequests(HedgedRequests.MIN_SAMPLES);
+		AtomicInteger permitsAsked = new AtomicInteger();
+		HedgedRequests hedging = new HedgedRequests(metrics, 0.95, 10, 100, () -> permitsAsked.incrementAndGet() > 1);
+		AtomicInteger calls = new AtomicInteger();
+
+		hedging.execute(abort -> {
+			calls.incrementAndGet();
+			return sleep(100);
+		});
+		assertEquals(1, calls.get());
+		assertEquals(0, metrics.getHedgeCount());
+
+		hedging.execute(abort -> calls.incrementAndGet() == 2 ? sleep(100) : "hedge");
+		assertEquals("the refused hedge did not use up the budget", 1, metrics.getHedgeCount());
+	}
+
+	@Test
+	public void testFirstFailureIsReportedWhenBothAttemptsFail() {
+		recordFastRequests(HedgedRequests.MIN_SAMPLES);
+		HedgedRequests hedging = new HedgedRequests(metrics, 0.95, 10, 100, () -> true);
+		Thread caller = Thread.currentThread();
+		try {
+			hedging.execute(abort -> {
+				if (Thread.currentThread() == caller) {
+					sleep(100);
+					throw new IOException("first attempt failed");
+				}
+				throw new IOException("hedge failed");
+			});
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			assertEquals("first attempt failed", e.getMessage());
+		}
+		assertEquals(1, metrics.getHedgeCount());
+		assertEquals(0, metrics.getHedgeWinCount());
+	}
+
+	private void recordFastRequests(long count) {
+		for (int i = 0; i < count; i++) {
+			metrics.start().succeeded();
+		}
+	}
+
+	private static String sleep(long millis) throws IOException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted");
+		}
+		return "slept";
+	}
+}
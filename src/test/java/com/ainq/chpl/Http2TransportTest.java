@@ -0,0 +1,115 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * The JDK's test server speaks HTTP/1.1 only, so these cover the fallback after a declined
+ * h2c upgrade; on Java 8 the wrapper falls back to the pooled client and they pass as well.
+ */
+public class Http2TransportTest {
+	private HttpServer server;
+	private final List<String> upgrades = new CopyOnWriteArrayList<>();
+	private final CountDownLatch stalled = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/rest/status", exchange -> {
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.createContext("/rest/data/education_types", exchange -> {
+			String upgrade = exchange.getRequestHeaders().getFirst("Upgrade");
+			upgrades.add(upgrade == null ? "none" : upgrade);
+			assertEquals("key", exchange.getRequestHeaders().getFirst("API-Key"));
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, 0);
+			try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+				out.write("{\"data\":[{\"id\":1,\"name\":\"Master's degree\"}]}".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		server.createContext("/rest/certified_products/7/certification_results", exchange -> {
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write("{\"id\":7,".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			try {
+				stalled.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		stalled.countDown();
+		server.stop(0);
+	}
+
+	@Test
+	public void testFallsBackToHttp11WhenUpgradeIsDeclined() throws IOException {
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties())) {
+			assertEquals("OK", wrapper.getChplStatus());
+			assertEquals(Arrays.asList("Master's degree"), wrapper.getEducationLevelNames());
+			assertEquals(1, upgrades.size());
+			if (!System.getProperty("java.specification.version").startsWith("1.")) {
+				assertEquals("h2c", upgrades.get(0));
+				assertNull(wrapper.getPoolStats());
+			}
+		}
+	}
+
+	@Test
+	public void testStalledBodyTimesOut() throws IOException {
+		Properties properties = properties();
+		properties.setProperty("detailsApi", "/certified_products/%s/certification_results");
+		properties.setProperty(PooledHttpClient.SOCKET_TIMEOUT_PROPERTY, "500");
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+			long start = System.nanoTime();
+			try {
+				wrapper.getListingDetails(7);
+				fail("the body never completes");
+			} catch (SocketTimeoutException expected) {
+				long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				assertTrue("timed out after " + elapsedMillis + " ms", elapsedMillis < 5000);
+			}
+		}
+	}
+
+	private Properties properties() {
+		Properties properties = new Properties();
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+		properties.setProperty("apiKey", "key");
+		properties.setProperty("statusApi", "/status");
+		properties.setProperty("educationTypesApi", "/data/education_types");
+		properties.setProperty(ChplApiWrapper.TRANSPORT_PROPERTY, ChplTransport.HTTP2);
+		properties.setProperty(ChplApiWrapper.RETRY_MAX_ATTEMPTS_PROPERTY, "1");
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		return properties;
+	}
+}
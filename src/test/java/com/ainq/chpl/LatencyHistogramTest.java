@@ -0,0 +1,58 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketBoundsContainTheirValues() {
+		long[] values = { 0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE / 3 };
+		for (long value : values) {
+			int index = LatencyHistogram.index(value);
+			assertTrue(value + " above its bucket", value <= LatencyHistogram.upperBound(index));
+			assertTrue(value + " in the wrong bucket", index == 0 || value > LatencyHistogram.upperBound(index - 1));
+		}
+	}
+
+	@Test
+	public void testPercentilesWithinPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int millis = 1; millis <= 1000; millis++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertWithin(TimeUnit.MILLISECONDS.toNanos(500), snapshot.getValueAtQuantile(0.5));
+		assertWithin(TimeUnit.MILLISECONDS.toNanos(990), snapshot.getValueAtQuantile(0.99));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), snapshot.getValueAtQuantile(0.999));
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), snapshot.getMax());
+	}
+
+	@Test
+	public void testEndpointMetricsSplitNetworkAndParse() throws InterruptedException {
+		ChplMetrics metrics = new ChplMetrics(false);
+		EndpointMetrics.RequestTimer timer = metrics.endpoint(ChplApiWrapper.DETAILS_ENDPOINT).start();
+		Thread.sleep(5);
+		timer.headersReceived(200);
+		timer.bodyRead(2048, 8192);
+		timer.succeeded();
+		metrics.endpoint(ChplApiWrapper.DETAILS_ENDPOINT).start().failed();
+
+		EndpointMetricsSnapshot snapshot = metrics.snapshot().get(ChplApiWrapper.DETAILS_ENDPOINT);
+		assertEquals(2, snapshot.getRequestCount());
+		assertEquals(1, snapshot.getErrorCount());
+		assertEquals(2048, snapshot.getBytesRead());
+		assertEquals(8192, snapshot.getDecodedBytesRead());
+		assertTrue(snapshot.getNetworkP50Millis() >= 4);
+		assertTrue(snapshot.getLatencyMaxMillis() >= snapshot.getNetworkP50Millis() * 0.875);
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected about " + expected + " but was " + actual,
+				Math.abs(actual - expected) <= expected / 8);
+	}
+}
@@ -0,0 +1,149 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ListingDetailsStoreTest {
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("details-store").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testEntriesSurviveReopen() throws IOException {
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 0)) {
+			store.put("9261", bytes("{\"id\":9261}"));
+			store.put("9262", bytes("{\"id\":9262}"));
+			store.put("9261", bytes("{\"id\":9261,\"v\":2}"));
+			store.remove("9262");
+		}
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 0)) {
+			assertEquals(1, store.size());
+			assertEquals("{\"id\":9261,\"v\":2}", string(store.get("9261")));
+			assertNull(store.get("9262"));
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvictedAndCompacted() throws IOException {
+		byte[] body = new byte[100 * 1024];
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 10 * body.length, 0)) {
+			for (int i = 0; i < 10; i++) {
+				store.put(String.valueOf(i), body);
+			}
+			assertNotNull(store.get("0"));
+			for (int i = 10; i < 40; i++) {
+				store.put(String.valueOf(i), body);
+				assertNotNull(store.get("0"));
+			}
+			assertEquals(10, store.size());
+			assertNotNull(store.get("0"));
+			assertNull(store.get("1"));
+			assertNotNull(store.get("39"));
+		}
+		long dataSize = new File(directory, ListingDetailsStore.DATA_FILE).length();
+		assertTrue("data file should have been compacted but is " + dataSize, dataSize <= 20 * body.length);
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 10 * body.length, 0)) {
+			assertEquals(10, store.size());
+			assertNotNull(store.get("0"));
+		}
+	}
+
+	@Test
+	public void testDataFileStaysWithinMappableSize() throws IOException {
+		byte[] body = new byte[100];
+		long maxDataBytes = 1000;
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, maxDataBytes / 2, 0, maxDataBytes,
+				System::currentTimeMillis)) {
+			for (int i = 0; i < 50; i++) {
+				body[0] = (byte) i;
+				store.put(String.valueOf(i % 3), body);
+				assertTrue(new File(directory, ListingDetailsStore.DATA_FILE).length() <= maxDataBytes);
+			}
+			assertEquals(3, store.size());
+			assertEquals(47, store.get("2")[0]);
+			assertEquals(48, store.get("0")[0]);
+			assertEquals(49, store.get("1")[0]);
+
+			// live bytes are capped at half the data file limit so a compaction always makes room
+			for (int i = 3; i < 10; i++) {
+				store.put(String.valueOf(i), body);
+			}
+			assertEquals(5, store.size());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSizeBeyondMappableDataIsRejected() throws IOException {
+		new ListingDetailsStore(directory, ListingDetailsStore.MAX_DATA_BYTES / 2 + 1, 0).close();
+	}
+
+	@Test
+	public void testIndexWithoutHeaderIsDiscarded() throws IOException {
+		try (DataOutputStream index = new DataOutputStream(
+				new FileOutputStream(new File(directory, ListingDetailsStore.INDEX_FILE)))) {
+			index.writeUTF("9261");
+			index.writeLong(0);
+			index.writeInt(11);
+			index.writeLong(0);
+		}
+		Files.write(new File(directory, ListingDetailsStore.DATA_FILE).toPath(), bytes("{\"id\":9261}"));
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 0)) {
+			assertEquals(0, store.size());
+			assertNull(store.get("9261"));
+			store.put("9262", bytes("{\"id\":9262}"));
+		}
+		assertEquals(11, new File(directory, ListingDetailsStore.DATA_FILE).length());
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 0)) {
+			assertEquals(1, store.size());
+			assertEquals("{\"id\":9262}", string(store.get("9262")));
+		}
+	}
+
+	@Test
+	public void testEntriesExpireAfterTtl() throws IOException {
+		long[] now = { 1000 };
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 500,
+				ListingDetailsStore.MAX_DATA_BYTES, () -> now[0])) {
+			store.put("9261", bytes("{\"id\":9261}"));
+			now[0] = 1400;
+			store.put("9262", bytes("{\"id\":9262}"));
+			now[0] = 1500;
+			assertFalse(store.contains("9261"));
+			assertNull(store.get("9261"));
+			assertEquals("{\"id\":9262}", string(store.get("9262")));
+		}
+		try (ListingDetailsStore store = new ListingDetailsStore(directory, 1024 * 1024, 500,
+				ListingDetailsStore.MAX_DATA_BYTES, () -> now[0])) {
+			assertEquals("the expiry is remembered across restarts", 1, store.size());
+			now[0] = 1900;
+			assertNull(store.get("9262"));
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] value) {
+		return new String(value, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,84 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class ListingPagerTest {
+	private static ExecutorService prefetcher;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		prefetcher = Executors.newCachedThreadPool(new DaemonThreadFactory("pager-test"));
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		prefetcher.shutdownNow();
+	}
+
+	@Test
+	public void testPagesThroughReportedRecordCount() {
+		AtomicInteger fetches = new AtomicInteger();
+		ListingPager pager = new ListingPager(pageNumber -> {
+			fetches.incrementAndGet();
+			return page(pageNumber, 10, 25, true);
+		}, 10, prefetcher);
+		List<Long> ids = pager.stream().map(Listing::getId).collect(Collectors.toList());
+
+		assertEquals(25, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(i, ids.get(i).longValue());
+		}
+		assertEquals(3, fetches.get());
+	}
+
+	@Test
+	public void testStopsAtShortPageWithoutRecordCount() {
+		ListingPager pager = new ListingPager(pageNumber -> page(pageNumber, 10, 30, false), 10, prefetcher);
+		// 30 listings fill exactly three pages, the fourth comes back empty
+		assertEquals(30, pager.stream().count());
+	}
+
+	@Test
+	public void testFetchesNoMoreThanOnePageAhead() {
+		AtomicInteger fetches = new AtomicInteger();
+		try (Stream<Listing> listings = new ListingPager(pageNumber -> {
+			fetches.incrementAndGet();
+			return page(pageNumber, 10, 1000, true);
+		}, 10, prefetcher).stream()) {
+			assertEquals(15, listings.limit(15).count());
+		}
+		assertTrue(fetches.get() <= 3);
+	}
+
+	@Test(expected = UncheckedIOException.class)
+	public void testFetchFailureFailsTheStream() {
+		new ListingPager(pageNumber -> {
+			if (pageNumber == 1) {
+				throw new IOException("page lost");
+			}
+			return page(pageNumber, 10, 30, true);
+		}, 10, prefetcher).stream().count();
+	}
+
+	private static SearchPage page(int pageNumber, int pageSize, int total, boolean reportCount) {
+		List<Listing> results = new ArrayList<>();
+		for (int id = pageNumber * pageSize; id < Math.min(total, (pageNumber + 1) * pageSize); id++) {
+			results.add(new Listing(id, null, "2015", "Developer", "Product", "1.0", "Active", null, null));
+		}
+		return new SearchPage(reportCount ? total : -1, results);
+	}
+}
@@ -0,0 +1,30 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LogRateLimiterTest {
+
+	@Test
+	public void testCapsEachKeySeparatelyAndReportsDropped() throws InterruptedException {
+		LogRateLimiter limiter = new LogRateLimiter(2);
+		assertEquals(0, limiter.acquire("search"));
+		assertEquals(0, limiter.acquire("search"));
+		assertEquals(-1, limiter.acquire("search"));
+		assertEquals(-1, limiter.acquire("search"));
+		assertEquals(0, limiter.acquire("details"));
+
+		Thread.sleep(1100);
+		assertEquals(2, limiter.acquire("search"));
+		assertEquals(0, limiter.acquire("search"));
+	}
+
+	@Test
+	public void testNoCapLetsEverythingThrough() {
+		LogRateLimiter limiter = new LogRateLimiter(0);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(0, limiter.acquire("search"));
+		}
+	}
+}
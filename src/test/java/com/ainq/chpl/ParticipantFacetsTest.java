@@ -0,0 +1,147 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ainq.chpl.FacetResult.Facet;
+import com.sun.net.httpserver.HttpServer;
+
+public class ParticipantFacetsTest {
+	private static final String DETAILS = "{\"id\":1,\"certificationResults\":[],\"sed\":{\"testTasks\":["
+			+ "{\"id\":1,\"criteria\":[{\"number\":\"170.315 (a)(1)\"},{\"number\":\"170.315 (a)(2)\"}],\"testParticipants\":["
+			+ participant("p1", "Master's degree", "30-39", "RN") + "," + participant("p2", "Associate degree", "20-29", "RN")
+			+ "]},"
+			+ "{\"id\":2,\"criteria\":[{\"number\":\"170.315 (a)(2)\"}],\"testParticipants\":["
+			+ participant("p1", "Master's degree", "30-39", "RN") + "," + participant("p3", "Master's degree", "40-49", "MD")
+			+ ",{\"educationTypeName\":null,\"ageRange\":\"30-39\",\"occupation\":\"MD\"}]}]}}";
+
+	@Test
+	public void testParticipantsAreCountedOnceWithinAListing() throws IOException {
+		FacetDictionary[] dictionaries = dictionaries();
+		ParticipantDictionary participants = new ParticipantDictionary();
+		FacetResult result = ParticipantFacets.read(stream(DETAILS), dictionaries, participants)
+				.toResult(dictionaries, participants);
+
+		assertEquals(1, result.getListingCount());
+		assertEquals(4, result.getParticipantCount());
+		assertEquals(map("Master's degree", 2, "Associate degree", 1), result.getHistogram(Facet.EDUCATION_TYPE));
+		assertEquals(map("30-39", 2, "20-29", 1, "40-49", 1), result.getHistogram(Facet.AGE_RANGE));
+		assertEquals(map("MD", 2, "RN", 2), result.getHistogram(Facet.OCCUPATION));
+		assertEquals(map("170.315 (a)(2)", 4, "170.315 (a)(1)", 2), result.getHistogram(Facet.CRITERION));
+		assertEquals(map("Master's degree", 2, "Associate degree", 1),
+				result.getEducationTypesByCriterion().get("170.315 (a)(2)"));
+		assertEquals(Arrays.asList("Master's degree"), result.getTop(Facet.EDUCATION_TYPE, 1));
+	}
+
+	@Test
+	public void testParticipantsSharedByListingsAreCountedOnce() throws IOException {
+		FacetDictionary[] dictionaries = dictionaries();
+		ParticipantDictionary participants = new ParticipantDictionary();
+		String other = "{\"id\":2,\"sed\":{\"testTasks\":[{\"id\":3,\"criteria\":[{\"number\":\"170.315 (a)(2)\"}],"
+				+ "\"testParticipants\":[" + participant("p1", "Master's degree", "30-39", "RN") + ","
+				+ participant("p4", "Bachelor's degree", "20-29", "MD") + "]}]}}";
+		FacetResult result = ParticipantFacets.read(stream(DETAILS), dictionaries, participants)
+				.merge(ParticipantFacets.read(stream(other), dictionaries, participants))
+				.toResult(dictionaries, participants);
+
+		assertEquals(2, result.getListingCount());
+		assertEquals(5, result.getParticipantCount());
+		assertEquals(map("Master's degree", 2, "Associate degree", 1, "Bachelor's degree", 1),
+				result.getHistogram(Facet.EDUCATION_TYPE));
+		assertEquals(map("170.315 (a)(2)", 5, "170.315 (a)(1)", 2), result.getHistogram(Facet.CRITERION));
+		assertEquals(map("Master's degree", 2, "Associate degree", 1, "Bachelor's degree", 1),
+				result.getListingHistogram(Facet.EDUCATION_TYPE));
+	}
+
+	@Test
+	public void testParallelMergeMatchesSequentialSum() throws IOException {
+		FacetDictionary[] dictionaries = dictionaries();
+		ParticipantDictionary participants = new ParticipantDictionary();
+		List<ParticipantFacets> partials = new ArrayList<>();
+		ParticipantFacets sequential = new ParticipantFacets();
+		for (int listing = 0; listing < 3 * FacetAggregator.SEQUENTIAL_THRESHOLD + 7; listing++) {
+			ParticipantFacets partial = ParticipantFacets.read(stream(DetailsFixtures.details(listing, 4, 3, 5)),
+					dictionaries, participants);
+			partials.add(partial);
+			sequential.merge(partial);
+		}
+		FacetResult parallel = FacetAggregator.merge(partials, new ForkJoinPool(4)).toResult(dictionaries, participants);
+		FacetResult expected = sequential.toResult(dictionaries, participants);
+
+		assertEquals(partials.size(), parallel.getListingCount());
+		assertEquals(expected.getParticipantCount(), parallel.getParticipantCount());
+		for (Facet facet : Facet.values()) {
+			assertEquals(expected.getHistogram(facet), parallel.getHistogram(facet));
+			assertEquals(expected.getListingHistogram(facet), parallel.getListingHistogram(facet));
+		}
+		assertEquals(expected.getEducationTypesByCriterion(), parallel.getEducationTypesByCriterion());
+		assertTrue(parallel.getDistinct(Facet.EDUCATION_TYPE).size() > 1);
+	}
+
+	@Test
+	public void testEducationTypesFailureIsReported() throws IOException {
+		AtomicInteger searches = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/rest/search", exchange -> {
+			searches.incrementAndGet();
+			exchange.sendResponseHeaders(500, -1);
+			exchange.close();
+		});
+		server.start();
+		Properties properties = new Properties();
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+		properties.setProperty("educationTypesApi", "/data/education_types");
+		properties.setProperty("searchApi", "/search");
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+			wrapper.getParticipantFacets(SearchQuery.builder().build());
+			fail("the education types are not found");
+		} catch (ChplHttpException expected) {
+			assertEquals(404, expected.getStatusCode());
+			assertEquals("no listings were read with an unseeded dictionary", 0, searches.get());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static FacetDictionary[] dictionaries() {
+		FacetDictionary[] dictionaries = new FacetDictionary[Facet.values().length];
+		for (Facet facet : Facet.values()) {
+			dictionaries[facet.ordinal()] = new FacetDictionary(
+					facet == Facet.EDUCATION_TYPE ? Arrays.asList(DetailsFixtures.EDUCATION_TYPES) : null);
+		}
+		return dictionaries;
+	}
+
+	private static String participant(String id, String education, String ageRange, String occupation) {
+		return "{\"id\":\"" + id + "\",\"educationTypeName\":\"" + education + "\",\"ageRange\":\"" + ageRange
+				+ "\",\"occupation\":\"" + occupation + "\"}";
+	}
+
+	private static ByteArrayInputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static Map<String, Integer> map(Object... entries) {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		for (int i = 0; i < entries.length; i += 2) {
+			map.put((String) entries[i], (Integer) entries[i + 1]);
+		}
+		return map;
+	}
+}
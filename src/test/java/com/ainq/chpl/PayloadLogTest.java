@@ -0,0 +1,82 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PayloadLogTest {
+	private final Logger logger = Logger.getLogger(PayloadLog.LOGGER_NAME);
+	private final List<String> messages = new ArrayList<>();
+	private final AppenderSkeleton appender = new AppenderSkeleton() {
+		@Override
+		protected void append(LoggingEvent event) {
+			messages.add(event.getRenderedMessage());
+		}
+
+		@Override
+		public boolean requiresLayout() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+	private Level level;
+
+	@Before
+	public void setUp() {
+		level = logger.getLevel();
+		logger.addAppender(appender);
+	}
+
+	@After
+	public void tearDown() {
+		logger.removeAppender(appender);
+		logger.setLevel(level);
+	}
+
+	@Test
+	public void testSampledBodiesAreLoggedUpToTheCap() throws IOException {
+		logger.setLevel(Level.DEBUG);
+		PayloadLog log = new PayloadLog(2, 8);
+		for (int i = 0; i < 4; i++) {
+			InputStream body = log.capture(stream("{\"data\":[" + i + "]}"));
+			assertEquals("{\"data\":[" + i + "]}", IOUtils.toString(body));
+			log.log(body, 200, "http://chpl/rest/data/education_types");
+		}
+		assertEquals(2, messages.size());
+		assertEquals("Response 200 from http://chpl/rest/data/education_types (12 bytes read): {\"data\":...",
+				messages.get(0));
+		assertTrue(messages.get(1).endsWith("{\"data\":..."));
+	}
+
+	@Test
+	public void testNothingIsCapturedWhenDisabled() throws IOException {
+		logger.setLevel(Level.INFO);
+		PayloadLog log = new PayloadLog(1, 8);
+		InputStream original = stream("{}");
+		InputStream body = log.capture(original);
+		assertSame(original, body);
+		log.log(body, 200, "http://chpl/rest/status");
+		assertTrue(messages.isEmpty());
+	}
+
+	private static ByteArrayInputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
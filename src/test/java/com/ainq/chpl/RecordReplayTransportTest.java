@@ -0,0 +1,148 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RecordReplayTransportTest {
+	private static final String EDUCATION_TYPES = "{\"data\":[{\"id\":1,\"name\":\"Master's degree\"},{\"id\":2,\"name\":\"Associate degree\"}]}";
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("recordings").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testRecordedResponsesReplayWithoutTheNetwork() throws IOException {
+		CannedTransport live = new CannedTransport(200, "OK", EDUCATION_TYPES);
+		HttpGet request = new HttpGet("https://chpl.example.org/rest/data/education_types");
+		request.addHeader("API-Key", "secret-key");
+		try (RecordingTransport recording = new RecordingTransport(live, new ResponseRecordings(directory))) {
+			assertEquals(EDUCATION_TYPES, recording.execute(request, RecordReplayTransportTest::body));
+		}
+		assertEquals(1, live.calls.get());
+		for (File file : directory.listFiles()) {
+			assertFalse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains("secret-key"));
+		}
+
+		ReplayTransport replay = new ReplayTransport(new ResponseRecordings(directory), 0);
+		HttpGet otherHost = new HttpGet("http://localhost:8080/rest/data/education_types");
+		assertEquals(EDUCATION_TYPES, replay.execute(otherHost, RecordReplayTransportTest::body));
+		assertEquals("W/\"v1\"", replay.execute(otherHost, response -> response.getFirstHeader(HttpHeaders.ETAG).getValue()));
+	}
+
+	@Test
+	public void testReplayAnswersConditionalAndUnknownRequests() throws IOException {
+		try (RecordingTransport recording = new RecordingTransport(new CannedTransport(200, "OK", EDUCATION_TYPES),
+				new ResponseRecordings(directory))) {
+			recording.execute(new HttpGet("http://host/rest/data/education_types"), RecordReplayTransportTest::body);
+		}
+		ReplayTransport replay = new ReplayTransport(new ResponseRecordings(directory), 0);
+
+		HttpGet conditional = new HttpGet("http://host/rest/data/education_types");
+		conditional.addHeader(HttpHeaders.IF_NONE_MATCH, "W/\"v1\"");
+		assertEquals(Integer.valueOf(304), replay.execute(conditional, RecordReplayTransportTest::status));
+		assertEquals(Integer.valueOf(404), replay.execute(new HttpGet("http://host/rest/data/practice_types"),
+				RecordReplayTransportTest::status));
+	}
+
+	@Test
+	public void testTransientFailuresAreNotRecorded() throws IOException {
+		try (RecordingTransport recording = new RecordingTransport(new CannedTransport(503, "Service Unavailable", "down"),
+				new ResponseRecordings(directory))) {
+			recording.execute(new HttpGet("http://host/rest/status"), RecordReplayTransportTest::status);
+		}
+		assertEquals(0, directory.listFiles().length);
+	}
+
+	@Test
+	public void testWrapperRunsOfflineOnReplay() throws IOException {
+		ResponseRecordings recordings = new ResponseRecordings(directory);
+		save(recordings, "http://recorded/rest/status", 200, "OK", "{}");
+		save(recordings, "http://recorded/rest/data/education_types", 200, "OK", EDUCATION_TYPES);
+
+		Properties properties = new Properties();
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY, "http://replayed/rest");
+		properties.setProperty("statusApi", "/status");
+		properties.setProperty("educationTypesApi", "/data/education_types");
+		properties.setProperty(ChplApiWrapper.TRANSPORT_PROPERTY, ChplTransport.REPLAY);
+		properties.setProperty(ChplApiWrapper.TRANSPORT_DIR_PROPERTY, directory.getPath());
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+			assertEquals("OK", wrapper.getChplStatus());
+			assertEquals(Arrays.asList("Master's degree", "Associate degree"), wrapper.getEducationLevelNames());
+			assertNull(wrapper.getPoolStats());
+		}
+	}
+
+	private static void save(ResponseRecordings recordings, String url, int status, String reason, String body)
+			throws IOException {
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, reason);
+		recordings.save(new HttpGet(url).getURI(),
+				ResponseRecordings.Recording.of(response, body.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static String body(HttpResponse response) throws IOException {
+		return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+	}
+
+	private static Integer status(HttpResponse response) {
+		return response.getStatusLine().getStatusCode();
+	}
+
+	/**
+	 * Stands in for the live API with one fixed response.
+	 */
+	private static final class CannedTransport implements ChplTransport {
+		private final AtomicInteger calls = new AtomicInteger();
+		private final int status;
+		private final String reason;
+		private final String body;
+
+		CannedTransport(int status, String reason, String body) {
+			this.status = status;
+			this.reason = reason;
+			this.body = body;
+		}
+
+		@Override
+		public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> handler) throws IOException {
+			calls.incrementAndGet();
+			BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, status, reason);
+			response.setHeader(HttpHeaders.ETAG, "W/\"v1\"");
+			response.setEntity(new StringEntity(body, StandardCharsets.UTF_8));
+			return handler.handleResponse(response);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
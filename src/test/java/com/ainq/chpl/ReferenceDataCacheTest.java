@@ -0,0 +1,95 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReferenceDataCacheTest {
+	/** Runs background refreshes inline so the tests are deterministic. */
+	private static final Executor SAME_THREAD = Runnable::run;
+
+	@Test
+	public void testServesSnapshotWithinTtl() throws IOException {
+		List<String> calls = new ArrayList<>();
+		ReferenceDataCache<String> cache = new ReferenceDataCache<>("test", (etag, lastModified) -> {
+			calls.add(etag);
+			return ReferenceDataCache.Response.of("v1", "\"1\"", null);
+		}, 60000, SAME_THREAD);
+
+		assertEquals("v1", cache.get());
+		assertEquals("v1", cache.get());
+		assertEquals(1, calls.size());
+	}
+
+	@Test
+	public void testRevalidatesWithEtagAfterTtl() throws IOException {
+		List<String> etags = new ArrayList<>();
+		ReferenceDataCache<String> cache = new ReferenceDataCache<>("test", (etag, lastModified) -> {
+			etags.add(etag);
+			return etag == null ? ReferenceDataCache.Response.of("v1", "\"1\"", "Mon, 01 May 2017 00:00:00 GMT")
+					: ReferenceDataCache.Response.<String>notModified();
+		}, 0, SAME_THREAD);
+
+		assertEquals("v1", cache.get());
+		assertEquals("v1", cache.get());
+		assertEquals(2, etags.size());
+		assertNull(etags.get(0));
+		assertEquals("\"1\"", etags.get(1));
+	}
+
+	@Test
+	public void testFailedRefreshesBackOff() throws IOException {
+		long second = TimeUnit.SECONDS.toNanos(1);
+		long[] now = { 0 };
+		int[] calls = new int[1];
+		boolean[] down = new boolean[1];
+		ReferenceDataCache<String> cache = new ReferenceDataCache<>("test", (etag, lastModified) -> {
+			calls[0]++;
+			if (down[0]) {
+				throw new IOException("API down");
+			}
+			return ReferenceDataCache.Response.of("v" + calls[0], null, null);
+		}, 60000, SAME_THREAD, () -> now[0]);
+
+		assertEquals("v1", cache.get());
+		down[0] = true;
+		now[0] = 60 * second;
+		assertEquals("v1", cache.get());
+		assertEquals(2, calls[0]);
+		for (int i = 0; i < 100; i++) {
+			assertEquals("stale data is served without calling upstream again", "v1", cache.get());
+		}
+		assertEquals(2, calls[0]);
+
+		now[0] += second;
+		assertEquals("v1", cache.get());
+		assertEquals(3, calls[0]);
+		now[0] += second;
+		assertEquals("v1", cache.get());
+		assertEquals("the retry interval doubles", 3, calls[0]);
+		now[0] += second;
+		assertEquals("v1", cache.get());
+		assertEquals(4, calls[0]);
+
+		down[0] = false;
+		now[0] += 4 * second;
+		assertEquals("v1", cache.get());
+		assertEquals("v5", cache.get());
+		now[0] += 30 * second;
+		assertEquals("a successful refresh restores the TTL", "v5", cache.get());
+		assertEquals(5, calls[0]);
+	}
+
+	@Test(expected = IOException.class)
+	public void testFirstLoadFailureIsReported() throws IOException {
+		new ReferenceDataCache<String>("test", (etag, lastModified) -> {
+			throw new IOException("API down");
+		}, 60000, SAME_THREAD).get();
+	}
+}
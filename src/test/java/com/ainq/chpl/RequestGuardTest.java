@@ -0,0 +1,165 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class RequestGuardTest {
+
+	@Test
+	public void testServerErrorsAreRetried() throws IOException {
+		AtomicInteger attempts = new AtomicInteger();
+		RequestGuard guard = new RequestGuard(null, new CircuitBreaker(5, 1000), 3, 1, 5);
+		String result = guard.execute("/status", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new ChplHttpException(503, "Service Unavailable", -1);
+			}
+			return "OK";
+		});
+		assertEquals("OK", result);
+		assertEquals(3, attempts.get());
+	}
+
+	@Test
+	public void testClientErrorsAreNotRetried() {
+		AtomicInteger attempts = new AtomicInteger();
+		RequestGuard guard = new RequestGuard(null, new CircuitBreaker(5, 1000), 3, 1, 5);
+		try {
+			guard.execute("/missing", () -> {
+				attempts.incrementAndGet();
+				throw new ChplHttpException(404, "Not Found", -1);
+			});
+			fail("Expected the 404 to be rethrown");
+		} catch (IOException e) {
+			assertEquals(1, attempts.get());
+		}
+	}
+
+	@Test
+	public void testUnreadableResponsesAreNotRetriedOrCounted() {
+		CircuitBreaker breaker = new CircuitBreaker(1, 60000);
+		RequestGuard guard = new RequestGuard(null, breaker, 3, 1, 5);
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			guard.execute("/data/education_types", () -> {
+				attempts.incrementAndGet();
+				throw new ChplResponseException(URI.create("/data/education_types"), new IOException("Malformed JSON"));
+			});
+			fail("Expected the response failure to be rethrown");
+		} catch (IOException e) {
+			assertTrue(e instanceof ChplResponseException);
+		}
+		assertEquals(1, attempts.get());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testMalformedBodyIsFetchedOnce() throws IOException {
+		AtomicInteger hits = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/rest/certified_products/7/certification_results", exchange -> {
+			hits.incrementAndGet();
+			byte[] bytes = "{\"id\":7,\"sed\":{\"testTasks\":[{".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+		server.start();
+		Properties properties = new Properties();
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+		properties.setProperty("detailsApi", "/certified_products/%s/certification_results");
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		properties.setProperty(ChplApiWrapper.RETRY_MAX_ATTEMPTS_PROPERTY, "3");
+		properties.setProperty(ChplApiWrapper.CIRCUIT_FAILURE_THRESHOLD_PROPERTY, "1");
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+			for (int i = 0; i < 2; i++) {
+				try {
+					wrapper.getListingDetails(7);
+					fail("the body is not gzip");
+				} catch (ChplResponseException expected) {
+					// the circuit stays closed, so the second call reaches the server too
+				}
+			}
+			assertEquals(2, hits.get());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	@Test
+	public void testCircuitOpensAfterConsecutiveFailures() {
+		CircuitBreaker breaker = new CircuitBreaker(2, 60000);
+		RequestGuard guard = new RequestGuard(null, breaker, 1, 1, 5);
+		AtomicInteger attempts = new AtomicInteger();
+		for (int i = 0; i < 4; i++) {
+			try {
+				guard.execute("/down", () -> {
+					attempts.incrementAndGet();
+					throw new SocketTimeoutException("Read timed out");
+				});
+				fail("Expected the call to fail");
+			} catch (CircuitOpenException e) {
+				assertTrue(i >= 2);
+			} catch (IOException e) {
+				assertTrue(i < 2);
+			}
+		}
+		assertEquals(2, attempts.get());
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenTrialClosesCircuit() throws IOException, InterruptedException {
+		CircuitBreaker breaker = new CircuitBreaker(1, 20);
+		RequestGuard guard = new RequestGuard(null, breaker, 1, 1, 5);
+		try {
+			guard.execute("/down", () -> {
+				throw new SocketTimeoutException("Read timed out");
+			});
+		} catch (IOException expected) {
+			assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		}
+		Thread.sleep(40);
+		assertEquals("OK", guard.execute("/status", () -> "OK"));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void testThrottlingHalvesTheRate() throws IOException {
+		AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1000, 10);
+		RequestGuard guard = new RequestGuard(limiter, new CircuitBreaker(5, 1000), 2, 1, 5);
+		AtomicInteger attempts = new AtomicInteger();
+		guard.execute("/search", () -> {
+			if (attempts.incrementAndGet() == 1) {
+				throw new ChplHttpException(429, "Too Many Requests", 10);
+			}
+			return "page";
+		});
+		assertEquals(2, attempts.get());
+		assertTrue(limiter.getRate() < 1000);
+	}
+
+	@Test
+	public void testBackoffIsBounded() {
+		RequestGuard guard = new RequestGuard(null, new CircuitBreaker(5, 1000), 10, 100, 1000);
+		for (int attempt = 1; attempt < 10; attempt++) {
+			long delay = guard.backoff(attempt);
+			assertTrue(delay >= 0 && delay <= Math.min(1000, 100L << (attempt - 1)));
+		}
+	}
+}
@@ -0,0 +1,37 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class SearchQueryTest {
+
+	@Test
+	public void testBuilderMatchesConfiguredQueryString() {
+		SearchQuery built = SearchQuery.builder()
+				.certificationEditions("2015")
+				.certificationDateStart(LocalDate.of(2017, 3, 1))
+				.certificationDateEnd(LocalDate.of(2017, 3, 31))
+				.build();
+		SearchQuery parsed = SearchQuery.parse(
+				"certificationEditions=2015&certificationDateStart=2017-03-01&certificationDateEnd=2017-03-31");
+		assertEquals(built, parsed);
+		assertEquals("certificationEditions=2015&certificationDateStart=2017-03-01&certificationDateEnd=2017-03-31"
+				+ "&pageNumber=2&pageSize=100", built.toQueryString(2));
+	}
+
+	@Test
+	public void testPagingParametersAreManagedByThePager() {
+		SearchQuery parsed = SearchQuery.parse("searchTerm=Epic%20Systems&pageNumber=4&pageSize=20");
+		assertEquals(20, parsed.getPageSize());
+		assertEquals("Epic Systems", parsed.getParameters().get("searchTerm"));
+		assertFalse(parsed.getParameters().containsKey(SearchQuery.PAGE_NUMBER));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPageNumberCannotBeSetAsFilter() {
+		SearchQuery.builder().filter(SearchQuery.PAGE_NUMBER, "3");
+	}
+}
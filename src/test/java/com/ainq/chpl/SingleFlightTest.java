@@ -0,0 +1,110 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+	@Test
+	public void testConcurrentCallersShareOneCall() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		int callers = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(callers, new DaemonThreadFactory("single-flight-test"));
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < callers; i++) {
+				results.add(executor.submit(() -> flight.execute("/data/education_types", () -> {
+					calls.incrementAndGet();
+					try {
+						release.await(5, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return "shared";
+				})));
+			}
+			// give every caller time to join the in-flight call before it completes
+			long deadline = System.currentTimeMillis() + 5000;
+			while (flight.getWaitingCount() < callers - 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			release.countDown();
+			for (Future<String> result : results) {
+				assertEquals("shared", result.get(5, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertEquals(1, calls.get());
+		assertEquals(1, flight.getExecutedCount());
+		assertEquals(callers - 1, flight.getCoalescedCount());
+	}
+
+	@Test
+	public void testCompletedCallsAreNotCached() throws IOException {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		assertEquals(Integer.valueOf(1), flight.execute("key", calls::incrementAndGet));
+		assertEquals(Integer.valueOf(2), flight.execute("key", calls::incrementAndGet));
+		assertEquals(0, flight.getCoalescedCount());
+	}
+
+	@Test
+	public void testInterruptedLeaderHandsOverToFollower() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch leaderStarted = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2, new DaemonThreadFactory("single-flight-test"));
+		try {
+			Future<String> leader = executor.submit(() -> flight.execute("/certified_products/9261", () -> {
+				calls.incrementAndGet();
+				leaderStarted.countDown();
+				try {
+					Thread.sleep(10000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while reading");
+				}
+				return "leader";
+			}));
+			assertTrue(leaderStarted.await(5, TimeUnit.SECONDS));
+			Future<String> follower = executor.submit(() -> flight.execute("/certified_products/9261", () -> {
+				calls.incrementAndGet();
+				return "follower";
+			}));
+			long deadline = System.currentTimeMillis() + 5000;
+			while (flight.getWaitingCount() < 1 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+			leader.cancel(true);
+
+			assertEquals("follower", follower.get(5, TimeUnit.SECONDS));
+			assertEquals(2, calls.get());
+			assertEquals(2, flight.getExecutedCount());
+			assertEquals("the follower ran the call itself", 0, flight.getCoalescedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailureIsPropagated() throws IOException {
+		new SingleFlight<String, String>().execute("key", () -> {
+			throw new IOException("503");
+		});
+	}
+}
@@ -0,0 +1,168 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class SnapshotSyncTest {
+	private File directory;
+	private final List<Listing> listings = new ArrayList<>();
+	private final List<Long> fetched = Collections.synchronizedList(new ArrayList<>());
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("snapshot").toFile();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testSnapshotHoldsListingsAndEducationTypes() throws IOException {
+		listings.add(listing(31, "Developer B", 1000L));
+		listings.add(listing(10, "Developer A", 1000L));
+		listings.add(new Listing(20, null, null, null, null, null, null, null, null));
+
+		try (ListingSnapshot snapshot = sync()) {
+			assertEquals(3, snapshot.size());
+			assertEquals(1000L, snapshot.getWatermark());
+			assertEquals(10, snapshot.getListing(0).getId());
+			assertEquals("Developer A", snapshot.getListing(0).getDeveloper());
+			assertEquals(Long.valueOf(1488326400000L), snapshot.getListing(0).getCertificationDate());
+			assertNull(snapshot.getListing(1).getDeveloper());
+			assertNull(snapshot.getListing(1).getLastModifiedDate());
+			assertEquals(2, snapshot.find(31));
+			assertEquals(-1, snapshot.find(15));
+			assertEquals(educationTypes(31), snapshot.getEducationTypeNames(2));
+			assertEquals(new HashSet<>(Arrays.asList("Master's degree", "Associate degree", "Bachelor's degree")),
+					snapshot.getEducationTypeNames());
+			assertEquals(educationTypes(31),
+					snapshot.getEducationTypeNames(listing -> "Developer B".equals(listing.getDeveloper())));
+		}
+	}
+
+	@Test
+	public void testLaterSyncsFetchOnlyChangedListings() throws IOException {
+		listings.add(listing(1, "Developer A", 1000L));
+		listings.add(listing(2, "Developer A", 2000L));
+		listings.add(listing(3, "Developer A", 3000L));
+		sync().close();
+		assertEquals(Arrays.asList(1L, 2L, 3L), sorted(fetched));
+
+		fetched.clear();
+		listings.remove(0);
+		listings.set(1, listing(3, "Developer C", 4000L));
+		listings.add(listing(4, "Developer D", 1500L));
+		try (ListingSnapshot snapshot = sync()) {
+			assertEquals(Arrays.asList(3L, 4L), sorted(fetched));
+			assertEquals(3, snapshot.size());
+			assertEquals(-1, snapshot.find(1));
+			assertEquals("Developer C", snapshot.getListing(snapshot.find(3)).getDeveloper());
+			assertEquals(educationTypes(2), snapshot.getEducationTypeNames(snapshot.find(2)));
+			assertEquals(4000L, snapshot.getWatermark());
+		}
+	}
+
+	@Test
+	public void testModifiedListingIsRefetchedPastTheDetailsCache() throws IOException {
+		AtomicReference<String> lastModified = new AtomicReference<>("1000");
+		AtomicReference<String> educationType = new AtomicReference<>("Associate degree");
+		AtomicInteger detailsRequests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/rest/search", exchange -> respond(exchange, "{\"recordCount\":1,\"results\":[{\"id\":7,"
+				+ "\"certificationDate\":1488326400000,\"lastModifiedDate\":" + lastModified.get() + "}]}"));
+		server.createContext("/rest/certified_products/7/certification_results", exchange -> {
+			detailsRequests.incrementAndGet();
+			respond(exchange, "{\"id\":7,\"certificationResults\":[],\"sed\":{\"testTasks\":[{\"id\":1,"
+					+ "\"testParticipants\":[{\"id\":1,\"educationTypeName\":\"" + educationType.get() + "\"}]}]}}");
+		});
+		server.start();
+		File cache = Files.createTempDirectory("details-cache").toFile();
+		try {
+			Properties properties = new Properties();
+			properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+					"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+			properties.setProperty("searchApi", "/search");
+			properties.setProperty("detailsApi", "/certified_products/%s/certification_results");
+			properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+			properties.setProperty(ChplApiWrapper.DETAILS_CACHE_DIR_PROPERTY, cache.getPath());
+			properties.setProperty(ChplApiWrapper.SNAPSHOT_DIR_PROPERTY, directory.getPath());
+			try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties)) {
+				try (ListingSnapshot snapshot = wrapper.syncSnapshot()) {
+					assertEquals(Collections.singleton("Associate degree"), snapshot.getEducationTypeNames(snapshot.find(7)));
+				}
+
+				lastModified.set("2000");
+				educationType.set("Doctorate degree (e.g., MD, DNP, DMD, PhD)");
+				try (ListingSnapshot snapshot = wrapper.syncSnapshot()) {
+					assertEquals(Collections.singleton("Doctorate degree (e.g., MD, DNP, DMD, PhD)"),
+							snapshot.getEducationTypeNames(snapshot.find(7)));
+					assertEquals(2000L, snapshot.getWatermark());
+				}
+				assertEquals(2, detailsRequests.get());
+				assertEquals(Collections.singleton("Doctorate degree (e.g., MD, DNP, DMD, PhD)"),
+						wrapper.getListingDetails(7).getEducationTypeNames());
+				assertEquals("the refreshed body replaced the cached one", 2, detailsRequests.get());
+			}
+		} finally {
+			server.stop(0);
+			FileUtils.deleteDirectory(cache);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private ListingSnapshot sync() throws IOException {
+		return new SnapshotSync(directory, () -> new ArrayList<>(listings).stream(), listingId -> {
+			fetched.add(listingId);
+			return educationTypes(listingId);
+		}, null).sync();
+	}
+
+	private static Set<String> educationTypes(long listingId) {
+		return listingId % 2 == 0 ? new HashSet<>(Arrays.asList("Master's degree", "Associate degree"))
+				: new HashSet<>(Arrays.asList("Bachelor's degree", "Master's degree"));
+	}
+
+	private static Listing listing(long id, String developer, Long lastModified) {
+		return new Listing(id, "15.04.04.2891.Test.01.00.1.170301", "2015", developer, "Product " + id, "1.0", "Active",
+				1488326400000L, lastModified);
+	}
+
+	private static List<Long> sorted(List<Long> ids) {
+		List<Long> copy = new ArrayList<>(ids);
+		Collections.sort(copy);
+		return copy;
+	}
+}
@@ -0,0 +1,65 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class StreamingJsonExtractorTest {
+
+	@Test
+	public void testExtractsNestedValuesThroughArrays() throws IOException {
+		String json = "{\"other\":{\"sed\":1},\"sed\":{\"testTasks\":["
+				+ "{\"testParticipants\":[{\"educationTypeName\":\"A\"},{\"educationTypeName\":\"B\",\"x\":[1,2]}]},"
+				+ "{\"description\":\"no participants\"},"
+				+ "{\"testParticipants\":[{\"educationTypeName\":null},{\"educationTypeName\":\"C\"}]}]}}";
+		List<String> values = new ArrayList<>();
+		new StreamingJsonExtractor(ChplApiWrapper.EDUCATION_TYPE_NAME_PATH)
+				.extract(stream(json), (path, value) -> values.add(value));
+		assertEquals(3, values.size());
+		assertEquals("A", values.get(0));
+		assertEquals("B", values.get(1));
+		assertEquals("C", values.get(2));
+	}
+
+	@Test
+	public void testReportsPathForEachValue() throws IOException {
+		String json = "{\"a\":{\"b\":7,\"c\":true},\"d\":\"x\"}";
+		List<String> found = new ArrayList<>();
+		new StreamingJsonExtractor("a.b", "a.c", "d")
+				.extract(stream(json), (path, value) -> found.add(path + "=" + value));
+		assertEquals("[a.b=7, a.c=true, d=x]", found.toString());
+	}
+
+	@Test
+	public void testMatchesTreeBasedParse() throws Exception {
+		String json = DetailsFixtures.details(42, 30, 12, 10);
+		Set<String> streamed = new HashSet<>();
+		new StreamingJsonExtractor(ChplApiWrapper.EDUCATION_TYPE_NAME_PATH)
+				.extract(stream(json), (path, value) -> streamed.add(value));
+
+		Set<String> tree = new HashSet<>();
+		JSONArray tasks = new JSONObject(json).getJSONObject("sed").getJSONArray("testTasks");
+		for (int i = 0; i < tasks.length(); i++) {
+			JSONArray participants = tasks.getJSONObject(i).getJSONArray("testParticipants");
+			for (int j = 0; j < participants.length(); j++) {
+				tree.add(participants.getJSONObject(j).getString("educationTypeName"));
+			}
+		}
+		assertFalse(streamed.isEmpty());
+		assertEquals(tree, streamed);
+	}
+
+	private static ByteArrayInputStream stream(String json) {
+		return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,107 @@
+package com.ainq.chpl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class WarmUpTest {
+	private HttpServer server;
+	private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serve("/rest/status", "{\"status\":\"OK\"}");
+		serve("/rest/data/education_types", "{\"data\":[{\"id\":1,\"name\":\"Master's degree\"},{\"id\":2,\"name\":\"Associate degree\"}]}");
+		serve("/rest/data/practice_types", "[{\"id\":1,\"name\":\"Ambulatory\"}]");
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testWarmUpFillsCachesAndPool() throws Exception {
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties(true))) {
+			wrapper.getReadiness().get(10, TimeUnit.SECONDS);
+
+			assertTrue(wrapper.isReady());
+			assertEquals(1, hits.get("/rest/status").get());
+			assertEquals(1, hits.get("/rest/data/education_types").get());
+			assertEquals(1, hits.get("/rest/data/practice_types").get());
+			assertEquals(3, wrapper.getPoolStats().getAvailable());
+
+			assertEquals(Arrays.asList("Master's degree", "Associate degree"), wrapper.getEducationLevelNames());
+			assertEquals("Ambulatory", wrapper.getPracticeTypes().get(0).getName());
+			assertEquals(1, hits.get("/rest/data/education_types").get());
+		}
+	}
+
+	@Test
+	public void testReadyAtOnceWithoutWarmUp() throws IOException {
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties(false))) {
+			assertTrue(wrapper.isReady());
+			assertTrue(wrapper.getReadiness().isDone());
+			assertTrue(hits.isEmpty());
+		}
+	}
+
+	@Test
+	public void testFailedStepFailsReadiness() throws Exception {
+		server.removeContext("/rest/data/practice_types");
+		try (ChplApiWrapper wrapper = ChplApiWrapper.newInstance(properties(true))) {
+			try {
+				wrapper.getReadiness().get(10, TimeUnit.SECONDS);
+				fail("practice types are not served");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause().getMessage().contains(ChplApiWrapper.PRACTICE_TYPE_NAMES_ENDPOINT));
+			}
+			assertFalse(wrapper.isReady());
+			assertNotNull(wrapper.getEducationLevelNames());
+		}
+	}
+
+	private void serve(String path, String body) {
+		server.createContext(path, exchange -> {
+			hits.computeIfAbsent(path, key -> new AtomicInteger()).incrementAndGet();
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+	}
+
+	private Properties properties(boolean warmUp) {
+		Properties properties = new Properties();
+		properties.setProperty(ChplApiWrapper.CHPL_API_URL_BEGIN_PROPERTY,
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/rest");
+		properties.setProperty("statusApi", "/status");
+		properties.setProperty("educationTypesApi", "/data/education_types");
+		properties.setProperty("practiceTypeNamesApi", "/data/practice_types");
+		properties.setProperty(ChplApiWrapper.RETRY_MAX_ATTEMPTS_PROPERTY, "1");
+		properties.setProperty(ChplApiWrapper.JMX_ENABLED_PROPERTY, "false");
+		properties.setProperty(ChplApiWrapper.WARM_UP_PROPERTY, String.valueOf(warmUp));
+		properties.setProperty(ChplApiWrapper.WARM_UP_CONNECTIONS_PROPERTY, "3");
+		return properties;
+	}
+}